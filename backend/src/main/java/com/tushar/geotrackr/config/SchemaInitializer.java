@@ -0,0 +1,33 @@
+package com.tushar.geotrackr.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Schema fixes ddl-auto=update cannot make, needed with or without PostGIS
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SchemaInitializer implements ApplicationRunner {
+
+    // Hibernate's check constraint on event_type predates the DWELL type and ddl-auto=update keeps it
+    private static final String DROP_EVENT_TYPE_CHECK_SQL =
+            "ALTER TABLE geofence_events DROP CONSTRAINT IF EXISTS geofence_events_event_type_check";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            jdbcTemplate.execute(DROP_EVENT_TYPE_CHECK_SQL);
+        } catch (DataAccessException e) {
+            log.warn("Could not drop the geofence event type check: {}", e.getMessage());
+        }
+    }
+}
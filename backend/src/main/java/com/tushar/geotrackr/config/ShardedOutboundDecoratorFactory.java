@@ -0,0 +1,224 @@
+package com.tushar.geotrackr.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Outbound side of the "sharded" broker mode
+ * Every WebSocket session gets a bounded outbound queue, drained by one of N
+ * single-thread shard executors (one per core by default). Broker threads only
+ * enqueue, so a slow client can no longer block delivery to the others; when its
+ * queue is full the oldest frame is dropped or the session is closed.
+ */
+@Component
+@ConditionalOnProperty(name = "websocket.broker.mode", havingValue = "sharded")
+@RequiredArgsConstructor
+@Slf4j
+public class ShardedOutboundDecoratorFactory implements WebSocketHandlerDecoratorFactory {
+
+    public enum OverflowPolicy {
+        DROP_OLDEST,
+        DISCONNECT
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${websocket.broker.shards:0}")
+    private int shardCount; // 0 = one per available processor
+
+    @Value("${websocket.broker.session-queue-capacity:1000}")
+    private int queueCapacity; // frames
+
+    @Value("${websocket.broker.overflow-policy:DROP_OLDEST}")
+    private OverflowPolicy overflowPolicy;
+
+    private final Map<String, QueuedSession> sessions = new ConcurrentHashMap<>();
+    private ExecutorService[] shards;
+    private Counter droppedFrames;
+    private Counter disconnectedSessions;
+
+    @PostConstruct
+    public void init() {
+        int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+        shards = new ExecutorService[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("ws-outbound-" + i + "-"));
+        }
+
+        Gauge.builder("websocket.outbound.sessions", sessions, Map::size)
+                .description("WebSocket sessions with an outbound queue")
+                .register(meterRegistry);
+        Gauge.builder("websocket.outbound.queue.depth", sessions,
+                        s -> s.values().stream().mapToInt(QueuedSession::depth).sum())
+                .description("Frames waiting in all outbound session queues")
+                .register(meterRegistry);
+        Gauge.builder("websocket.outbound.queue.max-depth", sessions,
+                        s -> s.values().stream().mapToInt(QueuedSession::depth).max().orElse(0))
+                .description("Frames waiting in the fullest outbound session queue")
+                .register(meterRegistry);
+        droppedFrames = Counter.builder("websocket.outbound.dropped")
+                .description("Frames dropped because a session queue was full")
+                .register(meterRegistry);
+        disconnectedSessions = Counter.builder("websocket.outbound.disconnected")
+                .description("Sessions closed because their queue was full")
+                .register(meterRegistry);
+
+        log.info("Sharded WebSocket outbound delivery: {} shard(s), queue capacity {}, overflow {}",
+                count, queueCapacity, overflowPolicy);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ExecutorService shard : shards) {
+            shard.shutdownNow();
+        }
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                QueuedSession queued = new QueuedSession(session, shardFor(session.getId()));
+                sessions.put(session.getId(), queued);
+                super.afterConnectionEstablished(queued);
+            }
+
+            @Override
+            public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+                QueuedSession queued = sessions.get(session.getId());
+                super.handleMessage(queued != null ? queued : session, message);
+            }
+
+            @Override
+            public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+                QueuedSession queued = sessions.get(session.getId());
+                super.handleTransportError(queued != null ? queued : session, exception);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                QueuedSession queued = sessions.remove(session.getId());
+                if (queued != null) {
+                    queued.discard();
+                }
+                super.afterConnectionClosed(queued != null ? queued : session, closeStatus);
+            }
+        };
+    }
+
+    private ExecutorService shardFor(String sessionId) {
+        return shards[Math.floorMod(sessionId.hashCode(), shards.length)];
+    }
+
+    /**
+     * Session whose sends are queued and written by its shard thread, in order
+     */
+    private class QueuedSession extends WebSocketSessionDecorator {
+
+        private final BlockingQueue<WebSocketMessage<?>> queue = new LinkedBlockingQueue<>(queueCapacity);
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+        private final AtomicBoolean closing = new AtomicBoolean(false);
+        private final ExecutorService shard;
+
+        QueuedSession(WebSocketSession delegate, ExecutorService shard) {
+            super(delegate);
+            this.shard = shard;
+        }
+
+        int depth() {
+            return queue.size();
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            if (closing.get()) {
+                return;
+            }
+            while (!queue.offer(message)) {
+                if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+                    overflow();
+                    return;
+                }
+                if (queue.poll() != null) {
+                    droppedFrames.increment();
+                }
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                shard.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                WebSocketMessage<?> message;
+                while ((message = queue.poll()) != null) {
+                    if (!getDelegate().isOpen()) {
+                        queue.clear();
+                        break;
+                    }
+                    getDelegate().sendMessage(message);
+                }
+            } catch (IOException e) {
+                log.debug("Failed to send to WebSocket session {}: {}", getId(), e.getMessage());
+                queue.clear();
+            } finally {
+                draining.set(false);
+                if (!queue.isEmpty()) {
+                    scheduleDrain();
+                }
+            }
+        }
+
+        private void overflow() {
+            if (!closing.compareAndSet(false, true)) {
+                return;
+            }
+            disconnectedSessions.increment();
+            log.warn("Closing slow WebSocket session {}: outbound queue full ({} frames)", getId(), queueCapacity);
+            queue.clear();
+            shard.execute(() -> {
+                try {
+                    getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+                } catch (IOException e) {
+                    log.debug("Failed to close WebSocket session {}: {}", getId(), e.getMessage());
+                }
+            });
+        }
+
+        void discard() {
+            closing.set(true);
+            queue.clear();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.tushar.geotrackr.config;
+
+import com.tushar.geotrackr.service.LocationSnapshotService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.user.UserDestinationMessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+
+/**
+ * Sends a snapshot of the current positions once a location SUBSCRIBE has been
+ * registered, so it is the first frame the subscription receives and clients no
+ * longer need a REST call before the live stream starts.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class SnapshotOnSubscribeInterceptor implements ExecutorChannelInterceptor {
+
+    private final ObjectProvider<LocationSnapshotService> snapshotService;
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel,
+                                    MessageHandler handler, Exception ex) {
+        if (ex != null || SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.SUBSCRIBE) {
+            return;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null || !LocationSnapshotService.isLocationDestination(destination)) {
+            return;
+        }
+        // Every inbound handler sees the SUBSCRIBE; react only to the one that registers it
+        boolean userDestination = destination.startsWith("/user/");
+        if (userDestination ? !(handler instanceof UserDestinationMessageHandler)
+                : !(handler instanceof AbstractBrokerMessageHandler)) {
+            return;
+        }
+
+        try {
+            snapshotService.getObject().sendSnapshot(message);
+        } catch (Exception e) {
+            log.warn("Failed to send snapshot for {} to session {}: {}",
+                    destination, SimpMessageHeaderAccessor.getSessionId(message.getHeaders()), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.tushar.geotrackr.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Spatial database configuration
+ * Makes sure PostGIS is checked (and enabled if possible) before the JPA schema update runs
+ */
+@Configuration
+public class SpatialConfig {
+
+    @Bean
+    public SpatialSupport spatialSupport(DataSource dataSource,
+                                         @Value("${spatial.enabled:true}") boolean enabled) {
+        return new SpatialSupport(dataSource, enabled);
+    }
+
+    @Bean
+    public static EntityManagerFactoryDependsOnPostProcessor spatialSupportDependsOnPostProcessor() {
+        return new EntityManagerFactoryDependsOnPostProcessor("spatialSupport");
+    }
+}
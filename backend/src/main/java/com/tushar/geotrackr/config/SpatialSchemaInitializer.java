@@ -0,0 +1,104 @@
+package com.tushar.geotrackr.config;
+
+import com.tushar.geotrackr.entity.Geofence;
+import com.tushar.geotrackr.repository.GeofenceRepository;
+import com.tushar.geotrackr.service.GeofenceService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Creates the PostGIS geometry columns and their GiST indexes, only when SpatialSupport
+ * is enabled; the entities do not map them, so the schema works without PostGIS.
+ * Point columns are generated from the latitude/longitude columns; geofence boundaries
+ * are parsed from polygonCoordinates and written by GeofenceService.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SpatialSchemaInitializer implements ApplicationRunner {
+
+    private static final String GPS_LOCATION_DEFINITION = "geometry(Point,4326) GENERATED ALWAYS AS " +
+            "(ST_SetSRID(ST_MakePoint(longitude, latitude), 4326)) STORED";
+    private static final String GEOFENCE_CENTER_DEFINITION = "geometry(Point,4326) GENERATED ALWAYS AS " +
+            "(ST_SetSRID(ST_MakePoint(center_longitude, center_latitude), 4326)) STORED";
+    private static final String ADD_BOUNDARY_SQL =
+            "ALTER TABLE geofences ADD COLUMN IF NOT EXISTS boundary geometry(Polygon,4326)";
+
+    private static final List<String> INDEXES = List.of(
+            "CREATE INDEX IF NOT EXISTS idx_geofences_boundary ON geofences USING GIST (boundary)",
+            "CREATE INDEX IF NOT EXISTS idx_geofences_center_geog ON geofences USING GIST ((center::geography))",
+            "CREATE INDEX IF NOT EXISTS idx_gps_data_location ON gps_data USING GIST (location)"
+    );
+
+    private static final String COLUMN_GENERATED_SQL = "SELECT is_generated FROM information_schema.columns " +
+            "WHERE table_schema = current_schema() AND table_name = ? AND column_name = ?";
+
+    private static final String MISSING_BOUNDARY_SQL = "SELECT id FROM geofences " +
+            "WHERE type = 'POLYGONAL' AND boundary IS NULL AND polygon_coordinates IS NOT NULL";
+
+    private final SpatialSupport spatialSupport;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final GeofenceRepository geofenceRepository;
+    private final GeofenceService geofenceService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!spatialSupport.isEnabled()) {
+            return;
+        }
+
+        ensureGeneratedColumn("gps_data", "location", GPS_LOCATION_DEFINITION);
+        ensureGeneratedColumn("geofences", "center", GEOFENCE_CENTER_DEFINITION);
+        jdbcTemplate.execute(ADD_BOUNDARY_SQL);
+        for (String sql : INDEXES) {
+            jdbcTemplate.execute(sql);
+        }
+
+        migrateGeofences();
+    }
+
+    /**
+     * Add a generated column; a plain column of the same name (mapped and filled by the
+     * application in earlier versions) is replaced, which rewrites the table once
+     */
+    private void ensureGeneratedColumn(String table, String column, String definition) {
+        List<String> generated = jdbcTemplate.queryForList(COLUMN_GENERATED_SQL, String.class, table, column);
+        if (!generated.isEmpty() && "ALWAYS".equals(generated.get(0))) {
+            return;
+        }
+        if (!generated.isEmpty()) {
+            log.info("Replacing {}.{} with a generated geometry column", table, column);
+            jdbcTemplate.execute("ALTER TABLE " + table + " DROP COLUMN " + column);
+        }
+        jdbcTemplate.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+    }
+
+    private void migrateGeofences() {
+        List<Long> ids = jdbcTemplate.queryForList(MISSING_BOUNDARY_SQL, Long.class);
+        if (ids.isEmpty()) {
+            return;
+        }
+        int migrated = transactionTemplate.execute(status -> {
+            int count = 0;
+            for (Geofence geofence : geofenceRepository.findAllById(ids)) {
+                try {
+                    geofenceService.applyGeometry(geofence);
+                    geofenceService.storeGeometry(geofence);
+                    count++;
+                } catch (IllegalArgumentException e) {
+                    log.warn("Geofence {} has no boundary geometry: {}", geofence.getId(), e.getMessage());
+                }
+            }
+            return count;
+        });
+        log.info("Migrated {} geofence(s) to the boundary column", migrated);
+    }
+}
@@ -0,0 +1,51 @@
+package com.tushar.geotrackr.config;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Detects whether the database can run PostGIS queries
+ * When it cannot (e.g. H2 in tests) services fall back to in-memory geometry checks.
+ */
+@Slf4j
+public class SpatialSupport {
+
+    private final boolean enabled;
+
+    public SpatialSupport(DataSource dataSource, boolean requested) {
+        this.enabled = requested && detect(dataSource);
+        log.info("PostGIS spatial queries {}", enabled ? "enabled" : "disabled, using in-memory fallback");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Runs before Hibernate builds the schema so the geometry columns can be created
+     */
+    private boolean detect(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            if (!"PostgreSQL".equalsIgnoreCase(product)) {
+                return false;
+            }
+            try {
+                statement.execute("CREATE EXTENSION IF NOT EXISTS postgis");
+            } catch (Exception e) {
+                log.warn("Could not create the postgis extension: {}", e.getMessage());
+            }
+            try (ResultSet rs = statement.executeQuery("SELECT 1 FROM pg_extension WHERE extname = 'postgis'")) {
+                return rs.next();
+            }
+        } catch (Exception e) {
+            log.warn("Spatial support detection failed: {}", e.getMessage());
+            return false;
+        }
+    }
+}
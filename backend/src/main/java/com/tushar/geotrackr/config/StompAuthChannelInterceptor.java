@@ -0,0 +1,55 @@
+package com.tushar.geotrackr.config;
+
+import com.tushar.geotrackr.security.StompAuthenticationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import java.security.Principal;
+
+/**
+ * Authenticates STOMP sessions on CONNECT and authorizes SUBSCRIBE and SEND frames
+ * against the scope cached for the session (StompAuthenticationService)
+ * With websocket.auth.required, CONNECT frames without credentials are rejected.
+ */
+@RequiredArgsConstructor
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+
+    private final ObjectProvider<StompAuthenticationService> authenticationService;
+    private final boolean authRequired;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+        StompAuthenticationService service = authenticationService.getIfAvailable();
+
+        if (accessor.getCommand() == StompCommand.CONNECT) {
+            Principal user = service != null ? service.authenticate(accessor) : null;
+            if (user != null) {
+                accessor.setUser(user);
+            } else if (authRequired) {
+                throw new BadCredentialsException("Authentication required");
+            }
+            return message;
+        }
+
+        if (accessor.getUser() == null && authRequired && (accessor.getCommand() == StompCommand.SUBSCRIBE
+                || accessor.getCommand() == StompCommand.SEND)) {
+            throw new AccessDeniedException("Session is not authenticated");
+        }
+        if (service != null) {
+            service.authorize(accessor);
+        }
+        return message;
+    }
+}
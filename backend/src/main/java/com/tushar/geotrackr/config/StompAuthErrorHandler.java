@@ -0,0 +1,26 @@
+package com.tushar.geotrackr.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.web.socket.messaging.StompSubProtocolErrorHandler;
+
+/**
+ * Puts the reason of a rejected CONNECT, SUBSCRIBE or SEND in the STOMP ERROR frame
+ * instead of the generic channel delivery failure
+ */
+public class StompAuthErrorHandler extends StompSubProtocolErrorHandler {
+
+    @Override
+    public Message<byte[]> handleClientMessageProcessingError(Message<byte[]> clientMessage, Throwable ex) {
+        Throwable cause = ex;
+        while (cause.getCause() != null
+                && !(cause instanceof AuthenticationException || cause instanceof AccessDeniedException)) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof AuthenticationException || cause instanceof AccessDeniedException) {
+            return super.handleClientMessageProcessingError(clientMessage, cause);
+        }
+        return super.handleClientMessageProcessingError(clientMessage, ex);
+    }
+}
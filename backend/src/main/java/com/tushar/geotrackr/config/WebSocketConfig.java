@@ -1,26 +1,81 @@
 package com.tushar.geotrackr.config;
 
+import com.tushar.geotrackr.security.StompAuthenticationService;
+import com.tushar.geotrackr.service.LocationSnapshotService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 /**
  * WebSocket configuration for real-time communication
  * Enables STOMP protocol over WebSocket with SockJS fallback
+ * websocket.broker.mode selects the broker:
+ *  - simple: Spring's SimpleBroker with default channel executors
+ *  - sharded: SimpleBroker subscription matching, with outbound delivery sharded
+ *    across cores through bounded per-session queues (ShardedOutboundDecoratorFactory)
+ *  - relay: external STOMP broker (e.g. Artemis, RabbitMQ) so broadcasts reach clients
+ *    connected to any application node
  */
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final ObjectProvider<ShardedOutboundDecoratorFactory> shardedOutbound;
+    private final ObjectProvider<LocationSnapshotService> snapshotService;
+    private final ObjectProvider<StompAuthenticationService> stompAuthentication;
+
+    @Value("${websocket.auth.required:true}")
+    private boolean authRequired; // reject CONNECT frames without a token or device key
+
+    @Value("${websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${websocket.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${websocket.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${websocket.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${websocket.relay.passcode:guest}")
+    private String relayPasscode;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
+        config.setApplicationDestinationPrefixes("/app");
+        config.setUserDestinationPrefix("/user");
+
+        if (isRelay()) {
+            config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    .setSystemHeartbeatSendInterval(10000)
+                    .setSystemHeartbeatReceiveInterval(10000)
+                    // Share user sessions between nodes so /user/... destinations resolve cluster-wide
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+            return;
+        }
+
         // Create TaskScheduler for heartbeat
         ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
-        taskScheduler.setPoolSize(1);
+        taskScheduler.setPoolSize(isSharded() ? 2 : 1);
         taskScheduler.setThreadNamePrefix("ws-heartbeat-");
         taskScheduler.initialize();
 
@@ -29,12 +84,46 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setHeartbeatValue(new long[]{10000, 10000})
                 .setTaskScheduler(taskScheduler);
 
-        config.setApplicationDestinationPrefixes("/app");
-        config.setUserDestinationPrefix("/user");
+        // Outbound frames of one session may be handled by different broker threads;
+        // keep them in publish order before they reach the session queue
+        config.setPreservePublishOrder(isSharded());
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(
+                new StompAuthChannelInterceptor(stompAuthentication, authRequired),
+                new SnapshotOnSubscribeInterceptor(snapshotService));
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        if (isSharded()) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            registration.taskExecutor().corePoolSize(cores).maxPoolSize(cores);
+        }
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        ShardedOutboundDecoratorFactory factory = shardedOutbound.getIfAvailable();
+        if (isSharded() && factory != null) {
+            registration.addDecoratorFactory(factory);
+        }
+    }
+
+    private boolean isSharded() {
+        return "sharded".equalsIgnoreCase(brokerMode);
+    }
+
+    private boolean isRelay() {
+        return "relay".equalsIgnoreCase(brokerMode);
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.setErrorHandler(new StompAuthErrorHandler());
+
         registry.addEndpoint("/ws/location")
                 .setAllowedOriginPatterns("*")
                 .withSockJS()
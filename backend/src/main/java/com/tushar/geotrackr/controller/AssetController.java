@@ -2,17 +2,18 @@ package com.tushar.geotrackr.controller;
 
 import com.tushar.geotrackr.dto.ApiResponse;
 import com.tushar.geotrackr.dto.AssetCreateDTO;
+import com.tushar.geotrackr.dto.DeviceKeyDTO;
 import com.tushar.geotrackr.entity.Asset;
-import com.tushar.geotrackr.entity.User;
-import com.tushar.geotrackr.repository.UserRepository;
+import com.tushar.geotrackr.security.AuthenticatedUser;
 import com.tushar.geotrackr.service.AssetService;
+import com.tushar.geotrackr.service.DeviceCredentialService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -25,16 +26,13 @@ import java.util.List;
 public class AssetController {
 
     private final AssetService assetService;
-    private final UserRepository userRepository;
+    private final DeviceCredentialService deviceCredentialService;
 
     @PostMapping
     @Operation(summary = "Create a new asset")
     public ResponseEntity<ApiResponse<Asset>> createAsset(
             @Valid @RequestBody AssetCreateDTO dto,
-            Authentication authentication) {
-
-        User owner = userRepository.findByUsername(authentication.getName())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            @AuthenticationPrincipal AuthenticatedUser owner) {
 
         Asset asset = new Asset();
         asset.setName(dto.getName());
@@ -47,10 +45,7 @@ public class AssetController {
 
     @GetMapping
     @Operation(summary = "Get all assets for current user")
-    public ResponseEntity<ApiResponse<List<Asset>>> getAssets(Authentication authentication) {
-        User user = userRepository.findByUsername(authentication.getName())
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
+    public ResponseEntity<ApiResponse<List<Asset>>> getAssets(@AuthenticationPrincipal AuthenticatedUser user) {
         List<Asset> assets = assetService.getAssetsByOwner(user.getId());
         return ResponseEntity.ok(new ApiResponse<>(true, "Assets retrieved", assets));
     }
@@ -83,4 +78,23 @@ public class AssetController {
         assetService.deleteAsset(id);
         return ResponseEntity.ok(new ApiResponse<>(true, "Asset deleted", null));
     }
-}
\ No newline at end of file
+
+    @PostMapping("/{id}/device-key")
+    @Operation(summary = "Issue a device API key for the asset",
+            description = "The key is returned only once; devices send it as X-Device-Key to /api/device/**")
+    public ResponseEntity<ApiResponse<DeviceKeyDTO>> issueDeviceKey(
+            @PathVariable Long id,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        DeviceKeyDTO key = deviceCredentialService.issueKey(id, user);
+        return ResponseEntity.ok(new ApiResponse<>(true, "Device key issued", key));
+    }
+
+    @DeleteMapping("/{id}/device-key")
+    @Operation(summary = "Revoke all device API keys of the asset")
+    public ResponseEntity<ApiResponse<Integer>> revokeDeviceKeys(
+            @PathVariable Long id,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        int revoked = deviceCredentialService.revokeKeys(id, user);
+        return ResponseEntity.ok(new ApiResponse<>(true, "Device keys revoked", revoked));
+    }
+}
@@ -3,6 +3,7 @@ package com.tushar.geotrackr.controller;
 import com.tushar.geotrackr.dto.*;
 import com.tushar.geotrackr.entity.User;
 import com.tushar.geotrackr.repository.UserRepository;
+import com.tushar.geotrackr.security.AuthenticatedUser;
 import com.tushar.geotrackr.security.JwtTokenProvider;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -58,9 +59,8 @@ public class AuthController {
                 new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword())
         );
 
-        String token = jwtTokenProvider.generateToken(request.getUsername());
-        User user = userRepository.findByUsername(request.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
+        String token = jwtTokenProvider.generateToken(user);
 
         JwtResponse response = new JwtResponse(token, "Bearer", user.getUsername(),
                 user.getRole().name());
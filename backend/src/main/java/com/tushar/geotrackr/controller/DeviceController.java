@@ -0,0 +1,46 @@
+package com.tushar.geotrackr.controller;
+
+import com.tushar.geotrackr.dto.ApiResponse;
+import com.tushar.geotrackr.dto.LocationAckDTO;
+import com.tushar.geotrackr.dto.LocationUpdateDTO;
+import com.tushar.geotrackr.dto.LocationUpdateResult;
+import com.tushar.geotrackr.security.DevicePrincipal;
+import com.tushar.geotrackr.service.LocationTrackingService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Ingestion endpoints for GPS devices, authenticated with a per-asset device key
+ * (X-Device-Key) instead of a user JWT
+ */
+@RestController
+@RequestMapping("/api/device")
+@RequiredArgsConstructor
+@SecurityRequirement(name = "deviceKey")
+@Tag(name = "Device Ingestion", description = "Location ingestion for GPS devices")
+public class DeviceController {
+
+    private final LocationTrackingService locationTrackingService;
+
+    @PostMapping("/location")
+    @Operation(summary = "Report the position of the device's asset",
+            description = "assetId may be omitted; it must match the asset the key was issued for. "
+                    + "The acknowledgement carries the suggested delay before the next report")
+    public ResponseEntity<ApiResponse<LocationAckDTO>> updateLocation(
+            @RequestBody LocationUpdateDTO dto,
+            @AuthenticationPrincipal DevicePrincipal device) {
+
+        device.bind(dto);
+        LocationUpdateResult result = locationTrackingService.processLocationUpdate(dto);
+
+        // Devices only need an acknowledgement, not the serialized events
+        return ResponseEntity.ok()
+                .headers(LocationController.reportingHeaders(result))
+                .body(new ApiResponse<>(true, "Location updated", LocationAckDTO.of(dto.getAssetId(), result)));
+    }
+}
@@ -2,9 +2,12 @@ package com.tushar.geotrackr.controller;
 
 import com.tushar.geotrackr.dto.ApiResponse;
 import com.tushar.geotrackr.dto.GeofenceCreateDTO;
+import com.tushar.geotrackr.dto.GeofenceOccupancyDTO;
 import com.tushar.geotrackr.entity.Geofence;
 import com.tushar.geotrackr.entity.User;
 import com.tushar.geotrackr.repository.UserRepository;
+import com.tushar.geotrackr.security.AuthenticatedUser;
+import com.tushar.geotrackr.service.GeofenceOccupancyService;
 import com.tushar.geotrackr.service.GeofenceService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -12,7 +15,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -25,18 +28,17 @@ import java.util.List;
 public class GeofenceController {
 
     private final GeofenceService geofenceService;
+    private final GeofenceOccupancyService geofenceOccupancyService;
     private final UserRepository userRepository;
 
     @PostMapping
     @Operation(summary = "Create new geofence")
     public ResponseEntity<ApiResponse<Geofence>> createGeofence(
             @Valid @RequestBody GeofenceCreateDTO dto,
-            Authentication authentication) {
+            @AuthenticationPrincipal AuthenticatedUser user) {
 
-        // Get the logged-in user
-        String username = authentication.getName();
-        User createdBy = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found: " + username));
+        // Reference to the logged-in user from the token's user id, no lookup
+        User createdBy = userRepository.getReferenceById(user.getId());
 
         // Create Geofence entity
         Geofence geofence = new Geofence();
@@ -48,6 +50,9 @@ public class GeofenceController {
         geofence.setRadius(dto.getRadius());
         geofence.setPolygonCoordinates(dto.getPolygonCoordinates());
         geofence.setAlertType(dto.getAlertType());
+        geofence.setBufferDistance(dto.getBufferDistance());
+        geofence.setMinDwellSeconds(dto.getMinDwellSeconds());
+        geofence.setDwellAlertMinutes(dto.getDwellAlertMinutes());
         geofence.setActive(true);
         geofence.setCreatedBy(createdBy);
 
@@ -71,6 +76,9 @@ public class GeofenceController {
         geofence.setRadius(dto.getRadius());
         geofence.setPolygonCoordinates(dto.getPolygonCoordinates());
         geofence.setAlertType(dto.getAlertType());
+        geofence.setBufferDistance(dto.getBufferDistance());
+        geofence.setMinDwellSeconds(dto.getMinDwellSeconds());
+        geofence.setDwellAlertMinutes(dto.getDwellAlertMinutes());
 
         Geofence updated = geofenceService.updateGeofence(id, geofence);
         return ResponseEntity.ok(new ApiResponse<>(true, "Geofence updated successfully", updated));
@@ -98,4 +106,19 @@ public class GeofenceController {
         return ResponseEntity.ok(new ApiResponse<>(true, "Fetched geofence", geofence));
     }
 
-}
\ No newline at end of file
+    @GetMapping("/occupancy")
+    @Operation(summary = "Get current occupancy of all geofences",
+            description = "Live changes are pushed on /topic/occupancy")
+    public ResponseEntity<ApiResponse<List<GeofenceOccupancyDTO>>> getAllOccupancy() {
+        return ResponseEntity.ok(new ApiResponse<>(true, "Fetched geofence occupancy",
+                geofenceOccupancyService.getAllOccupancy()));
+    }
+
+    @GetMapping("/{id}/occupancy")
+    @Operation(summary = "Get assets currently inside a geofence")
+    public ResponseEntity<ApiResponse<GeofenceOccupancyDTO>> getOccupancy(@PathVariable Long id) {
+        return ResponseEntity.ok(new ApiResponse<>(true, "Fetched geofence occupancy",
+                geofenceOccupancyService.getOccupancy(id)));
+    }
+
+}
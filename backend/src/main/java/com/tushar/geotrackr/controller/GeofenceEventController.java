@@ -85,7 +85,7 @@ public class GeofenceEventController {
      * Get event statistics for a date range
      * @param start Start date/time
      * @param end End date/time
-     * @return Statistics including total entries, exits, and most active assets
+     * @return Statistics including total entries, exits, dwells, and most active assets
      */
     @GetMapping("/statistics")
     @Operation(summary = "Get event statistics", description = "Retrieves aggregated statistics for events in a date range")
@@ -97,12 +97,15 @@ public class GeofenceEventController {
                 GeofenceEvent.EventType.ENTER, start, end);
         Long exitCount = geofenceEventService.countEventsByType(
                 GeofenceEvent.EventType.EXIT, start, end);
+        Long dwellCount = geofenceEventService.countEventsByType(
+                GeofenceEvent.EventType.DWELL, start, end);
         List<Object[]> mostActive = geofenceEventService.getMostActiveAssets(start, end);
 
         Map<String, Object> stats = new HashMap<>();
         stats.put("totalEntries", entryCount);
         stats.put("totalExits", exitCount);
-        stats.put("totalEvents", entryCount + exitCount);
+        stats.put("totalDwells", dwellCount);
+        stats.put("totalEvents", entryCount + exitCount + dwellCount);
         stats.put("mostActiveAssets", mostActive);
 
         return ResponseEntity.ok(new ApiResponse<>(true, "Statistics retrieved successfully", stats));
@@ -0,0 +1,63 @@
+package com.tushar.geotrackr.controller;
+
+import com.tushar.geotrackr.dto.ApiResponse;
+import com.tushar.geotrackr.dto.HeatmapTileDTO;
+import com.tushar.geotrackr.service.HeatmapService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * REST Controller for pre-aggregated GPS density heatmaps
+ */
+@RestController
+@RequestMapping("/api/heatmap")
+@RequiredArgsConstructor
+@SecurityRequirement(name = "bearerAuth")
+@Tag(name = "Heatmap", description = "GPS Density Heatmap APIs")
+public class HeatmapController {
+
+    private final HeatmapService heatmapService;
+
+    /**
+     * Get the density grid of a web-mercator tile
+     * @param start Start date/time (ISO format: 2025-10-01T00:00:00)
+     * @param end End date/time (ISO format: 2025-10-31T23:59:59)
+     * @return Row-major cell counts for the tile
+     */
+    @GetMapping("/{z}/{x}/{y}")
+    @Operation(summary = "Get heatmap tile", description = "Returns cell counts for tile z/x/y over a time range")
+    public ResponseEntity<ApiResponse<HeatmapTileDTO>> getTile(
+            @PathVariable int z,
+            @PathVariable int x,
+            @PathVariable int y,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        HeatmapTileDTO tile = heatmapService.getTile(z, x, y, start, end);
+        return ResponseEntity.ok(new ApiResponse<>(true, "Heatmap tile retrieved", tile));
+    }
+
+    @PostMapping("/backfill")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Rebuild heatmap aggregates from GPS history",
+            description = "Runs in the background and replaces the counts of every time bucket in the range, " +
+                    "except recent buckets that are still aggregated live")
+    public ResponseEntity<ApiResponse<Void>> backfill(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        if (!heatmapService.startBackfill(start, end)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(new ApiResponse<>(false, "A heatmap backfill is already running", null));
+        }
+        return ResponseEntity.accepted()
+                .body(new ApiResponse<>(true, "Heatmap backfill started", null));
+    }
+}
@@ -1,15 +1,20 @@
 package com.tushar.geotrackr.controller;
 
 import com.tushar.geotrackr.dto.ApiResponse;
+import com.tushar.geotrackr.dto.LivePosition;
 import com.tushar.geotrackr.dto.LocationUpdateDTO;
+import com.tushar.geotrackr.dto.LocationUpdateResult;
+import com.tushar.geotrackr.dto.NearbyAssetDTO;
 import com.tushar.geotrackr.entity.Asset;
 import com.tushar.geotrackr.entity.GeofenceEvent;
+import com.tushar.geotrackr.service.LivePositionIndex;
 import com.tushar.geotrackr.service.LocationTrackingService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -23,20 +28,40 @@ import java.util.List;
 @Tag(name = "Location Tracking", description = "Real-time Location Tracking APIs")
 public class LocationController {
 
+    public static final String NEXT_REPORT_INTERVAL_HEADER = "X-Next-Report-Interval";
+    public static final String BOUNDARY_DISTANCE_HEADER = "X-Boundary-Distance";
+
     private final LocationTrackingService locationTrackingService;
+    private final LivePositionIndex livePositionIndex;
 
     @PostMapping("/update")
-    @Operation(summary = "Update asset location and check geofences")
+    @Operation(summary = "Update asset location and check geofences",
+            description = "The X-Next-Report-Interval header suggests when to send the next position (milliseconds)")
     public ResponseEntity<ApiResponse<List<GeofenceEvent>>> updateLocation(
             @Valid @RequestBody LocationUpdateDTO dto) {
 
-        List<GeofenceEvent> events = locationTrackingService.processLocationUpdate(dto);
+        LocationUpdateResult result = locationTrackingService.processLocationUpdate(dto);
+        List<GeofenceEvent> events = result.getEvents();
 
         String message = events.isEmpty()
                 ? "Location updated, no geofence events"
                 : String.format("Location updated, %d geofence event(s) triggered", events.size());
 
-        return ResponseEntity.ok(new ApiResponse<>(true, message, events));
+        return ResponseEntity.ok()
+                .headers(reportingHeaders(result))
+                .body(new ApiResponse<>(true, message, events));
+    }
+
+    /**
+     * Reporting hint headers; the body keeps its shape for existing clients
+     */
+    static HttpHeaders reportingHeaders(LocationUpdateResult result) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(NEXT_REPORT_INTERVAL_HEADER, String.valueOf(result.getNextReportInterval()));
+        if (result.getBoundaryDistance() != null) {
+            headers.set(BOUNDARY_DISTANCE_HEADER, String.valueOf(Math.round(result.getBoundaryDistance())));
+        }
+        return headers;
     }
 
     @GetMapping("/asset/{assetId}")
@@ -52,4 +77,42 @@ public class LocationController {
         List<Asset> assets = locationTrackingService.getAllAssetLocations();
         return ResponseEntity.ok(new ApiResponse<>(true, "All asset locations retrieved", assets));
     }
-}
\ No newline at end of file
+
+    @GetMapping("/nearby")
+    @Operation(summary = "Find assets within a radius (meters) of a point",
+            description = "Served from the in-memory live position index, nearest first")
+    public ResponseEntity<ApiResponse<List<NearbyAssetDTO>>> getAssetsNearby(
+            @RequestParam double latitude,
+            @RequestParam double longitude,
+            @RequestParam double radius) {
+        if (radius <= 0) {
+            throw new IllegalArgumentException("Radius must be greater than 0");
+        }
+        List<NearbyAssetDTO> assets = livePositionIndex.findWithinRadius(latitude, longitude, radius);
+        return ResponseEntity.ok(new ApiResponse<>(true, "Nearby assets retrieved", assets));
+    }
+
+    @GetMapping("/within")
+    @Operation(summary = "Find assets inside a bounding box",
+            description = "Served from the in-memory live position index, e.g. for a map viewport")
+    public ResponseEntity<ApiResponse<List<LivePosition>>> getAssetsInBoundingBox(
+            @RequestParam double minLatitude,
+            @RequestParam double minLongitude,
+            @RequestParam double maxLatitude,
+            @RequestParam double maxLongitude) {
+        List<LivePosition> assets = livePositionIndex.findInBoundingBox(
+                minLatitude, minLongitude, maxLatitude, maxLongitude);
+        return ResponseEntity.ok(new ApiResponse<>(true, "Assets in bounding box retrieved", assets));
+    }
+
+    @GetMapping("/nearest")
+    @Operation(summary = "Find the k assets nearest to a point",
+            description = "Served from the in-memory live position index")
+    public ResponseEntity<ApiResponse<List<NearbyAssetDTO>>> getNearestAssets(
+            @RequestParam double latitude,
+            @RequestParam double longitude,
+            @RequestParam(defaultValue = "5") int k) {
+        List<NearbyAssetDTO> assets = livePositionIndex.findNearest(latitude, longitude, k);
+        return ResponseEntity.ok(new ApiResponse<>(true, "Nearest assets retrieved", assets));
+    }
+}
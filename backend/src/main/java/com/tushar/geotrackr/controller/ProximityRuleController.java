@@ -0,0 +1,86 @@
+package com.tushar.geotrackr.controller;
+
+import com.tushar.geotrackr.dto.ApiResponse;
+import com.tushar.geotrackr.dto.ProximityRuleCreateDTO;
+import com.tushar.geotrackr.entity.ProximityRule;
+import com.tushar.geotrackr.entity.User;
+import com.tushar.geotrackr.repository.UserRepository;
+import com.tushar.geotrackr.security.AuthenticatedUser;
+import com.tushar.geotrackr.service.ProximityService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/proximity-rules")
+@RequiredArgsConstructor
+@SecurityRequirement(name = "bearerAuth")
+@Tag(name = "Proximity Rules", description = "Asset-to-Asset Proximity Alert APIs")
+public class ProximityRuleController {
+
+    private final ProximityService proximityService;
+    private final UserRepository userRepository;
+
+    @PostMapping
+    @Operation(summary = "Create proximity rule",
+            description = "Alerts on /topic/events/proximity when two matching assets come within the distance")
+    public ResponseEntity<ApiResponse<ProximityRule>> createRule(
+            @Valid @RequestBody ProximityRuleCreateDTO dto,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+
+        User createdBy = userRepository.getReferenceById(user.getId());
+
+        ProximityRule rule = new ProximityRule();
+        rule.setName(dto.getName());
+        rule.setAssetTypeA(dto.getAssetTypeA());
+        rule.setAssetTypeB(dto.getAssetTypeB());
+        rule.setDistance(dto.getDistance());
+
+        ProximityRule created = proximityService.createRule(rule, createdBy);
+        return ResponseEntity.ok(new ApiResponse<>(true, "Proximity rule created successfully", created));
+    }
+
+    @GetMapping
+    @Operation(summary = "Get all proximity rules")
+    public ResponseEntity<ApiResponse<List<ProximityRule>>> getAllRules() {
+        return ResponseEntity.ok(new ApiResponse<>(true, "Fetched all proximity rules",
+                proximityService.getAllRules()));
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Get proximity rule by ID")
+    public ResponseEntity<ApiResponse<ProximityRule>> getRuleById(@PathVariable Long id) {
+        return ResponseEntity.ok(new ApiResponse<>(true, "Fetched proximity rule",
+                proximityService.getRuleById(id)));
+    }
+
+    @PutMapping("/{id}")
+    @Operation(summary = "Update proximity rule")
+    public ResponseEntity<ApiResponse<ProximityRule>> updateRule(
+            @PathVariable Long id,
+            @Valid @RequestBody ProximityRuleCreateDTO dto) {
+
+        ProximityRule rule = new ProximityRule();
+        rule.setName(dto.getName());
+        rule.setAssetTypeA(dto.getAssetTypeA());
+        rule.setAssetTypeB(dto.getAssetTypeB());
+        rule.setDistance(dto.getDistance());
+
+        ProximityRule updated = proximityService.updateRule(id, rule);
+        return ResponseEntity.ok(new ApiResponse<>(true, "Proximity rule updated successfully", updated));
+    }
+
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Delete proximity rule")
+    public ResponseEntity<ApiResponse<Void>> deleteRule(@PathVariable Long id) {
+        proximityService.deleteRule(id);
+        return ResponseEntity.ok(new ApiResponse<>(true, "Proximity rule deleted", null));
+    }
+}
@@ -0,0 +1,102 @@
+package com.tushar.geotrackr.controller;
+
+import com.tushar.geotrackr.dto.ApiResponse;
+import com.tushar.geotrackr.dto.ReplayRequestDTO;
+import com.tushar.geotrackr.dto.ReplaySessionDTO;
+import com.tushar.geotrackr.security.AuthenticatedUser;
+import com.tushar.geotrackr.service.ReplayService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * REST Controller for historical replay sessions
+ * Frames are streamed over WebSocket to the destination returned on start
+ */
+@RestController
+@RequestMapping("/api/replay")
+@RequiredArgsConstructor
+@SecurityRequirement(name = "bearerAuth")
+@Tag(name = "Replay", description = "Historical Location Replay APIs")
+public class ReplayController {
+
+    private final ReplayService replayService;
+
+    @PostMapping
+    @Operation(summary = "Start a replay session",
+            description = "Replays GPS history between two timestamps at the requested speed over /topic/replay/{sessionId}")
+    public ResponseEntity<ApiResponse<ReplaySessionDTO>> startReplay(
+            @Valid @RequestBody ReplayRequestDTO request,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        ReplaySessionDTO session = replayService.startReplay(request, user);
+        return ResponseEntity.ok(new ApiResponse<>(true, "Replay started", session));
+    }
+
+    @GetMapping("/{sessionId}")
+    @Operation(summary = "Get replay session status")
+    public ResponseEntity<ApiResponse<ReplaySessionDTO>> getReplay(
+            @PathVariable String sessionId,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        return ResponseEntity.ok(new ApiResponse<>(true, "Replay session retrieved",
+                replayService.getSession(sessionId, user)));
+    }
+
+    @PostMapping("/{sessionId}/pause")
+    @Operation(summary = "Pause a replay session")
+    public ResponseEntity<ApiResponse<ReplaySessionDTO>> pauseReplay(
+            @PathVariable String sessionId,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        return ResponseEntity.ok(new ApiResponse<>(true, "Replay paused",
+                replayService.pause(sessionId, user)));
+    }
+
+    @PostMapping("/{sessionId}/resume")
+    @Operation(summary = "Resume a paused replay session")
+    public ResponseEntity<ApiResponse<ReplaySessionDTO>> resumeReplay(
+            @PathVariable String sessionId,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        return ResponseEntity.ok(new ApiResponse<>(true, "Replay resumed",
+                replayService.resume(sessionId, user)));
+    }
+
+    /**
+     * Seek the replay clock
+     * @param timestamp New position (ISO format: 2025-10-01T10:15:00)
+     */
+    @PostMapping("/{sessionId}/seek")
+    @Operation(summary = "Seek a replay session to a timestamp")
+    public ResponseEntity<ApiResponse<ReplaySessionDTO>> seekReplay(
+            @PathVariable String sessionId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime timestamp,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        return ResponseEntity.ok(new ApiResponse<>(true, "Replay position updated",
+                replayService.seek(sessionId, timestamp, user)));
+    }
+
+    @PostMapping("/{sessionId}/speed")
+    @Operation(summary = "Change replay speed")
+    public ResponseEntity<ApiResponse<ReplaySessionDTO>> changeSpeed(
+            @PathVariable String sessionId,
+            @RequestParam double speed,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        return ResponseEntity.ok(new ApiResponse<>(true, "Replay speed updated",
+                replayService.changeSpeed(sessionId, speed, user)));
+    }
+
+    @DeleteMapping("/{sessionId}")
+    @Operation(summary = "Stop a replay session")
+    public ResponseEntity<ApiResponse<Void>> stopReplay(
+            @PathVariable String sessionId,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        replayService.stop(sessionId, user);
+        return ResponseEntity.ok(new ApiResponse<>(true, "Replay stopped", null));
+    }
+}
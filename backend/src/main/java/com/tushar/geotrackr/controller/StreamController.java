@@ -0,0 +1,66 @@
+package com.tushar.geotrackr.controller;
+
+import com.tushar.geotrackr.dto.ApiResponse;
+import com.tushar.geotrackr.dto.StreamTokenResponse;
+import com.tushar.geotrackr.security.AuthenticatedUser;
+import com.tushar.geotrackr.security.JwtTokenProvider;
+import com.tushar.geotrackr.service.SseStreamService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * REST Controller for Server-Sent Events feeds
+ * Read-only alternative to the STOMP topics for dashboards, limited to the caller's assets.
+ * EventSource clients, which cannot send an Authorization header, pass a stream token as ?token=.
+ */
+@RestController
+@RequestMapping("/api/stream")
+@RequiredArgsConstructor
+@SecurityRequirement(name = "bearerAuth")
+@Tag(name = "Live Streams", description = "Server-Sent Events feeds of positions and geofence events")
+public class StreamController {
+
+    private final SseStreamService sseStreamService;
+    private final JwtTokenProvider jwtTokenProvider;
+
+    @PostMapping("/token")
+    @Operation(summary = "Get a stream token",
+            description = "Short-lived token for EventSource clients, passed as ?token= to the stream endpoints")
+    public ResponseEntity<ApiResponse<StreamTokenResponse>> createStreamToken(
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        StreamTokenResponse response = new StreamTokenResponse(jwtTokenProvider.generateStreamToken(user),
+                jwtTokenProvider.getStreamExpiration());
+        return ResponseEntity.ok(new ApiResponse<>(true, "Stream token issued", response));
+    }
+
+    @GetMapping(value = "/locations", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream positions",
+            description = "Batches of positions (\"locations\" events) of the caller's assets; " +
+                    "starts with a snapshot, or with the missed batches when Last-Event-ID is sent")
+    public SseEmitter streamLocations(
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        return sseStreamService.subscribe(SseStreamService.Feed.LOCATIONS, lastEventId, user);
+    }
+
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream geofence events",
+            description = "Batches of geofence events (\"geofence-events\" events) of the caller's " +
+                    "assets; sends the missed events first when Last-Event-ID is sent")
+    public SseEmitter streamEvents(
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        return sseStreamService.subscribe(SseStreamService.Feed.EVENTS, lastEventId, user);
+    }
+}
@@ -1,24 +1,28 @@
 package com.tushar.geotrackr.controller;
 
 import com.tushar.geotrackr.dto.GPSStatusMessage;
+import com.tushar.geotrackr.dto.LocationAckDTO;
 import com.tushar.geotrackr.dto.LocationUpdateDTO;
-import com.tushar.geotrackr.dto.LocationUpdateMessage;
-import com.tushar.geotrackr.entity.Asset;
-import com.tushar.geotrackr.entity.GeofenceEvent;
-import com.tushar.geotrackr.service.AssetService;
+import com.tushar.geotrackr.dto.LocationUpdateResult;
+import com.tushar.geotrackr.dto.ResumeRequest;
+import com.tushar.geotrackr.dto.ViewportDTO;
+import com.tushar.geotrackr.security.AssetScope;
+import com.tushar.geotrackr.security.DevicePrincipal;
+import com.tushar.geotrackr.security.StompAuthenticationService;
+import com.tushar.geotrackr.service.LocationSnapshotService;
 import com.tushar.geotrackr.service.LocationTrackingService;
+import com.tushar.geotrackr.service.StreamResumeService;
+import com.tushar.geotrackr.service.ViewportRegistry;
 import com.tushar.geotrackr.service.WebSocketService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.stereotype.Controller;
 
 import java.security.Principal;
 import java.time.LocalDateTime;
-import java.util.List;
 
 /**
  * WebSocket controller for handling incoming messages from clients
@@ -30,71 +34,98 @@ public class WebSocketController {
 
     private final LocationTrackingService locationTrackingService;
     private final WebSocketService webSocketService;
-    private final AssetService assetService;
+    private final ViewportRegistry viewportRegistry;
+    private final LocationSnapshotService locationSnapshotService;
+    private final StreamResumeService streamResumeService;
+    private final StompAuthenticationService stompAuthenticationService;
 
     /**
      * Handle location update from GPS device/client
      * Clients send to: /app/location/update
-     * Broadcast to: /topic/location/all
+     * Broadcast to: /topic/location/all (conflated, by LocationTrackingService)
+     * Acknowledged on: /user/queue/location/ack, if the session subscribed to it
      *
      * @param locationUpdate Location data from client
-     * @param principal Authenticated user
-     * @return LocationUpdateMessage to broadcast
+     * @param headerAccessor Session of the sender, with its cached asset scope
+     * @param principal Authenticated user or device
      */
     @MessageMapping("/location/update")
-    @SendTo("/topic/location/all")
-    public LocationUpdateMessage handleLocationUpdate(
+    public void handleLocationUpdate(
             @Payload LocationUpdateDTO locationUpdate,
+            SimpMessageHeaderAccessor headerAccessor,
             Principal principal) {
 
         log.info("Received WebSocket location update for asset: {} from user: {}",
                 locationUpdate.getAssetId(),
                 principal != null ? principal.getName() : "anonymous");
 
-        try {
-            // Process location update and check geofences
-            List<GeofenceEvent> events = locationTrackingService.processLocationUpdate(locationUpdate);
-
-            // Get updated asset
-            Asset asset = assetService.getAssetById(locationUpdate.getAssetId());
-
-            // Create location message
-            LocationUpdateMessage message = webSocketService.createLocationMessage(asset);
-
-            // Broadcast geofence events if any
-            if (!events.isEmpty()) {
-                for (GeofenceEvent event : events) {
-                    webSocketService.broadcastGeofenceEvent(
-                            webSocketService.createEventMessage(event));
-                }
-            }
+        // Device sessions (device-key on CONNECT) report for their own asset only
+        if (principal instanceof DevicePrincipal device) {
+            device.bind(locationUpdate);
+        }
+        stompAuthenticationService.checkAsset(headerAccessor, locationUpdate.getAssetId());
 
-            return message;
+        LocationUpdateResult result;
+        try {
+            // Process location update, check geofences and broadcast position and events
+            result = locationTrackingService.processLocationUpdate(locationUpdate);
 
         } catch (Exception e) {
             log.error("Error processing WebSocket location update: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to process location update");
         }
+
+        // Sessions subscribed to /user/queue/location/ack get the suggested next report time
+        webSocketService.sendLocationAck(headerAccessor, LocationAckDTO.of(locationUpdate.getAssetId(), result));
     }
 
     /**
      * Handle GPS status update
      * Clients send to: /app/gps/status
-     * Broadcast to: /topic/gps/status
+     * Broadcast to: /topic/gps/status and the asset owner's /user/queue/gps/status
      */
     @MessageMapping("/gps/status")
-    @SendTo("/topic/gps/status")
-    public GPSStatusMessage handleGPSStatus(@Payload GPSStatusMessage status) {
+    public void handleGPSStatus(@Payload GPSStatusMessage status,
+                                            SimpMessageHeaderAccessor headerAccessor) {
+        stompAuthenticationService.checkAsset(headerAccessor, status.getAssetId());
         log.debug("Received GPS status for asset: {} - Status: {}",
                 status.getAssetId(), status.getStatus());
 
         status.setTimestamp(LocalDateTime.now());
-        return status;
+        webSocketService.broadcastGPSStatus(status);
+    }
+
+    /**
+     * Update the map viewport of this session
+     * Clients send to: /app/viewport
+     * Location updates inside the viewport are delivered to: /user/queue/location/viewport,
+     * starting with a snapshot of the assets already inside it
+     */
+    @MessageMapping("/viewport")
+    public void handleViewport(@Payload ViewportDTO viewport,
+                               SimpMessageHeaderAccessor headerAccessor,
+                               Principal principal) {
+        viewportRegistry.update(headerAccessor.getSessionId(), viewport,
+                AssetScope.from(headerAccessor.getSessionAttributes()));
+        locationSnapshotService.sendViewportSnapshot(headerAccessor.getSessionId());
+    }
+
+    /**
+     * Send the messages missed on a destination since the given sequence number
+     * Clients send to: /app/resume
+     * Missed messages are delivered to: /user/queue/resume
+     */
+    @MessageMapping("/resume")
+    public void handleResume(@Payload ResumeRequest request, SimpMessageHeaderAccessor headerAccessor) {
+        streamResumeService.resume(headerAccessor.getSessionId(),
+                AssetScope.from(headerAccessor.getSessionAttributes()), request);
     }
 
     /**
      * Handle client connection
      * Clients send to: /app/connect
+     * The session is authenticated on the STOMP CONNECT frame (StompAuthChannelInterceptor);
+     * the principal here is that session user
      */
     @MessageMapping("/connect")
     public void handleConnect(SimpMessageHeaderAccessor headerAccessor, Principal principal) {
@@ -0,0 +1,75 @@
+package com.tushar.geotrackr.controller;
+
+import com.tushar.geotrackr.dto.ApiResponse;
+import com.tushar.geotrackr.dto.WebhookCreateDTO;
+import com.tushar.geotrackr.entity.WebhookDeadLetter;
+import com.tushar.geotrackr.entity.WebhookSubscription;
+import com.tushar.geotrackr.security.AuthenticatedUser;
+import com.tushar.geotrackr.service.WebhookService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/webhooks")
+@RequiredArgsConstructor
+@SecurityRequirement(name = "bearerAuth")
+@Tag(name = "Webhooks", description = "Geofence event push over HTTP")
+public class WebhookController {
+
+    private final WebhookService webhookService;
+
+    @PostMapping
+    @Operation(summary = "Register a webhook for the geofence events of your assets",
+            description = "Events are POSTed as JSON arrays; with a secret each request carries " +
+                    "X-Geotrackr-Signature: sha256=<HMAC-SHA256 of the body>")
+    public ResponseEntity<ApiResponse<WebhookSubscription>> createWebhook(
+            @Valid @RequestBody WebhookCreateDTO dto,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        WebhookSubscription created = webhookService.createSubscription(dto, user);
+        return ResponseEntity.ok(new ApiResponse<>(true, "Webhook created successfully", created));
+    }
+
+    @GetMapping
+    @Operation(summary = "Get your webhooks")
+    public ResponseEntity<ApiResponse<List<WebhookSubscription>>> getWebhooks(
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        return ResponseEntity.ok(new ApiResponse<>(true, "Webhooks retrieved",
+                webhookService.getSubscriptions(user)));
+    }
+
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Delete webhook")
+    public ResponseEntity<ApiResponse<Void>> deleteWebhook(
+            @PathVariable Long id,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        webhookService.deleteSubscription(id, user);
+        return ResponseEntity.ok(new ApiResponse<>(true, "Webhook deleted", null));
+    }
+
+    @GetMapping("/{id}/dead-letters")
+    @Operation(summary = "Get event batches that could not be delivered to the webhook")
+    public ResponseEntity<ApiResponse<List<WebhookDeadLetter>>> getDeadLetters(
+            @PathVariable Long id,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        return ResponseEntity.ok(new ApiResponse<>(true, "Dead letters retrieved",
+                webhookService.getDeadLetters(id, user)));
+    }
+
+    @PostMapping("/{id}/dead-letters/{deadLetterId}/redeliver")
+    @Operation(summary = "Queue the events of a dead letter for delivery again")
+    public ResponseEntity<ApiResponse<Integer>> redeliver(
+            @PathVariable Long id,
+            @PathVariable Long deadLetterId,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        int events = webhookService.redeliver(id, deadLetterId, user);
+        return ResponseEntity.ok(new ApiResponse<>(true, "Dead letter queued for redelivery", events));
+    }
+}
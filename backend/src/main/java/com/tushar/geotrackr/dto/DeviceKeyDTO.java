@@ -0,0 +1,20 @@
+package com.tushar.geotrackr.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A newly issued device key; apiKey is only returned here and cannot be read again
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeviceKeyDTO {
+    private Long assetId;
+    private String apiKey;
+    private String keyPrefix;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,22 @@
+package com.tushar.geotrackr.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Periodic summary of the GPS status of all tracked assets
+ * Lists only the assets that are not CONNECTED; status changes are sent as they happen.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GPSStatusDigestMessage {
+    private LocalDateTime timestamp;
+    private Map<String, Long> counts; // assets per status
+    private List<GPSStatusMessage> degraded; // WEAK_SIGNAL, STALE and OFFLINE assets
+}
@@ -11,7 +11,7 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class GPSStatusMessage {
     private Long assetId;
-    private String status; // CONNECTED, DISCONNECTED, WEAK_SIGNAL
+    private String status; // CONNECTED, WEAK_SIGNAL, STALE, OFFLINE
     private Integer satellites;
     private Double accuracy;
     private LocalDateTime timestamp;
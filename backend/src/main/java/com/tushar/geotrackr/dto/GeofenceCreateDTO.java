@@ -3,6 +3,8 @@ package com.tushar.geotrackr.dto;
 import com.tushar.geotrackr.entity.Geofence;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -27,4 +29,13 @@ public class GeofenceCreateDTO {
 
     @NotNull(message = "Alert type is required")
     private Geofence.AlertType alertType;
+
+    @PositiveOrZero(message = "Buffer distance cannot be negative")
+    private Double bufferDistance; // meters
+
+    @PositiveOrZero(message = "Minimum dwell time cannot be negative")
+    private Integer minDwellSeconds;
+
+    @Positive(message = "Dwell alert time must be greater than 0")
+    private Integer dwellAlertMinutes;
 }
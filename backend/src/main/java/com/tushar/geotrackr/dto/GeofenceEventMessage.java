@@ -20,4 +20,5 @@ public class GeofenceEventMessage {
     private Double longitude;
     private LocalDateTime timestamp;
     private String message; // Human-readable message
+    private Long sequence; // position in the destination's stream, used to resume after a reconnect
 }
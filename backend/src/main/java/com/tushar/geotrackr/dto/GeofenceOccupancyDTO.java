@@ -0,0 +1,16 @@
+package com.tushar.geotrackr.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GeofenceOccupancyDTO {
+    private Long geofenceId;
+    private Integer occupancy;
+    private Set<Long> assetIds;
+}
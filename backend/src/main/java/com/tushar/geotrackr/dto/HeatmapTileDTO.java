@@ -0,0 +1,25 @@
+package com.tushar.geotrackr.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Density grid for one web-mercator tile
+ * counts is row-major: counts[pixelY * resolution + pixelX]
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HeatmapTileDTO {
+    private Integer z;
+    private Integer x;
+    private Integer y;
+    private Integer resolution;
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private Long maxCount;
+    private long[] counts;
+}
@@ -0,0 +1,24 @@
+package com.tushar.geotrackr.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Compact current position of an asset held in the live position index
+ * Instances are replaced on every fix, never mutated in place
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LivePosition {
+    private Long assetId;
+    private String assetName;
+    private String assetType;
+    private Long ownerId;
+    private Double latitude;
+    private Double longitude;
+    private LocalDateTime timestamp;
+}
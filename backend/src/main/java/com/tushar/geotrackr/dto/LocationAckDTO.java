@@ -0,0 +1,23 @@
+package com.tushar.geotrackr.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Acknowledgement of a device position, with the suggested delay before the next one
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationAckDTO {
+    private Long assetId;
+    private int eventCount;
+    private long nextReportInterval; // milliseconds
+    private Double boundaryDistance; // meters, null if no geofence boundary is nearby
+
+    public static LocationAckDTO of(Long assetId, LocationUpdateResult result) {
+        return new LocationAckDTO(assetId, result.getEvents().size(),
+                result.getNextReportInterval(), result.getBoundaryDistance());
+    }
+}
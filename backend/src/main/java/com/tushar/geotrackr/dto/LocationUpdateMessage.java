@@ -1,5 +1,6 @@
 package com.tushar.geotrackr.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -8,8 +9,10 @@ import java.time.LocalDateTime;
 
 /**
  * Real-time location update message for WebSocket
+ * Null fields are omitted to keep batched frames and snapshots compact
  */
 @Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @NoArgsConstructor
 @AllArgsConstructor
 public class LocationUpdateMessage {
@@ -23,4 +26,5 @@ public class LocationUpdateMessage {
     private Double heading; // degrees (0-360)
     private Integer satellites; // GPS satellite count
     private Double accuracy; // meters
+    private Long sequence; // position in the destination's stream, used to resume after a reconnect
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.tushar.geotrackr.dto;
+
+import com.tushar.geotrackr.entity.GeofenceEvent;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Outcome of a processed location update: the geofence events it triggered and
+ * when the device should report next
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationUpdateResult {
+    private List<GeofenceEvent> events;
+    private long nextReportInterval; // milliseconds
+    private Double boundaryDistance; // meters to the closest geofence boundary, null if none nearby
+}
@@ -0,0 +1,16 @@
+package com.tushar.geotrackr.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Live asset position together with its distance from a query point
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearbyAssetDTO {
+    private LivePosition position;
+    private Double distanceMeters;
+}
@@ -0,0 +1,22 @@
+package com.tushar.geotrackr.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Real-time change of the set of assets inside a geofence
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OccupancyUpdateMessage {
+    private Long geofenceId;
+    private String geofenceName;
+    private Long assetId;
+    private String change; // ENTER or EXIT
+    private Integer occupancy; // assets inside after the change
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,29 @@
+package com.tushar.geotrackr.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Real-time asset-to-asset proximity alert for WebSocket
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProximityEventMessage {
+    private Long ruleId;
+    private String ruleName;
+    private Long assetId;
+    private String assetName;
+    private Long otherAssetId;
+    private String otherAssetName;
+    private String eventType; // APPROACH or SEPARATE
+    private Double distance; // meters between the two assets
+    private Double latitude;
+    private Double longitude;
+    private LocalDateTime timestamp;
+    private String message; // Human-readable message
+    private Long sequence; // position in the destination's stream, used to resume after a reconnect
+}
@@ -0,0 +1,24 @@
+package com.tushar.geotrackr.dto;
+
+import com.tushar.geotrackr.entity.Asset;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProximityRuleCreateDTO {
+    @NotBlank(message = "Rule name is required")
+    private String name;
+
+    private Asset.AssetType assetTypeA; // null matches any type
+    private Asset.AssetType assetTypeB; // null matches any type
+
+    @NotNull(message = "Distance is required")
+    @Positive(message = "Distance must be greater than 0")
+    private Double distance; // meters
+}
@@ -0,0 +1,31 @@
+package com.tushar.geotrackr.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Request to start a historical replay session
+ * Omit assetIds to replay every asset that reported in the time window
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplayRequestDTO {
+
+    @NotNull(message = "Start time is required")
+    private LocalDateTime startTime;
+
+    @NotNull(message = "End time is required")
+    private LocalDateTime endTime;
+
+    @Positive(message = "Speed must be greater than 0")
+    private Double speed = 10.0; // playback multiplier, e.g. 10x - 100x
+
+    private List<Long> assetIds;
+}
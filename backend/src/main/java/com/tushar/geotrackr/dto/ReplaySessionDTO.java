@@ -0,0 +1,24 @@
+package com.tushar.geotrackr.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Current state of a replay session
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplaySessionDTO {
+    private String sessionId;
+    private String destination; // STOMP topic the frames are pushed to
+    private String status; // RUNNING, PAUSED, FINISHED
+    private Double speed;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private LocalDateTime currentTime; // replay clock position
+    private Long framesSent;
+}
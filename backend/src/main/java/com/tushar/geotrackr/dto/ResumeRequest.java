@@ -0,0 +1,25 @@
+package com.tushar.geotrackr.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Request to receive the messages a client missed on a destination while disconnected
+ * Clients send to: /app/resume
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumeRequest {
+
+    @NotBlank
+    private String destination; // e.g. /topic/events/all
+
+    @NotNull
+    private Long lastSequence; // sequence of the last message received
+
+    private Long lastEventId; // last geofence event id received, used if the buffer was overwritten
+}
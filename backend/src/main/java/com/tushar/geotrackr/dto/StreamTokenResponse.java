@@ -0,0 +1,11 @@
+package com.tushar.geotrackr.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class StreamTokenResponse {
+    private String token;
+    private long expiresIn; // milliseconds
+}
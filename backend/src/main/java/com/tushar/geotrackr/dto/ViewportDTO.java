@@ -0,0 +1,28 @@
+package com.tushar.geotrackr.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Map viewport (bounding box) of a WebSocket session
+ * Clients send to: /app/viewport, or pass it as a "viewport" header when subscribing
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ViewportDTO {
+
+    @NotNull
+    private Double minLatitude;
+
+    @NotNull
+    private Double minLongitude;
+
+    @NotNull
+    private Double maxLatitude;
+
+    @NotNull
+    private Double maxLongitude;
+}
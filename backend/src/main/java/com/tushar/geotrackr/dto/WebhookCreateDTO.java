@@ -0,0 +1,18 @@
+package com.tushar.geotrackr.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WebhookCreateDTO {
+    @NotBlank(message = "URL is required")
+    @Pattern(regexp = "^https?://.+", message = "URL must start with http:// or https://")
+    private String url;
+
+    private String secret; // optional, signs each request with HMAC-SHA256
+}
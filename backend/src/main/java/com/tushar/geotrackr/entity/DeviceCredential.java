@@ -0,0 +1,48 @@
+package com.tushar.geotrackr.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * API key a GPS device uses to report the positions of one asset
+ * Only the SHA-256 hash of the key is stored; the key itself is shown once when issued.
+ */
+@Entity
+@Table(name = "device_credentials", indexes = {
+        @Index(name = "idx_device_credentials_asset", columnList = "asset_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+public class DeviceCredential {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "asset_id", nullable = false)
+    @JsonIgnore
+    private Asset asset;
+
+    @Column(name = "key_hash", nullable = false, unique = true, length = 64)
+    private String keyHash; // hex SHA-256 of the key
+
+    @Column(name = "key_prefix", nullable = false, length = 16)
+    private String keyPrefix; // first characters of the key, to tell keys apart
+
+    private boolean active = true;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    private LocalDateTime revokedAt;
+}
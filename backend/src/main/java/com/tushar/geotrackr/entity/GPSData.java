@@ -13,7 +13,9 @@ import java.time.LocalDateTime;
  * Optional - use if you want to track GPS signal quality
  */
 @Entity
-@Table(name = "gps_data")
+@Table(name = "gps_data", indexes = {
+        @Index(name = "idx_gps_data_asset_recorded", columnList = "asset_id, recorded_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -8,6 +8,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
+import org.locationtech.jts.geom.Polygon;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
@@ -40,9 +41,24 @@ public class Geofence {
     @Column(columnDefinition = "TEXT")
     private String polygonCoordinates;
 
+    // polygonCoordinates parsed once per instance; the PostGIS columns are not mapped,
+    // see SpatialSchemaInitializer
+    @Transient
+    @JsonIgnore
+    private Polygon boundary;
+
     @Enumerated(EnumType.STRING)
     private AlertType alertType = AlertType.BOTH;
 
+    // Hysteresis: a transition needs a fix this many meters past the boundary
+    private Double bufferDistance;
+
+    // Seconds the asset must stay on the new side before ENTER/EXIT is confirmed
+    private Integer minDwellSeconds;
+
+    // Minutes inside after which a DWELL event is recorded, once per stay
+    private Integer dwellAlertMinutes;
+
     private boolean active = true;
 
     @ManyToOne(fetch = FetchType.LAZY)
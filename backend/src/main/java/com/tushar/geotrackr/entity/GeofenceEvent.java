@@ -10,7 +10,9 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "geofence_events")
+@Table(name = "geofence_events", indexes = {
+        @Index(name = "idx_geofence_events_unsent", columnList = "notification_sent, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -35,12 +37,17 @@ public class GeofenceEvent {
     private double latitude;
     private double longitude;
 
+    private LocalDateTime timestamp; // when it happened, set by GeofenceEventService; interpolated for pass-throughs
+
     @CreationTimestamp
-    private LocalDateTime timestamp;
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt; // when it was stored, the outbox expiry is based on this
+
+    private boolean notificationSent; // outbox flag, set once GeofenceEventDispatcher has delivered it
 
-    private boolean notificationSent;
+    private LocalDateTime expiredAt; // outbox dead letter: left undelivered as a backlog older than outbox.max-age
 
     public enum EventType {
-        ENTER, EXIT
+        ENTER, EXIT, DWELL // DWELL: still inside dwellAlertMinutes after entering
     }
 }
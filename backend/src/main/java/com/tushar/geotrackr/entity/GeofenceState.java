@@ -0,0 +1,40 @@
+package com.tushar.geotrackr.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Confirmed side of a geofence for one asset, written on every transition whether or
+ * not the fence alerts on it; geofence_events only holds the alerts
+ */
+@Entity
+@Table(name = "geofence_states",
+        uniqueConstraints = @UniqueConstraint(name = "uk_geofence_state", columnNames = {"asset_id", "geofence_id"}),
+        indexes = @Index(name = "idx_geofence_states_geofence", columnList = "geofence_id, inside"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GeofenceState {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "asset_id", nullable = false)
+    private Asset asset;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "geofence_id", nullable = false)
+    private Geofence geofence;
+
+    @Column(nullable = false)
+    private boolean inside;
+
+    @Column(name = "changed_at", nullable = false)
+    private LocalDateTime changedAt;
+}
@@ -0,0 +1,46 @@
+package com.tushar.geotrackr.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Pre-aggregated count of GPS fixes in one web-mercator tile cell for one time bucket
+ * cellIndex is row-major within the tile: pixelY * resolution + pixelX
+ */
+@Entity
+@Table(name = "heatmap_cells",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_heatmap_cell",
+                columnNames = {"zoom", "tile_x", "tile_y", "bucket_start", "cell_index"}),
+        indexes = @Index(name = "idx_heatmap_tile", columnList = "zoom, tile_x, tile_y, bucket_start"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HeatmapCell {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Integer zoom;
+
+    @Column(name = "tile_x", nullable = false)
+    private Integer tileX;
+
+    @Column(name = "tile_y", nullable = false)
+    private Integer tileY;
+
+    @Column(name = "cell_index", nullable = false)
+    private Integer cellIndex;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(nullable = false)
+    private Long count;
+}
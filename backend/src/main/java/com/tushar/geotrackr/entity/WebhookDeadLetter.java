@@ -0,0 +1,53 @@
+package com.tushar.geotrackr.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Webhook batch that could not be delivered after all retries
+ */
+@Entity
+@Table(name = "webhook_dead_letters", indexes = {
+        @Index(name = "idx_webhook_dead_letters_subscription", columnList = "subscription_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+public class WebhookDeadLetter {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "subscription_id", nullable = false)
+    @JsonIgnore
+    private WebhookSubscription subscription;
+
+    @Column(name = "subscription_id", insertable = false, updatable = false)
+    private Long subscriptionId;
+
+    @Lob
+    @Column(nullable = false)
+    private String payload; // JSON array of events
+
+    private int eventCount;
+
+    private int attempts;
+
+    private Integer lastStatus; // HTTP status of the last attempt, null when no response
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+}
@@ -7,6 +7,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface AssetRepository extends JpaRepository<Asset, Long> {
@@ -17,4 +18,13 @@ public interface AssetRepository extends JpaRepository<Asset, Long> {
     @Query("SELECT a FROM Asset a WHERE a.owner.id = :ownerId AND a.type = :type")
     List<Asset> findByOwnerIdAndType(@Param("ownerId") Long ownerId,
                                      @Param("type") Asset.AssetType type);
+
+    @Query("SELECT a.id, a.owner.username FROM Asset a")
+    List<Object[]> findAllOwnerUsernames();
+
+    @Query("SELECT a.id FROM Asset a WHERE a.owner.id = :ownerId")
+    List<Long> findIdsByOwnerId(@Param("ownerId") Long ownerId);
+
+    @Query("SELECT a.owner.username FROM Asset a WHERE a.id = :assetId")
+    Optional<String> findOwnerUsernameById(@Param("assetId") Long assetId);
 }
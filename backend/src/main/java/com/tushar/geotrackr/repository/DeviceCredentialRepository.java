@@ -0,0 +1,18 @@
+package com.tushar.geotrackr.repository;
+
+import com.tushar.geotrackr.entity.DeviceCredential;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface DeviceCredentialRepository extends JpaRepository<DeviceCredential, Long> {
+
+    List<DeviceCredential> findByAssetIdAndActiveTrue(Long assetId);
+
+    @Query("SELECT c.keyHash, c.asset.id, c.keyPrefix FROM DeviceCredential c " +
+            "WHERE c.active = true AND c.asset.active = true")
+    List<Object[]> findActiveKeys();
+}
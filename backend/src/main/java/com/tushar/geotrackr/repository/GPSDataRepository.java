@@ -1,6 +1,7 @@
 package com.tushar.geotrackr.repository;
 
 import com.tushar.geotrackr.entity.GPSData;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -48,6 +49,45 @@ public interface GPSDataRepository extends JpaRepository<GPSData, Long> {
             @Param("end") LocalDateTime end
     );
 
+    /**
+     * Find the assets that reported at least once within a date range
+     */
+    @Query("SELECT DISTINCT g.asset.id FROM GPSData g " +
+            "WHERE g.recordedAt BETWEEN :start AND :end")
+    List<Long> findAssetIdsRecordedBetween(
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end
+    );
+
+    /**
+     * Keyset page of an asset's GPS history in time order, starting strictly after
+     * the (recordedAt, id) cursor. Used to stream history without loading it all.
+     */
+    @Query("SELECT g FROM GPSData g JOIN FETCH g.asset " +
+            "WHERE g.asset.id = :assetId " +
+            "AND (g.recordedAt > :after OR (g.recordedAt = :after AND g.id > :afterId)) " +
+            "AND g.recordedAt <= :end " +
+            "ORDER BY g.recordedAt ASC, g.id ASC")
+    List<GPSData> findPageAfter(
+            @Param("assetId") Long assetId,
+            @Param("after") LocalDateTime after,
+            @Param("afterId") Long afterId,
+            @Param("end") LocalDateTime end,
+            Pageable pageable
+    );
+
+    /**
+     * Keyset page over all GPS history in a date range, in id order
+     */
+    @Query("SELECT g FROM GPSData g WHERE g.id > :afterId " +
+            "AND g.recordedAt >= :start AND g.recordedAt < :end ORDER BY g.id ASC")
+    List<GPSData> findPageInRange(
+            @Param("afterId") Long afterId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end,
+            Pageable pageable
+    );
+
     /**
      * Delete old GPS data (for cleanup)
      */
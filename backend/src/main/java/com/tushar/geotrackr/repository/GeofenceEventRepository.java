@@ -1,12 +1,19 @@
 package com.tushar.geotrackr.repository;
 
 import com.tushar.geotrackr.entity.GeofenceEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -46,6 +53,59 @@ public interface GeofenceEventRepository extends JpaRepository<GeofenceEvent, Lo
             @Param("geofenceId") Long geofenceId
     );
 
+    // Latest event per (asset, geofence) pair, filtered by its type, as [geofenceId, assetId]
+    @Query("SELECT e.geofence.id, e.asset.id FROM GeofenceEvent e WHERE e.eventType IN :eventTypes " +
+            "AND e.id IN (SELECT MAX(l.id) FROM GeofenceEvent l GROUP BY l.asset.id, l.geofence.id)")
+    List<Object[]> findLatestPairsByEventTypes(@Param("eventTypes") Collection<GeofenceEvent.EventType> eventTypes);
+
+    // Stays still waiting for their DWELL event: the pair's latest event is an ENTER into an
+    // active fence with a dwell alert, as [geofenceId, assetId, eventId, timestamp, dwellAlertMinutes]
+    @Query("SELECT e.geofence.id, e.asset.id, e.id, e.timestamp, e.geofence.dwellAlertMinutes " +
+            "FROM GeofenceEvent e WHERE e.eventType = com.tushar.geotrackr.entity.GeofenceEvent$EventType.ENTER " +
+            "AND e.geofence.active = true AND e.geofence.dwellAlertMinutes IS NOT NULL " +
+            "AND e.id IN (SELECT MAX(l.id) FROM GeofenceEvent l GROUP BY l.asset.id, l.geofence.id)")
+    List<Object[]> findOpenDwellStays();
+
+    // Events after a given id with asset and geofence loaded, oldest first
+    @Query("SELECT e FROM GeofenceEvent e JOIN FETCH e.asset JOIN FETCH e.geofence " +
+            "WHERE e.id > :afterId ORDER BY e.id ASC")
+    List<GeofenceEvent> findAfterId(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Same, limited to the assets of one owner
+    @Query("SELECT e FROM GeofenceEvent e JOIN FETCH e.asset JOIN FETCH e.geofence " +
+            "WHERE e.id > :afterId AND e.asset.owner.username = :owner ORDER BY e.id ASC")
+    List<GeofenceEvent> findAfterIdForOwner(@Param("afterId") Long afterId, @Param("owner") String owner,
+                                            Pageable pageable);
+
+    // Same, limited to the given assets
+    @Query("SELECT e FROM GeofenceEvent e JOIN FETCH e.asset JOIN FETCH e.geofence " +
+            "WHERE e.id > :afterId AND e.asset.id IN :assetIds ORDER BY e.id ASC")
+    List<GeofenceEvent> findAfterIdForAssets(@Param("afterId") Long afterId,
+                                             @Param("assetIds") Collection<Long> assetIds, Pageable pageable);
+
+    // Outbox: unsent events, oldest first, locked; rows locked by another dispatcher are skipped (SKIP LOCKED)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT e FROM GeofenceEvent e WHERE e.notificationSent = false AND e.expiredAt IS NULL " +
+            "ORDER BY e.id ASC")
+    List<GeofenceEvent> findUnsentForUpdate(Pageable pageable);
+
+    @Query("SELECT e FROM GeofenceEvent e JOIN FETCH e.asset JOIN FETCH e.geofence " +
+            "WHERE e.id IN :ids ORDER BY e.id ASC")
+    List<GeofenceEvent> findWithAssetAndGeofenceByIdIn(@Param("ids") List<Long> ids);
+
+    @Modifying
+    @Query("UPDATE GeofenceEvent e SET e.notificationSent = true WHERE e.id IN :ids")
+    int markNotificationSent(@Param("ids") List<Long> ids);
+
+    // Dead-letter the undelivered backlog: expired events stay unsent but are no longer claimed.
+    // Rows stored before created_at existed fall back to the event time.
+    @Modifying
+    @Query("UPDATE GeofenceEvent e SET e.expiredAt = :now " +
+            "WHERE e.notificationSent = false AND e.expiredAt IS NULL " +
+            "AND COALESCE(e.createdAt, e.timestamp) < :cutoff")
+    int expireUnsentBefore(@Param("cutoff") LocalDateTime cutoff, @Param("now") LocalDateTime now);
+
     // Statistics queries
     @Query("SELECT COUNT(e) FROM GeofenceEvent e WHERE e.eventType = :eventType " +
             "AND e.timestamp BETWEEN :startDate AND :endDate")
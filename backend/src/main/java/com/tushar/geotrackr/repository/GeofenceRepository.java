@@ -2,10 +2,12 @@ package com.tushar.geotrackr.repository;
 
 import com.tushar.geotrackr.entity.Geofence;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -15,4 +17,30 @@ public interface GeofenceRepository extends JpaRepository<Geofence, Long> {
 
     @Query("SELECT g FROM Geofence g WHERE g.active = true AND g.type = :type")
     List<Geofence> findActiveGeofencesByType(@Param("type") Geofence.GeofenceType type);
+
+    // PostGIS prefilters (require the postgis extension, see SpatialSupport); the geometry
+    // columns are not mapped, SpatialSchemaInitializer creates them. Circles are measured on
+    // the sphere (use_spheroid = false), like GeoUtils.distanceMeters.
+
+    @Query(value = "SELECT * FROM geofences g WHERE g.active = true AND (" +
+            "(g.type = 'POLYGONAL' AND ST_Contains(g.boundary, ST_SetSRID(ST_MakePoint(:lon, :lat), 4326))) " +
+            "OR (g.type = 'CIRCULAR' AND ST_DWithin(g.center::geography, " +
+            "ST_SetSRID(ST_MakePoint(:lon, :lat), 4326)::geography, g.radius, false)))",
+            nativeQuery = true)
+    List<Geofence> findActiveContaining(@Param("lat") double lat, @Param("lon") double lon);
+
+    // Fences containing the point plus the given fences (e.g. those the asset is currently inside)
+    @Query(value = "SELECT * FROM geofences g WHERE g.active = true AND (g.id IN (:includeIds) " +
+            "OR (g.type = 'POLYGONAL' AND ST_Contains(g.boundary, ST_SetSRID(ST_MakePoint(:lon, :lat), 4326))) " +
+            "OR (g.type = 'CIRCULAR' AND ST_DWithin(g.center::geography, " +
+            "ST_SetSRID(ST_MakePoint(:lon, :lat), 4326)::geography, g.radius, false)))",
+            nativeQuery = true)
+    List<Geofence> findActiveCandidates(@Param("lat") double lat,
+                                        @Param("lon") double lon,
+                                        @Param("includeIds") Collection<Long> includeIds);
+
+    @Modifying
+    @Query(value = "UPDATE geofences SET boundary = ST_GeomFromText(CAST(:wkt AS text), 4326) WHERE id = :id",
+            nativeQuery = true)
+    void updateBoundary(@Param("id") Long id, @Param("wkt") String wkt);
 }
@@ -0,0 +1,39 @@
+package com.tushar.geotrackr.repository;
+
+import com.tushar.geotrackr.entity.GeofenceState;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface GeofenceStateRepository extends JpaRepository<GeofenceState, Long> {
+
+    Optional<GeofenceState> findByAssetIdAndGeofenceId(Long assetId, Long geofenceId);
+
+    // Row lock until the transaction ends, serializing transitions of one (asset, geofence) pair
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM GeofenceState s WHERE s.asset.id = :assetId AND s.geofence.id = :geofenceId")
+    Optional<GeofenceState> findForUpdate(@Param("assetId") Long assetId, @Param("geofenceId") Long geofenceId);
+
+    // An outside state for the pair to lock, unless it already has one
+    @Modifying
+    @Query(value = "INSERT INTO geofence_states (asset_id, geofence_id, inside, changed_at) " +
+            "VALUES (:assetId, :geofenceId, false, CURRENT_TIMESTAMP) ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertOutsideIfAbsent(@Param("assetId") Long assetId, @Param("geofenceId") Long geofenceId);
+
+    // Assets inside active geofences, as [geofenceId, assetId]
+    @Query("SELECT s.geofence.id, s.asset.id FROM GeofenceState s " +
+            "WHERE s.inside = true AND s.geofence.active = true")
+    List<Object[]> findInsideActiveGeofences();
+
+    @Modifying
+    @Query("DELETE FROM GeofenceState s WHERE s.geofence.id = :geofenceId")
+    int deleteByGeofenceId(@Param("geofenceId") Long geofenceId);
+}
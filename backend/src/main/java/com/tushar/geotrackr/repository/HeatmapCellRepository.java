@@ -0,0 +1,39 @@
+package com.tushar.geotrackr.repository;
+
+import com.tushar.geotrackr.entity.HeatmapCell;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface HeatmapCellRepository extends JpaRepository<HeatmapCell, Long> {
+
+    /**
+     * Summed cell counts for a range of tiles at one zoom level and time range
+     * Returns [tileX, tileY, cellIndex, count]
+     */
+    @Query("SELECT c.tileX, c.tileY, c.cellIndex, SUM(c.count) FROM HeatmapCell c " +
+            "WHERE c.zoom = :zoom " +
+            "AND c.tileX BETWEEN :minTileX AND :maxTileX " +
+            "AND c.tileY BETWEEN :minTileY AND :maxTileY " +
+            "AND c.bucketStart >= :start AND c.bucketStart < :end " +
+            "GROUP BY c.tileX, c.tileY, c.cellIndex")
+    List<Object[]> sumCells(
+            @Param("zoom") int zoom,
+            @Param("minTileX") int minTileX,
+            @Param("maxTileX") int maxTileX,
+            @Param("minTileY") int minTileY,
+            @Param("maxTileY") int maxTileY,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end
+    );
+
+    @Modifying
+    @Query("DELETE FROM HeatmapCell c WHERE c.bucketStart >= :start AND c.bucketStart < :end")
+    int deleteByBucketRange(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+}
@@ -0,0 +1,12 @@
+package com.tushar.geotrackr.repository;
+
+import com.tushar.geotrackr.entity.ProximityRule;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ProximityRuleRepository extends JpaRepository<ProximityRule, Long> {
+    List<ProximityRule> findByActiveTrue();
+}
@@ -0,0 +1,13 @@
+package com.tushar.geotrackr.repository;
+
+import com.tushar.geotrackr.entity.WebhookDeadLetter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface WebhookDeadLetterRepository extends JpaRepository<WebhookDeadLetter, Long> {
+
+    List<WebhookDeadLetter> findBySubscriptionIdOrderByIdDesc(Long subscriptionId);
+}
@@ -0,0 +1,18 @@
+package com.tushar.geotrackr.repository;
+
+import com.tushar.geotrackr.entity.WebhookSubscription;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface WebhookSubscriptionRepository extends JpaRepository<WebhookSubscription, Long> {
+
+    List<WebhookSubscription> findByOwnerIdAndActiveTrue(Long ownerId);
+
+    // Active subscriptions as [id, url, secret, owner username]
+    @Query("SELECT w.id, w.url, w.secret, w.owner.username FROM WebhookSubscription w WHERE w.active = true")
+    List<Object[]> findActiveEndpoints();
+}
@@ -0,0 +1,90 @@
+package com.tushar.geotrackr.security;
+
+import com.tushar.geotrackr.service.AssetOwnerRegistry;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assets a WebSocket session may subscribe to and report for, resolved once on CONNECT
+ * and kept in the session attributes
+ */
+public final class AssetScope {
+
+    public static final String SESSION_ATTRIBUTE = "geotrackr.assetScope";
+
+    private static final AssetScope ALL = new AssetScope(null, null);
+
+    private final String owner; // username whose new assets join the scope, null for devices
+    private final Set<Long> assetIds; // null = every asset
+
+    private AssetScope(String owner, Set<Long> assetIds) {
+        this.owner = owner;
+        this.assetIds = assetIds;
+    }
+
+    public static AssetScope all() {
+        return ALL;
+    }
+
+    public static AssetScope owner(String username, Iterable<Long> assetIds) {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        assetIds.forEach(ids::add);
+        return new AssetScope(username, ids);
+    }
+
+    public static AssetScope device(Long assetId) {
+        return new AssetScope(null, Set.of(assetId));
+    }
+
+    /**
+     * Scope cached in a session's attributes, null for sessions that did not authenticate
+     */
+    public static AssetScope from(Map<String, Object> sessionAttributes) {
+        return sessionAttributes != null ? (AssetScope) sessionAttributes.get(SESSION_ATTRIBUTE) : null;
+    }
+
+    /**
+     * Username whose assets the scope covers, null for all-scope and device sessions
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Assets known to the scope, null when it covers every asset
+     */
+    public Set<Long> getAssetIds() {
+        return assetIds != null ? Collections.unmodifiableSet(assetIds) : null;
+    }
+
+    /**
+     * Whether the scope covers every asset (admins and all-scope tokens)
+     */
+    public boolean isAll() {
+        return assetIds == null;
+    }
+
+    /**
+     * Whether the session may use the asset; assets created after CONNECT are
+     * looked up in the owner routing table once and then remembered
+     */
+    public boolean allows(Long assetId, AssetOwnerRegistry owners) {
+        if (assetIds == null) {
+            return true;
+        }
+        if (assetId == null) {
+            return false;
+        }
+        if (assetIds.contains(assetId)) {
+            return true;
+        }
+        if (owner != null && owner.equals(owners.getOwner(assetId))) {
+            assetIds.add(assetId);
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,69 @@
+package com.tushar.geotrackr.security;
+
+import com.tushar.geotrackr.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Principal of an authenticated request
+ * Built from the JWT claims (uid, role, scope), so controllers get the user id and
+ * role with @AuthenticationPrincipal instead of loading the user by name.
+ */
+@Getter
+@AllArgsConstructor
+public class AuthenticatedUser implements UserDetails {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String SCOPE_ALL = "all"; // every asset
+    public static final String SCOPE_OWN = "own"; // assets owned by the user
+
+    private final Long id;
+    private final String username;
+    private final String password; // null unless loaded for a login
+    private final User.Role role; // null for legacy tokens without claims
+    private final String scope;
+    private final boolean enabled;
+
+    public static AuthenticatedUser of(User user) {
+        return new AuthenticatedUser(user.getId(), user.getUsername(), user.getPassword(), user.getRole(),
+                scopeOf(user.getRole()), user.isActive());
+    }
+
+    public static String scopeOf(User.Role role) {
+        return role == User.Role.ADMIN ? SCOPE_ALL : SCOPE_OWN;
+    }
+
+    public boolean isAdmin() {
+        return role == User.Role.ADMIN;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        if (role == null) {
+            return List.of();
+        }
+        return List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return enabled;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+}
@@ -3,36 +3,84 @@ package com.tushar.geotrackr.security;
 import com.tushar.geotrackr.entity.User;
 import com.tushar.geotrackr.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Loads users for authentication
+ * Token-authenticated requests read users through a short-lived cache; entries are
+ * evicted as soon as the user is updated or deleted (UserCacheEvictionListener).
+ * Login always reads the database.
+ */
 @Service
 @RequiredArgsConstructor
 public class CustomUserDetailsService implements UserDetailsService {
 
     private final UserRepository userRepository;
 
+    @Value("${security.user-cache.ttl:60000}")
+    private long cacheTtl; // milliseconds
+
+    @Value("${security.user-cache.max-size:10000}")
+    private int cacheMaxSize;
+
+    private final Map<String, CachedUser> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Cached variant of loadUserByUsername for requests that carry a verified token
+     */
+    public AuthenticatedUser loadCachedUserByUsername(String username) throws UsernameNotFoundException {
+        long now = System.currentTimeMillis();
+        CachedUser cached = cache.get(username);
+        if (cached != null && cached.expiresAt() > now) {
+            return cached.userDetails();
+        }
+
+        AuthenticatedUser userDetails = loadUserByUsername(username);
+        if (cache.size() >= cacheMaxSize) {
+            cache.values().removeIf(entry -> entry.expiresAt() <= now);
+        }
+        if (cache.size() < cacheMaxSize) {
+            cache.put(username, new CachedUser(userDetails, now + cacheTtl));
+        }
+        return userDetails;
+    }
+
+    /**
+     * Principal for a verified token: its claims, unless the token predates them or the
+     * user's role has changed since. Null when the user is gone or deactivated.
+     */
+    public AuthenticatedUser resolveTokenUser(AuthenticatedUser tokenUser) {
+        AuthenticatedUser current;
+        try {
+            current = loadCachedUserByUsername(tokenUser.getUsername());
+        } catch (UsernameNotFoundException e) {
+            return null;
+        }
+        if (!current.isEnabled()) {
+            return null;
+        }
+        return tokenUser.getId() != null && tokenUser.getRole() == current.getRole() ? tokenUser : current;
+    }
+
+    public void evict(String username) {
+        cache.remove(username);
+    }
+
     @Override
-    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+    public AuthenticatedUser loadUserByUsername(String username) throws UsernameNotFoundException {
 
         User userrepo = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
 
-        return org.springframework.security.core.userdetails.User.builder()
-                .username(userrepo.getUsername())
-                .password(userrepo.getPassword())
-                .authorities(Collections.singletonList(
-                        new SimpleGrantedAuthority("ROLE_" + userrepo.getRole().name())
-                ))
-                .accountExpired(false)
-                .accountLocked(!userrepo.isActive())
-                .credentialsExpired(false)
-                .disabled(!userrepo.isActive())
-                .build();
+        return AuthenticatedUser.of(userrepo);
+    }
+
+    private record CachedUser(AuthenticatedUser userDetails, long expiresAt) {
     }
 }
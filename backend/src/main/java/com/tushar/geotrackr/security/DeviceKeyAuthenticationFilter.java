@@ -0,0 +1,44 @@
+package com.tushar.geotrackr.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Authenticates device ingestion requests from the X-Device-Key header
+ * Only registered on the device filter chain (not a @Component, so it is not also
+ * added to the servlet filter chain).
+ */
+@RequiredArgsConstructor
+public class DeviceKeyAuthenticationFilter extends OncePerRequestFilter {
+
+    public static final String DEVICE_KEY_HEADER = "X-Device-Key";
+    public static final String ROLE_DEVICE = "ROLE_DEVICE";
+
+    private static final List<SimpleGrantedAuthority> AUTHORITIES = List.of(new SimpleGrantedAuthority(ROLE_DEVICE));
+
+    private final DeviceKeyRegistry deviceKeyRegistry;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain)
+            throws ServletException, IOException {
+
+        DevicePrincipal device = deviceKeyRegistry.authenticate(request.getHeader(DEVICE_KEY_HEADER));
+        if (device != null) {
+            SecurityContextHolder.getContext().setAuthentication(
+                    new UsernamePasswordAuthenticationToken(device, null, AUTHORITIES));
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,83 @@
+package com.tushar.geotrackr.security;
+
+import com.tushar.geotrackr.repository.DeviceCredentialRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory table of active device keys, by key hash
+ * Device requests are authenticated with one SHA-256 and a map lookup: no user, token
+ * or database access per fix. Keys are random and long, so a fast unsalted hash is
+ * enough. The table is reloaded periodically so keys issued or revoked on another
+ * node take effect here too.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DeviceKeyRegistry {
+
+    private final DeviceCredentialRepository credentialRepository;
+
+    private volatile Map<String, DevicePrincipal> keys = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        reload();
+        log.info("Device key table loaded with {} key(s)", keys.size());
+    }
+
+    @Scheduled(fixedRateString = "${device.keys.reload-interval:60000}",
+            initialDelayString = "${device.keys.reload-interval:60000}")
+    public void reload() {
+        List<Object[]> rows = credentialRepository.findActiveKeys();
+        Map<String, DevicePrincipal> loaded = new ConcurrentHashMap<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            loaded.put((String) row[0], new DevicePrincipal((Long) row[1], (String) row[2]));
+        }
+        keys = loaded;
+    }
+
+    /**
+     * The device a key belongs to, or null when the key is unknown or revoked
+     */
+    public DevicePrincipal authenticate(String apiKey) {
+        if (apiKey == null || apiKey.isBlank()) {
+            return null;
+        }
+        return keys.get(hash(apiKey.trim()));
+    }
+
+    public void register(String keyHash, DevicePrincipal device) {
+        keys.put(keyHash, device);
+    }
+
+    public void removeAsset(Long assetId) {
+        keys.values().removeIf(device -> device.assetId().equals(assetId));
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    public static String hash(String apiKey) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(apiKey.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
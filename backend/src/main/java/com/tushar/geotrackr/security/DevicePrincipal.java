@@ -0,0 +1,31 @@
+package com.tushar.geotrackr.security;
+
+import com.tushar.geotrackr.dto.LocationUpdateDTO;
+
+import java.security.Principal;
+
+/**
+ * Principal of a request or WebSocket session authenticated with a device key
+ * A device may only report positions of the asset its key was issued for.
+ */
+public record DevicePrincipal(Long assetId, String keyPrefix) implements Principal {
+
+    @Override
+    public String getName() {
+        return "device-" + assetId;
+    }
+
+    /**
+     * Fill in the update's asset id, or reject it when it names another asset
+     */
+    public void bind(LocationUpdateDTO update) {
+        if (update.getAssetId() == null) {
+            update.setAssetId(assetId);
+        } else if (!update.getAssetId().equals(assetId)) {
+            throw new IllegalArgumentException("Device key is not valid for asset " + update.getAssetId());
+        }
+        if (update.getLatitude() == null || update.getLongitude() == null) {
+            throw new IllegalArgumentException("Latitude and longitude are required");
+        }
+    }
+}
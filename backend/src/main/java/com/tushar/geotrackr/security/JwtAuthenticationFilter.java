@@ -7,8 +7,6 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -19,12 +17,17 @@ import java.io.IOException;
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    public static final String STREAM_TOKEN_PARAMETER = "token";
+
     private final JwtTokenProvider jwtTokenProvider;
-    private final UserDetailsService userDetailsService;
+    private final CustomUserDetailsService userDetailsService;
 
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) {
         String path = request.getRequestURI();
+        if (path.startsWith("/api/device/")) {
+            return true; // device key chain, see SecurityConfig
+        }
         boolean skip = path.startsWith("/ws/");
 
         if (skip) {
@@ -40,21 +43,22 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
 
         final String authHeader = request.getHeader("Authorization");
-        final String jwt;
-        final String username;
+        final AuthenticatedUser tokenUser;
 
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            tokenUser = jwtTokenProvider.getVerifiedUser(authHeader.substring(7));
+        } else if (isStreamRequest(request)) {
+            // EventSource cannot send headers; SSE feeds take a stream token as ?token=
+            tokenUser = jwtTokenProvider.getVerifiedStreamUser(request.getParameter(STREAM_TOKEN_PARAMETER));
+        } else {
             filterChain.doFilter(request, response);
             return;
         }
 
-        jwt = authHeader.substring(7);
-        username = jwtTokenProvider.extractUsername(jwt);
-
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-
-            if (jwtTokenProvider.validateToken(jwt, userDetails)) {
+        if (tokenUser != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            // Deactivated users keep valid tokens; they resolve to null here
+            AuthenticatedUser userDetails = userDetailsService.resolveTokenUser(tokenUser);
+            if (userDetails != null) {
                 UsernamePasswordAuthenticationToken authToken =
                         new UsernamePasswordAuthenticationToken(
                                 userDetails,
@@ -68,4 +72,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         filterChain.doFilter(request, response);
     }
+
+    private static boolean isStreamRequest(HttpServletRequest request) {
+        return "GET".equals(request.getMethod()) && request.getRequestURI().startsWith("/api/stream/")
+                && request.getParameter(STREAM_TOKEN_PARAMETER) != null;
+    }
 }
\ No newline at end of file
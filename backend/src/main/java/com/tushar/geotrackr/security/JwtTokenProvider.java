@@ -1,11 +1,16 @@
 package com.tushar.geotrackr.security;
 
+import com.tushar.geotrackr.entity.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
@@ -13,9 +18,18 @@ import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
+/**
+ * Issues and verifies JWTs
+ * Tokens carry the user id (uid), role and scope claims besides the username.
+ * Verified tokens are cached until their expiry, so a token seen before is
+ * accepted without parsing or checking its signature again. Stream tokens are
+ * short-lived tokens for EventSource clients and are only accepted by the SSE feeds.
+ */
 @Component
+@Slf4j
 public class JwtTokenProvider {
 
     @Value("${jwt.secret}")
@@ -24,6 +38,103 @@ public class JwtTokenProvider {
     @Value("${jwt.expiration}")
     private Long expiration;
 
+    @Value("${jwt.stream-expiration:60000}")
+    private long streamExpiration; // milliseconds
+
+    @Value("${jwt.cache.max-size:10000}")
+    private int cacheMaxSize; // verified tokens
+
+    private Key signKey;
+    private final Map<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        byte[] keyBytes = Decoders.BASE64.decode(secret);
+        signKey = Keys.hmacShaKeyFor(keyBytes);
+    }
+
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLE = "role";
+    public static final String CLAIM_SCOPE = "scope";
+    public static final String CLAIM_USE = "use";
+    public static final String USE_STREAM = "stream";
+
+    /**
+     * User of a valid, unexpired token, or null
+     * Costs one signature check the first time a token is seen and none afterwards.
+     * Tokens issued without the uid claim yield a user with only the username set.
+     */
+    public AuthenticatedUser getVerifiedUser(String token) {
+        return verify(token, false);
+    }
+
+    /**
+     * User of a valid, unexpired stream token, or null
+     */
+    public AuthenticatedUser getVerifiedStreamUser(String token) {
+        return verify(token, true);
+    }
+
+    private AuthenticatedUser verify(String token, boolean stream) {
+        long now = System.currentTimeMillis();
+        VerifiedToken cached = verifiedTokens.get(token);
+        if (cached != null) {
+            if (cached.expiresAt() > now) {
+                return cached.stream() == stream ? cached.user() : null;
+            }
+            verifiedTokens.remove(token);
+            return null;
+        }
+
+        Claims claims;
+        try {
+            claims = extractAllClaims(token); // also rejects expired tokens
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Rejected JWT: {}", e.getMessage());
+            return null;
+        }
+        if (claims.getSubject() == null || claims.getExpiration() == null) {
+            return null;
+        }
+
+        AuthenticatedUser user;
+        try {
+            user = toUser(claims);
+        } catch (IllegalArgumentException e) {
+            log.debug("Rejected JWT with invalid claims: {}", e.getMessage());
+            return null;
+        }
+        if (verifiedTokens.size() >= cacheMaxSize) {
+            evictExpiredTokens();
+        }
+        boolean streamToken = USE_STREAM.equals(claims.get(CLAIM_USE, String.class));
+        if (verifiedTokens.size() < cacheMaxSize) {
+            verifiedTokens.put(token, new VerifiedToken(user, claims.getExpiration().getTime(), streamToken));
+        }
+        return streamToken == stream ? user : null;
+    }
+
+    private AuthenticatedUser toUser(Claims claims) {
+        Number userId = claims.get(CLAIM_USER_ID, Number.class);
+        String role = claims.get(CLAIM_ROLE, String.class);
+        if (userId == null || role == null) {
+            return new AuthenticatedUser(null, claims.getSubject(), null, null, null, true);
+        }
+        User.Role parsedRole = User.Role.valueOf(role);
+        String scope = claims.get(CLAIM_SCOPE, String.class);
+        return new AuthenticatedUser(userId.longValue(), claims.getSubject(), null, parsedRole,
+                scope != null ? scope : AuthenticatedUser.scopeOf(parsedRole), true);
+    }
+
+    /**
+     * Drop cached tokens that have expired
+     */
+    @Scheduled(fixedDelayString = "${jwt.cache.purge-interval:60000}")
+    public void evictExpiredTokens() {
+        long now = System.currentTimeMillis();
+        verifiedTokens.values().removeIf(token -> token.expiresAt() <= now);
+    }
+
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
     }
@@ -45,32 +156,49 @@ public class JwtTokenProvider {
                 .getBody();
     }
 
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    public Boolean validateToken(String token, UserDetails userDetails) {
+        final AuthenticatedUser user = getVerifiedUser(token);
+        return user != null && user.getUsername().equals(userDetails.getUsername());
     }
 
-    public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+    public String generateToken(AuthenticatedUser user) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(CLAIM_USER_ID, user.getId());
+        claims.put(CLAIM_ROLE, user.getRole().name());
+        claims.put(CLAIM_SCOPE, user.getScope());
+        return createToken(claims, user.getUsername(), expiration);
     }
 
-    public String generateToken(String username) {
+    /**
+     * Short-lived token for the SSE feeds, passed as a query parameter by EventSource clients
+     */
+    public String generateStreamToken(AuthenticatedUser user) {
         Map<String, Object> claims = new HashMap<>();
-        return createToken(claims, username);
+        claims.put(CLAIM_USER_ID, user.getId());
+        claims.put(CLAIM_ROLE, user.getRole().name());
+        claims.put(CLAIM_SCOPE, user.getScope());
+        claims.put(CLAIM_USE, USE_STREAM);
+        return createToken(claims, user.getUsername(), streamExpiration);
+    }
+
+    public long getStreamExpiration() {
+        return streamExpiration;
     }
 
-    private String createToken(Map<String, Object> claims, String username) {
+    private String createToken(Map<String, Object> claims, String username, long validity) {
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(username)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + expiration))
+                .setExpiration(new Date(System.currentTimeMillis() + validity))
                 .signWith(getSignKey(), SignatureAlgorithm.HS256)
                 .compact();
     }
 
     private Key getSignKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secret);
-        return Keys.hmacShaKeyFor(keyBytes);
+        return signKey;
+    }
+
+    private record VerifiedToken(AuthenticatedUser user, long expiresAt, boolean stream) {
     }
 }
\ No newline at end of file
@@ -0,0 +1,190 @@
+package com.tushar.geotrackr.security;
+
+import com.tushar.geotrackr.repository.AssetRepository;
+import com.tushar.geotrackr.service.AssetOwnerRegistry;
+import com.tushar.geotrackr.service.ReplayService;
+import com.tushar.geotrackr.service.WebSocketService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.stereotype.Service;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Authenticates a STOMP session once, on CONNECT, and authorizes its frames
+ * The principal (user token or device key) becomes the session user and the assets
+ * it may use are cached as an AssetScope in the session attributes, so SUBSCRIBE
+ * and SEND frames are checked with a set lookup instead of token or user lookups.
+ * Subscriptions are denied unless the destination is one of the known ones and the
+ * session's scope covers it; fleet-wide topics need a scope covering every asset.
+ * SEND is only allowed to the application's message handlers, never to broker
+ * destinations, so clients cannot publish to other sessions' topics or queues.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StompAuthenticationService {
+
+    public static final String AUTHORIZATION_HEADER = "Authorization";
+    public static final String TOKEN_HEADER = "token";
+    public static final String DEVICE_KEY_HEADER = "device-key";
+
+    private static final Set<String> DEVICE_DESTINATIONS = Set.of("/app/location/update");
+
+    // The @MessageMapping handlers of WebSocketController; they check the asset scope themselves
+    private static final Set<String> APP_DESTINATIONS = Set.of("/app/location/update", "/app/gps/status",
+            "/app/viewport", "/app/resume", "/app/connect", "/app/disconnect");
+    private static final Set<String> DEVICE_SUBSCRIPTIONS = Set.of(WebSocketService.LOCATION_ACK_DESTINATION);
+
+    // Per-asset messages go to the owner's /user/queue destinations; replays have their own topic
+    private static final Pattern REPLAY_DESTINATION = Pattern.compile("^/topic/replay/([\\w-]+)$");
+
+    // Destinations carrying messages of every asset
+    private static final Set<String> FLEET_DESTINATIONS = Set.of(
+            WebSocketService.LOCATION_DESTINATION, WebSocketService.EVENTS_DESTINATION,
+            WebSocketService.PROXIMITY_DESTINATION, WebSocketService.GPS_STATUS_DESTINATION,
+            "/topic/gps/status/digest", "/topic/occupancy");
+
+    // System-wide announcements, not tied to any asset
+    private static final Set<String> PUBLIC_DESTINATIONS = Set.of("/topic/notifications");
+
+    private final JwtTokenProvider jwtTokenProvider;
+    private final CustomUserDetailsService userDetailsService;
+    private final DeviceKeyRegistry deviceKeyRegistry;
+    private final AssetRepository assetRepository;
+    private final AssetOwnerRegistry assetOwnerRegistry;
+    private final ReplayService replayService;
+
+    /**
+     * Authenticate a CONNECT frame from its device-key, Authorization or token header
+     *
+     * @return the session principal, or null when the frame carries no credentials
+     * @throws BadCredentialsException when credentials are present but not valid
+     */
+    public Principal authenticate(StompHeaderAccessor connect) {
+        String apiKey = connect.getFirstNativeHeader(DEVICE_KEY_HEADER);
+        if (apiKey != null) {
+            DevicePrincipal device = deviceKeyRegistry.authenticate(apiKey);
+            if (device == null) {
+                throw new BadCredentialsException("Invalid device key");
+            }
+            setScope(connect, AssetScope.device(device.assetId()));
+            log.debug("Device session {} connected for asset {}", connect.getSessionId(), device.assetId());
+            return device;
+        }
+
+        String token = bearerToken(connect);
+        if (token == null) {
+            return null;
+        }
+        AuthenticatedUser tokenUser = jwtTokenProvider.getVerifiedUser(token);
+        AuthenticatedUser user = tokenUser != null ? userDetailsService.resolveTokenUser(tokenUser) : null;
+        if (user == null) {
+            throw new BadCredentialsException("Invalid or expired token");
+        }
+
+        setScope(connect, AuthenticatedUser.SCOPE_ALL.equals(user.getScope()) || user.isAdmin()
+                ? AssetScope.all()
+                : AssetScope.owner(user.getUsername(), assetRepository.findIdsByOwnerId(user.getId())));
+        log.debug("Session {} authenticated as {}", connect.getSessionId(), user.getUsername());
+        return new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+    }
+
+    /**
+     * Check a SUBSCRIBE or SEND frame against the session's cached scope
+     * SEND frames may only target the message handlers, which check the asset of
+     * sessions with a scope; subscriptions of sessions without one are denied.
+     */
+    public void authorize(StompHeaderAccessor accessor) {
+        StompCommand command = accessor.getCommand();
+        if (command != StompCommand.SUBSCRIBE && command != StompCommand.SEND) {
+            return;
+        }
+        String destination = accessor.getDestination();
+        Principal user = accessor.getUser();
+
+        if (user instanceof DevicePrincipal device) {
+            Set<String> allowed = command == StompCommand.SUBSCRIBE ? DEVICE_SUBSCRIPTIONS : DEVICE_DESTINATIONS;
+            if (!allowed.contains(destination)) {
+                throw new AccessDeniedException(device.getName() + " cannot use " + destination);
+            }
+            return;
+        }
+        if (command == StompCommand.SUBSCRIBE) {
+            authorizeSubscription(accessor, destination, user);
+        } else if (!APP_DESTINATIONS.contains(destination)) {
+            throw new AccessDeniedException("Cannot send to " + destination);
+        }
+    }
+
+    /**
+     * Per-session user destinations are resolved to the subscriber's own session, every
+     * other destination must be an allowed topic
+     */
+    private void authorizeSubscription(StompHeaderAccessor accessor, String destination, Principal user) {
+        if (destination == null) {
+            throw new AccessDeniedException("Subscription without destination");
+        }
+        AssetScope scope = AssetScope.from(accessor.getSessionAttributes());
+        if (scope == null) {
+            throw new AccessDeniedException("Session is not authenticated");
+        }
+        if (destination.startsWith("/user/") || PUBLIC_DESTINATIONS.contains(destination)) {
+            return;
+        }
+        if (FLEET_DESTINATIONS.contains(destination)) {
+            if (!scope.isAll()) {
+                throw new AccessDeniedException("Cannot subscribe to " + destination);
+            }
+            return;
+        }
+
+        Matcher replay = REPLAY_DESTINATION.matcher(destination);
+        if (replay.matches()) {
+            String owner = replayService.getOwner(replay.group(1));
+            if (owner == null || !(scope.isAll() || owner.equals(user.getName()))) {
+                throw new AccessDeniedException("Not allowed to use replay " + replay.group(1));
+            }
+            return;
+        }
+        // Includes the broker-internal topics and direct /queue subscriptions to other sessions
+        throw new AccessDeniedException("Cannot subscribe to " + destination);
+    }
+
+    /**
+     * Reject a frame for an asset outside the session's scope; sessions without a
+     * scope (authentication not required) are not restricted
+     */
+    public void checkAsset(SimpMessageHeaderAccessor accessor, Long assetId) {
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        AssetScope scope = attributes != null ? (AssetScope) attributes.get(AssetScope.SESSION_ATTRIBUTE) : null;
+        if (scope != null && !scope.allows(assetId, assetOwnerRegistry)) {
+            throw new AccessDeniedException("Not allowed to use asset " + assetId);
+        }
+    }
+
+    private void setScope(StompHeaderAccessor connect, AssetScope scope) {
+        Map<String, Object> attributes = connect.getSessionAttributes();
+        if (attributes != null) {
+            attributes.put(AssetScope.SESSION_ATTRIBUTE, scope);
+        }
+    }
+
+    private String bearerToken(StompHeaderAccessor connect) {
+        String authorization = connect.getFirstNativeHeader(AUTHORIZATION_HEADER);
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            return authorization.substring(7);
+        }
+        return connect.getFirstNativeHeader(TOKEN_HEADER);
+    }
+}
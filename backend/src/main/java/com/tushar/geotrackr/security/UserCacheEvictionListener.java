@@ -0,0 +1,41 @@
+package com.tushar.geotrackr.security;
+
+import com.tushar.geotrackr.entity.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JPA listener dropping a user from the authentication cache when it changes
+ * (e.g. deactivation or a role change), so the next request reloads it. The eviction
+ * waits for the commit: evicting earlier would let a concurrent request cache the old row again.
+ */
+@Component
+public class UserCacheEvictionListener {
+
+    private final CustomUserDetailsService userDetailsService;
+
+    // Lazy: the listener is created with the EntityManagerFactory the service depends on
+    public UserCacheEvictionListener(@Lazy CustomUserDetailsService userDetailsService) {
+        this.userDetailsService = userDetailsService;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void evict(User user) {
+        String username = user.getUsername();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    userDetailsService.evict(username);
+                }
+            });
+        } else {
+            userDetailsService.evict(username);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.repository.AssetRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory routing table from asset id to the username of its owner
+ * Used to deliver positions and events to /user/{owner}/queue/... without a
+ * database lookup per message.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AssetOwnerRegistry {
+
+    private final AssetRepository assetRepository;
+
+    private final Map<Long, String> owners = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        for (Object[] row : assetRepository.findAllOwnerUsernames()) {
+            owners.put((Long) row[0], (String) row[1]);
+        }
+        log.info("Asset owner routing table loaded with {} asset(s)", owners.size());
+    }
+
+    public void register(Long assetId, String ownerUsername) {
+        if (assetId != null && ownerUsername != null) {
+            owners.put(assetId, ownerUsername);
+        }
+    }
+
+    public void remove(Long assetId) {
+        owners.remove(assetId);
+    }
+
+    /**
+     * Username of the asset's owner, loaded once from the database on a miss
+     */
+    public String getOwner(Long assetId) {
+        if (assetId == null) {
+            return null;
+        }
+        String owner = owners.get(assetId);
+        if (owner == null) {
+            owner = assetRepository.findOwnerUsernameById(assetId).orElse(null);
+            if (owner != null) {
+                owners.put(assetId, owner);
+            }
+        }
+        return owner;
+    }
+}
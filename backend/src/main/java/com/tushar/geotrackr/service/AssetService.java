@@ -4,9 +4,10 @@ import com.tushar.geotrackr.dto.LocationUpdateDTO;
 import com.tushar.geotrackr.entity.Asset;
 import com.tushar.geotrackr.entity.Geofence;
 import com.tushar.geotrackr.entity.GeofenceEvent;
-import com.tushar.geotrackr.entity.User;
 import com.tushar.geotrackr.repository.AssetRepository;
 import com.tushar.geotrackr.repository.GeofenceEventRepository;
+import com.tushar.geotrackr.repository.UserRepository;
+import com.tushar.geotrackr.security.AuthenticatedUser;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -22,12 +23,23 @@ import java.util.Optional;
 public class AssetService {
 
     private final AssetRepository assetRepository;
+    private final UserRepository userRepository;
+    private final LivePositionIndex livePositionIndex;
+    private final GeofenceSafeZones geofenceSafeZones;
+    private final AssetOwnerRegistry assetOwnerRegistry;
+    private final DeviceCredentialService deviceCredentialService;
 
+    /**
+     * Create an asset owned by the authenticated user
+     * The owner is set as a reference from the token's user id, without loading the user
+     */
     @Transactional
-    public Asset createAsset(Asset asset, User owner) {
-        asset.setOwner(owner);
+    public Asset createAsset(Asset asset, AuthenticatedUser owner) {
+        asset.setOwner(userRepository.getReferenceById(owner.getId()));
         asset.setActive(true);
-        return assetRepository.save(asset);
+        Asset saved = assetRepository.save(asset);
+        assetOwnerRegistry.register(saved.getId(), owner.getUsername());
+        return saved;
     }
 
     public List<Asset> getAllAssets() {
@@ -56,7 +68,14 @@ public class AssetService {
         existing.setDescription(updatedAsset.getDescription());
         existing.setActive(updatedAsset.isActive());
 
-        return assetRepository.save(existing);
+        Asset saved = assetRepository.save(existing);
+        if (saved.isActive()) {
+            livePositionIndex.update(saved);
+        } else {
+            livePositionIndex.remove(id);
+            geofenceSafeZones.evict(id);
+        }
+        return saved;
     }
 
     @Transactional
@@ -65,7 +84,9 @@ public class AssetService {
         asset.setCurrentLatitude(latitude);
         asset.setCurrentLongitude(longitude);
         asset.setLastUpdate(LocalDateTime.now());
-        return assetRepository.save(asset);
+        Asset saved = assetRepository.save(asset);
+        livePositionIndex.update(saved);
+        return saved;
     }
 
     @Transactional
@@ -73,6 +94,9 @@ public class AssetService {
         Asset asset = getAssetById(id);
         asset.setActive(false);
         assetRepository.save(asset);
+        livePositionIndex.remove(id);
+        geofenceSafeZones.evict(id);
+        deviceCredentialService.revokeKeys(id);
     }
 }
 
@@ -0,0 +1,98 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.dto.DeviceKeyDTO;
+import com.tushar.geotrackr.entity.Asset;
+import com.tushar.geotrackr.entity.DeviceCredential;
+import com.tushar.geotrackr.repository.AssetRepository;
+import com.tushar.geotrackr.repository.DeviceCredentialRepository;
+import com.tushar.geotrackr.security.AuthenticatedUser;
+import com.tushar.geotrackr.security.DeviceKeyRegistry;
+import com.tushar.geotrackr.security.DevicePrincipal;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Issues and revokes the API keys devices use to report an asset's positions
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DeviceCredentialService {
+
+    private static final String KEY_PREFIX = "gtd_";
+    private static final int KEY_BYTES = 32;
+    private static final int VISIBLE_PREFIX_LENGTH = 12;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final DeviceCredentialRepository credentialRepository;
+    private final AssetRepository assetRepository;
+    private final AssetOwnerRegistry assetOwnerRegistry;
+    private final DeviceKeyRegistry deviceKeyRegistry;
+
+    /**
+     * Issue a new key for an asset; earlier keys stay valid until revoked
+     */
+    @Transactional
+    public DeviceKeyDTO issueKey(Long assetId, AuthenticatedUser user) {
+        checkOwner(assetId, user);
+        Asset asset = assetRepository.findById(assetId)
+                .filter(Asset::isActive)
+                .orElseThrow(() -> new RuntimeException("Asset not found with id: " + assetId));
+
+        byte[] bytes = new byte[KEY_BYTES];
+        random.nextBytes(bytes);
+        String apiKey = KEY_PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        String keyHash = DeviceKeyRegistry.hash(apiKey);
+        String keyPrefix = apiKey.substring(0, VISIBLE_PREFIX_LENGTH);
+
+        DeviceCredential credential = new DeviceCredential();
+        credential.setAsset(asset);
+        credential.setKeyHash(keyHash);
+        credential.setKeyPrefix(keyPrefix);
+        credential.setActive(true);
+        credential = credentialRepository.save(credential);
+
+        deviceKeyRegistry.register(keyHash, new DevicePrincipal(assetId, keyPrefix));
+        log.info("Issued device key {}... for asset {}", keyPrefix, assetId);
+        return new DeviceKeyDTO(assetId, apiKey, keyPrefix, credential.getCreatedAt());
+    }
+
+    /**
+     * Revoke every key of an asset
+     */
+    @Transactional
+    public int revokeKeys(Long assetId, AuthenticatedUser user) {
+        checkOwner(assetId, user);
+        return revokeKeys(assetId);
+    }
+
+    @Transactional
+    public int revokeKeys(Long assetId) {
+        // Drop from the table first: a key must not outlive its revocation, even briefly
+        deviceKeyRegistry.removeAsset(assetId);
+        int revoked = 0;
+        for (DeviceCredential credential : credentialRepository.findByAssetIdAndActiveTrue(assetId)) {
+            credential.setActive(false);
+            credential.setRevokedAt(LocalDateTime.now());
+            revoked++;
+        }
+        if (revoked > 0) {
+            log.info("Revoked {} device key(s) of asset {}", revoked, assetId);
+        }
+        return revoked;
+    }
+
+    private void checkOwner(Long assetId, AuthenticatedUser user) {
+        if (!user.isAdmin() && !user.getUsername().equals(assetOwnerRegistry.getOwner(assetId))) {
+            throw new AccessDeniedException("Not allowed to manage device keys of asset " + assetId);
+        }
+    }
+}
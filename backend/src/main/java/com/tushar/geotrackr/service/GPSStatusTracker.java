@@ -0,0 +1,257 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.dto.GPSStatusDigestMessage;
+import com.tushar.geotrackr.dto.GPSStatusMessage;
+import com.tushar.geotrackr.dto.LivePosition;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Per-asset GPS signal state
+ * Status messages are broadcast only when an asset's status changes, plus a periodic
+ * digest. Assets that stop reporting become STALE and then OFFLINE, detected by a
+ * hashed timer wheel: each asset has at most one wheel entry, a fix only moves its
+ * last-seen time, and the entry is re-armed lazily when it fires.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GPSStatusTracker {
+
+    public static final String CONNECTED = "CONNECTED";
+    public static final String WEAK_SIGNAL = "WEAK_SIGNAL";
+    public static final String STALE = "STALE";
+    public static final String OFFLINE = "OFFLINE";
+
+    private final WebSocketService webSocketService;
+    private final LivePositionIndex livePositionIndex;
+
+    @Value("${gps.status.stale-after:120000}")
+    private long staleAfter; // milliseconds without a fix
+
+    @Value("${gps.status.offline-after:900000}")
+    private long offlineAfter; // milliseconds without a fix
+
+    @Value("${gps.status.wheel-tick:1000}")
+    private long tickMillis;
+
+    @Value("${gps.status.wheel-slots:512}")
+    private int slotCount;
+
+    private final Map<Long, SignalState> states = new ConcurrentHashMap<>();
+    private Queue<Long>[] slots;
+    private volatile long currentTick;
+
+    @PostConstruct
+    public void init() {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Queue<Long>[] wheel = new Queue[slotCount];
+        slots = wheel;
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new ConcurrentLinkedQueue<>();
+        }
+        currentTick = System.currentTimeMillis() / tickMillis;
+    }
+
+    /**
+     * Seed the last-seen times from the live position index, without broadcasting
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void warmUp() {
+        long now = System.currentTimeMillis();
+        for (LivePosition position : livePositionIndex.getAll()) {
+            long lastSeen = position.getTimestamp() != null
+                    ? position.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                    : now;
+            long age = now - lastSeen;
+            String status = age >= offlineAfter ? OFFLINE : age >= staleAfter ? STALE : CONNECTED;
+
+            SignalState state = new SignalState(status, lastSeen);
+            states.put(position.getAssetId(), state);
+            if (!OFFLINE.equals(status)) {
+                synchronized (state) {
+                    schedule(position.getAssetId(), state, nextDeadline(state));
+                }
+            }
+        }
+        log.info("GPS status tracker loaded {} asset(s)", states.size());
+    }
+
+    /**
+     * Record a fix with signal quality
+     */
+    public void recordFix(Long assetId, boolean goodSignal, Integer satellites, Double accuracy) {
+        record(assetId, goodSignal ? CONNECTED : WEAK_SIGNAL, satellites, accuracy);
+    }
+
+    /**
+     * Record a fix without quality metadata; keeps a WEAK_SIGNAL status as it is
+     */
+    public void recordFix(Long assetId) {
+        record(assetId, null, null, null);
+    }
+
+    private void record(Long assetId, String reported, Integer satellites, Double accuracy) {
+        long now = System.currentTimeMillis();
+        SignalState state = states.computeIfAbsent(assetId, id -> new SignalState(null, now));
+        GPSStatusMessage change = null;
+
+        synchronized (state) {
+            state.lastSeen = now;
+            state.satellites = satellites != null ? satellites : state.satellites;
+            state.accuracy = accuracy != null ? accuracy : state.accuracy;
+
+            String status = reported != null ? reported
+                    : WEAK_SIGNAL.equals(state.status) ? WEAK_SIGNAL : CONNECTED;
+            if (!status.equals(state.status)) {
+                state.status = status;
+                change = toMessage(assetId, state);
+            }
+            if (!state.scheduled) {
+                schedule(assetId, state, now + staleAfter);
+            }
+        }
+
+        if (change != null) {
+            webSocketService.broadcastGPSStatus(change);
+        }
+    }
+
+    /**
+     * Advance the wheel to the current time and expire assets that stopped reporting
+     */
+    @Scheduled(fixedRateString = "${gps.status.wheel-tick:1000}")
+    public void advance() {
+        long target = System.currentTimeMillis() / tickMillis;
+        // After a long pause every slot is visited once; entries due earlier still fire
+        long from = Math.max(currentTick + 1, target - slotCount + 1);
+
+        List<GPSStatusMessage> changes = new ArrayList<>();
+        for (long tick = from; tick <= target; tick++) {
+            currentTick = tick;
+            Queue<Long> slot = slots[(int) (tick % slotCount)];
+            for (int pending = slot.size(); pending > 0; pending--) {
+                Long assetId = slot.poll();
+                if (assetId == null) {
+                    break;
+                }
+                SignalState state = states.get(assetId);
+                if (state != null) {
+                    expire(assetId, state, tick, changes);
+                }
+            }
+        }
+        currentTick = target;
+
+        for (GPSStatusMessage change : changes) {
+            webSocketService.broadcastGPSStatus(change);
+        }
+    }
+
+    private void expire(Long assetId, SignalState state, long tick, List<GPSStatusMessage> changes) {
+        synchronized (state) {
+            if (state.deadlineTick > tick) {
+                slots[(int) (state.deadlineTick % slotCount)].add(assetId); // a later round of the wheel
+                return;
+            }
+            state.scheduled = false;
+
+            long now = tick * tickMillis;
+            long silent = now - state.lastSeen;
+            String status = silent >= offlineAfter ? OFFLINE : silent >= staleAfter ? STALE : state.status;
+            if (status != null && !status.equals(state.status)) {
+                state.status = status;
+                changes.add(toMessage(assetId, state));
+            }
+            if (!OFFLINE.equals(state.status)) {
+                schedule(assetId, state, nextDeadline(state));
+            }
+        }
+    }
+
+    private long nextDeadline(SignalState state) {
+        return STALE.equals(state.status) ? state.lastSeen + offlineAfter : state.lastSeen + staleAfter;
+    }
+
+    private void schedule(Long assetId, SignalState state, long deadline) {
+        long tick = Math.max(currentTick + 1, (deadline + tickMillis - 1) / tickMillis);
+        state.deadlineTick = tick;
+        state.scheduled = true;
+        slots[(int) (tick % slotCount)].add(assetId);
+    }
+
+    /**
+     * Broadcast the status counts and the degraded assets
+     */
+    @Scheduled(fixedRateString = "${gps.status.digest-interval:60000}",
+            initialDelayString = "${gps.status.digest-interval:60000}")
+    public void broadcastDigest() {
+        if (states.isEmpty()) {
+            return;
+        }
+        Map<String, Long> counts = new TreeMap<>();
+        List<GPSStatusMessage> degraded = new ArrayList<>();
+        states.forEach((assetId, state) -> {
+            synchronized (state) {
+                if (state.status == null) {
+                    return;
+                }
+                counts.merge(state.status, 1L, Long::sum);
+                if (!CONNECTED.equals(state.status)) {
+                    degraded.add(toMessage(assetId, state));
+                }
+            }
+        });
+        webSocketService.broadcastGPSStatusDigest(
+                new GPSStatusDigestMessage(LocalDateTime.now(), counts, degraded));
+    }
+
+    public String getStatus(Long assetId) {
+        SignalState state = states.get(assetId);
+        return state != null ? state.status : null;
+    }
+
+    private GPSStatusMessage toMessage(Long assetId, SignalState state) {
+        return new GPSStatusMessage(
+                assetId,
+                state.status,
+                state.satellites,
+                state.accuracy,
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(state.lastSeen), ZoneId.systemDefault())
+        );
+    }
+
+    private static class SignalState {
+        String status;
+        long lastSeen; // epoch milliseconds of the last fix
+        Integer satellites;
+        Double accuracy;
+        boolean scheduled;
+        long deadlineTick;
+
+        SignalState(String status, long lastSeen) {
+            this.status = status;
+            this.lastSeen = lastSeen;
+        }
+    }
+}
@@ -1,11 +1,11 @@
 package com.tushar.geotrackr.service;
 
 import com.tushar.geotrackr.dto.EnhancedLocationUpdateDTO;
-import com.tushar.geotrackr.dto.GPSStatusMessage;
 import com.tushar.geotrackr.entity.Asset;
 import com.tushar.geotrackr.entity.GPSData;
 import com.tushar.geotrackr.repository.AssetRepository;
 import com.tushar.geotrackr.repository.GPSDataRepository;
+import com.tushar.geotrackr.util.GeoUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -24,11 +24,15 @@ public class GPSTrackingService {
 
     private final GPSDataRepository gpsDataRepository;
     private final AssetRepository assetRepository;
-    private final WebSocketService webSocketService;
+    private final LivePositionIndex livePositionIndex;
+    private final ProximityService proximityService;
+    private final HeatmapService heatmapService;
+    private final GPSStatusTracker gpsStatusTracker;
 
     /**
      * Process enhanced location update with GPS metadata
-     * Validates GPS quality before accepting update
+     * Validates GPS quality before accepting update; the GPS status is broadcast
+     * only when it changes (GPSStatusTracker)
      */
     @Transactional
     public GPSData processGPSUpdate(EnhancedLocationUpdateDTO dto) {
@@ -42,15 +46,7 @@ public class GPSTrackingService {
             log.warn("GPS quality too low for asset {}: satellites={}, accuracy={}m",
                     dto.getAssetId(), dto.getSatellites(), dto.getAccuracy());
 
-            // Broadcast GPS status warning
-            GPSStatusMessage statusMessage = new GPSStatusMessage(
-                    dto.getAssetId(),
-                    "WEAK_SIGNAL",
-                    dto.getSatellites(),
-                    dto.getAccuracy(),
-                    LocalDateTime.now()
-            );
-            webSocketService.broadcastGPSStatus(statusMessage);
+            gpsStatusTracker.recordFix(dto.getAssetId(), false, dto.getSatellites(), dto.getAccuracy());
 
             // Still save the data but don't update asset's current location
             return saveGPSData(asset, dto);
@@ -61,19 +57,13 @@ public class GPSTrackingService {
         asset.setCurrentLongitude(dto.getLongitude());
         asset.setLastUpdate(LocalDateTime.now());
         assetRepository.save(asset);
+        livePositionIndex.update(asset);
+        proximityService.evaluate(asset.getId());
 
         // Save detailed GPS data
         GPSData gpsData = saveGPSData(asset, dto);
 
-        // Broadcast GPS status
-        GPSStatusMessage statusMessage = new GPSStatusMessage(
-                dto.getAssetId(),
-                "CONNECTED",
-                dto.getSatellites(),
-                dto.getAccuracy(),
-                LocalDateTime.now()
-        );
-        webSocketService.broadcastGPSStatus(statusMessage);
+        gpsStatusTracker.recordFix(dto.getAssetId(), true, dto.getSatellites(), dto.getAccuracy());
 
         return gpsData;
     }
@@ -111,7 +101,9 @@ public class GPSTrackingService {
             gpsData.setFixQuality(GPSData.FixQuality.valueOf(dto.getFixQuality()));
         }
 
-        return gpsDataRepository.save(gpsData);
+        GPSData saved = gpsDataRepository.save(gpsData);
+        heatmapService.record(saved);
+        return saved;
     }
 
     /**
@@ -180,18 +172,7 @@ public class GPSTrackingService {
      * Calculate distance between two points (Haversine formula)
      */
     private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final double R = 6371000; // Earth's radius in meters
-
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                        Math.sin(dLon / 2) * Math.sin(dLon / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-
-        return R * c;
+        return GeoUtils.distanceMeters(lat1, lon1, lat2, lon2);
     }
 
     /**
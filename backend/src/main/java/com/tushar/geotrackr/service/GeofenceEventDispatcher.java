@@ -0,0 +1,187 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.dto.GeofenceEventMessage;
+import com.tushar.geotrackr.dto.SystemNotification;
+import com.tushar.geotrackr.entity.GeofenceEvent;
+import com.tushar.geotrackr.repository.GeofenceEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Delivers geofence events from the outbox
+ * Events are stored with notificationSent = false in the ingestion transaction; this
+ * dispatcher reads them in batches (FOR UPDATE SKIP LOCKED, so several nodes can run
+ * it), broadcasts them, notifies the asset owner and marks them sent in the same
+ * transaction. Delivery is at least once: a batch whose commit fails is sent again.
+ * Ingestion wakes the dispatcher after commit; the poll picks up anything left over.
+ * Only the backlog found at startup can expire, into a dead-letter state (expiredAt).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class GeofenceEventDispatcher {
+
+    private final GeofenceEventRepository geofenceEventRepository;
+    private final WebSocketService webSocketService;
+    private final AssetOwnerRegistry assetOwnerRegistry;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${outbox.max-age:600000}")
+    private long maxAge; // milliseconds; unsent events this old at startup are dead-lettered
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicBoolean pending = new AtomicBoolean(false);
+    private ThreadPoolTaskExecutor executor;
+    private Counter dispatched;
+    private Counter expired;
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setThreadNamePrefix("outbox-");
+        executor.initialize();
+
+        dispatched = Counter.builder("outbox.dispatched")
+                .description("Geofence events delivered from the outbox")
+                .register(meterRegistry);
+        expired = Counter.builder("outbox.expired")
+                .description("Outbox events dead-lettered at startup because they were older than outbox.max-age")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Dead-letter the backlog of events that were never delivered (e.g. stored before the
+     * outbox existed) instead of replaying it to clients; they keep notificationSent = false
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void expireBacklog() {
+        LocalDateTime now = LocalDateTime.now();
+        Integer count = transactionTemplate.execute(status ->
+                geofenceEventRepository.expireUnsentBefore(now.minusNanos(maxAge * 1_000_000), now));
+        if (count != null && count > 0) {
+            expired.increment(count);
+            log.info("Dead-lettered {} undelivered geofence event(s) older than {} ms", count, maxAge);
+        }
+        trigger();
+    }
+
+    /**
+     * Wake the dispatcher once the current transaction commits
+     */
+    public void dispatchAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    trigger();
+                }
+            });
+        } else {
+            trigger();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.poll-interval:1000}")
+    public void poll() {
+        trigger();
+    }
+
+    /**
+     * Run the dispatcher on its thread; a request while it runs makes it go round again
+     */
+    public void trigger() {
+        pending.set(true);
+        if (running.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            while (pending.getAndSet(false)) {
+                while (dispatchBatch() == batchSize) {
+                    // a full batch: more may be waiting
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Outbox dispatch failed, retrying on the next poll: {}", e.getMessage());
+        } finally {
+            running.set(false);
+            if (pending.get() && running.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+    }
+
+    /**
+     * Deliver one batch and mark it sent
+     *
+     * @return the number of events claimed
+     */
+    int dispatchBatch() {
+        Integer claimed = transactionTemplate.execute(status -> {
+            List<GeofenceEvent> locked = geofenceEventRepository.findUnsentForUpdate(PageRequest.of(0, batchSize));
+            if (locked.isEmpty()) {
+                return 0;
+            }
+            List<Long> ids = new ArrayList<>(locked.size());
+            for (GeofenceEvent event : locked) {
+                ids.add(event.getId());
+            }
+
+            // Events that wait here, e.g. while a commit keeps failing, are delivered late rather than dropped
+            for (GeofenceEvent event : geofenceEventRepository.findWithAssetAndGeofenceByIdIn(ids)) {
+                deliver(event);
+            }
+            geofenceEventRepository.markNotificationSent(ids);
+            dispatched.increment(ids.size());
+            return locked.size();
+        });
+        return claimed != null ? claimed : 0;
+    }
+
+    private void deliver(GeofenceEvent event) {
+        GeofenceEventMessage message = webSocketService.createEventMessage(event);
+        webSocketService.broadcastGeofenceEvent(message);
+
+        String owner = assetOwnerRegistry.getOwner(event.getAsset().getId());
+        if (owner != null) {
+            webSocketService.sendUserNotification(owner, new SystemNotification(
+                    "INFO",
+                    "Geofence " + event.getEventType().name().toLowerCase(),
+                    message.getMessage(),
+                    event.getTimestamp(),
+                    message));
+        }
+    }
+}
@@ -8,6 +8,8 @@ import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -19,21 +21,61 @@ import java.util.Optional;
 public class GeofenceEventService {
 
     private final GeofenceEventRepository geofenceEventRepository;
+    private final GeofenceEventDispatcher geofenceEventDispatcher;
+    private final WebhookDispatcher webhookDispatcher;
+    private final WebSocketService webSocketService;
+    private final AssetOwnerRegistry assetOwnerRegistry;
 
     @Transactional
     public GeofenceEvent createEvent(Asset asset, Geofence geofence,
                                      GeofenceEvent.EventType eventType,
                                      double lat, double lon) {
+        return createEvent(asset, geofence, eventType, lat, lon, LocalDateTime.now());
+    }
+
+    /**
+     * Record an event that happened at the given time, e.g. a crossing interpolated between two fixes
+     */
+    @Transactional
+    public GeofenceEvent createEvent(Asset asset, Geofence geofence,
+                                     GeofenceEvent.EventType eventType,
+                                     double lat, double lon, LocalDateTime timestamp) {
         GeofenceEvent event = new GeofenceEvent();
         event.setAsset(asset);
         event.setGeofence(geofence);
         event.setEventType(eventType);
         event.setLatitude(lat);
         event.setLongitude(lon);
-        event.setTimestamp(LocalDateTime.now());
+        event.setTimestamp(timestamp);
         event.setNotificationSent(false);
 
-        return geofenceEventRepository.save(event);
+        // Stored as an outbox entry; delivered once the ingestion transaction has committed
+        GeofenceEvent saved = geofenceEventRepository.save(event);
+        geofenceEventDispatcher.dispatchAfterCommit();
+        queueWebhooksAfterCommit(saved);
+        return saved;
+    }
+
+    /**
+     * Hand the event to the owner's webhooks once the transaction commits; serialized
+     * here, while asset and geofence are loaded, and only if the owner has webhooks
+     */
+    private void queueWebhooksAfterCommit(GeofenceEvent event) {
+        String owner = assetOwnerRegistry.getOwner(event.getAsset().getId());
+        if (!webhookDispatcher.hasEndpoints(owner)) {
+            return;
+        }
+        byte[] payload = webSocketService.serialize(webSocketService.createEventMessage(event));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    webhookDispatcher.enqueue(owner, payload);
+                }
+            });
+        } else {
+            webhookDispatcher.enqueue(owner, payload);
+        }
     }
 
     public List<GeofenceEvent> getAllEvents() {
@@ -0,0 +1,202 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.util.GeoUtils;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineSegment;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.locationtech.jts.operation.distance.IndexedFacetDistance;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory R-tree of active geofence shapes for path checks between two fixes and
+ * boundary distances. Shapes are prepared once, so testing a segment against a fence
+ * or measuring to its boundary does not rebuild its edge index. The tree is immutable
+ * and replaced on every change (fences change rarely), so lookups need no locking;
+ * each change bumps a version that invalidates anything derived from the old shapes.
+ */
+@Component
+public class GeofenceGeometryIndex {
+
+    /**
+     * One stretch of a segment inside a fence, with both ends of the segment outside it
+     * Fractions are positions along the segment (0 = previous fix, 1 = current fix).
+     */
+    public record PassThrough(Long geofenceId, double entryFraction, Coordinate entry,
+                              double exitFraction, Coordinate exit) {
+    }
+
+    /**
+     * How far a point is from every fence, measured against the index version it was computed on
+     * boundaryDistance is the distance to the closest boundary (null if none is within the
+     * search radius); safeRadius also keeps clear of each fence's hysteresis buffer, so an
+     * asset moving less than it cannot change sides of any fence.
+     */
+    public record Clearance(Double boundaryDistance, double safeRadius, long version) {
+    }
+
+    // boundary is indexed with longitudes multiplied by lonScale (cos of the fence's middle
+    // latitude), where the nearest point in the plane is close to the nearest one in meters
+    private record Shape(Long geofenceId, Polygon polygon, double buffer, PreparedGeometry prepared,
+                         double lonScale, IndexedFacetDistance boundary) {
+    }
+
+    private record Snapshot(Map<Long, Shape> shapes, STRtree tree, double maxBuffer, long version) {
+    }
+
+    private volatile Snapshot snapshot = build(Map.of(), 0);
+
+    /**
+     * Replace all shapes, e.g. after loading the active geofences; keeps the current
+     * version if nothing changed
+     */
+    public synchronized void replaceAll(Map<Long, Polygon> polygons, Map<Long, Double> buffers) {
+        Map<Long, Shape> current = snapshot.shapes();
+        boolean changed = current.size() != polygons.size();
+        Map<Long, Shape> shapes = new HashMap<>();
+        for (Map.Entry<Long, Polygon> entry : polygons.entrySet()) {
+            double buffer = buffers.getOrDefault(entry.getKey(), 0.0);
+            Shape existing = current.get(entry.getKey());
+            if (existing != null && existing.buffer() == buffer && existing.polygon().equalsExact(entry.getValue())) {
+                shapes.put(entry.getKey(), existing);
+            } else {
+                shapes.put(entry.getKey(), shape(entry.getKey(), entry.getValue(), buffer));
+                changed = true;
+            }
+        }
+        if (changed) {
+            snapshot = build(shapes, snapshot.version() + 1);
+        }
+    }
+
+    public synchronized void put(Long geofenceId, Polygon polygon, double buffer) {
+        Map<Long, Shape> shapes = new HashMap<>(snapshot.shapes());
+        shapes.put(geofenceId, shape(geofenceId, polygon, buffer));
+        snapshot = build(shapes, snapshot.version() + 1);
+    }
+
+    public synchronized void remove(Long geofenceId) {
+        if (snapshot.shapes().containsKey(geofenceId)) {
+            Map<Long, Shape> shapes = new HashMap<>(snapshot.shapes());
+            shapes.remove(geofenceId);
+            snapshot = build(shapes, snapshot.version() + 1);
+        }
+    }
+
+    public int size() {
+        return snapshot.shapes().size();
+    }
+
+    public long version() {
+        return snapshot.version();
+    }
+
+    /**
+     * Distances from a point to the fences within maxMeters (plus the largest buffer)
+     */
+    @SuppressWarnings("unchecked")
+    public Clearance clearance(double lat, double lon, double maxMeters) {
+        Snapshot current = snapshot;
+        double reach = maxMeters + current.maxBuffer();
+        double latDelta = reach / GeoUtils.METERS_PER_DEGREE_LATITUDE;
+        double lonDelta = Math.min(180, reach / Math.max(1, GeoUtils.metersPerDegreeLongitude(lat)));
+        Envelope search = new Envelope(lon - lonDelta, lon + lonDelta, lat - latDelta, lat + latDelta);
+        List<Shape> candidates = current.tree().query(search);
+
+        // Shortest length of a degree of longitude in reach, relative to a degree of latitude
+        double minLonScale = Math.cos(Math.toRadians(Math.min(90, Math.abs(lat) + latDelta)));
+
+        Double nearest = null;
+        double safeRadius = maxMeters;
+        for (Shape shape : candidates) {
+            // Closest boundary point in the shape's scaled plane, measured geodesically
+            Point point = GeoUtils.WGS84_FACTORY.createPoint(new Coordinate(lon * shape.lonScale(), lat));
+            Coordinate closest = shape.boundary().nearestPoints(point)[0];
+            double distance = GeoUtils.distanceMeters(lat, lon, closest.y, closest.x / shape.lonScale());
+            if (distance <= maxMeters && (nearest == null || distance < nearest)) {
+                nearest = distance;
+            }
+            // Scaled units to meters at the shortest scale in reach, so the safe radius never overestimates
+            double lowerBound = point.getCoordinate().distance(closest) * GeoUtils.METERS_PER_DEGREE_LATITUDE
+                    * Math.min(1, minLonScale / shape.lonScale());
+            safeRadius = Math.min(safeRadius, lowerBound - shape.buffer());
+        }
+        return new Clearance(nearest, Math.max(0, safeRadius), current.version());
+    }
+
+    /**
+     * Fences the straight segment between two fixes crosses without either fix being inside,
+     * one pass-through per stretch inside: a concave fence can be entered more than once
+     */
+    @SuppressWarnings("unchecked")
+    public List<PassThrough> findPassThroughs(double fromLat, double fromLon, double toLat, double toLon) {
+        Coordinate from = new Coordinate(fromLon, fromLat);
+        Coordinate to = new Coordinate(toLon, toLat);
+        if (from.equals2D(to)) {
+            return List.of();
+        }
+
+        Snapshot current = snapshot;
+        LineString path = GeoUtils.WGS84_FACTORY.createLineString(new Coordinate[]{from, to});
+        List<Shape> candidates = current.tree().query(path.getEnvelopeInternal());
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+
+        Point start = GeoUtils.WGS84_FACTORY.createPoint(from);
+        Point end = GeoUtils.WGS84_FACTORY.createPoint(to);
+        LineSegment segment = new LineSegment(from, to);
+        List<PassThrough> result = new ArrayList<>();
+
+        for (Shape shape : candidates) {
+            if (!shape.prepared().intersects(path)
+                    || shape.prepared().covers(start) || shape.prepared().covers(end)) {
+                continue;
+            }
+            // The part of the path inside the fence; several pieces for a concave fence
+            Geometry inside = shape.polygon().intersection(path);
+            for (int i = 0; i < inside.getNumGeometries(); i++) {
+                double entryFraction = 1;
+                double exitFraction = 0;
+                for (Coordinate coordinate : inside.getGeometryN(i).getCoordinates()) {
+                    double fraction = segment.projectionFactor(coordinate);
+                    entryFraction = Math.min(entryFraction, fraction);
+                    exitFraction = Math.max(exitFraction, fraction);
+                }
+                if (exitFraction > entryFraction) { // not just touching the boundary
+                    result.add(new PassThrough(shape.geofenceId(),
+                            entryFraction, segment.pointAlong(entryFraction),
+                            exitFraction, segment.pointAlong(exitFraction)));
+                }
+            }
+        }
+        result.sort(Comparator.comparingDouble(PassThrough::entryFraction));
+        return result;
+    }
+
+    private static Shape shape(Long geofenceId, Polygon polygon, double buffer) {
+        double lonScale = GeoUtils.longitudeScale(polygon.getEnvelopeInternal().centre().y);
+        return new Shape(geofenceId, polygon, Math.max(0, buffer), PreparedGeometryFactory.prepare(polygon),
+                lonScale, new IndexedFacetDistance(GeoUtils.scaleLongitude(polygon.getExteriorRing(), lonScale)));
+    }
+
+    private static Snapshot build(Map<Long, Shape> shapes, long version) {
+        STRtree tree = new STRtree();
+        shapes.values().forEach(shape -> tree.insert(shape.polygon().getEnvelopeInternal(), shape));
+        tree.build();
+        double maxBuffer = shapes.values().stream().mapToDouble(Shape::buffer).max().orElse(0);
+        return new Snapshot(Map.copyOf(shapes), tree, maxBuffer, version);
+    }
+}
@@ -0,0 +1,186 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.dto.GeofenceOccupancyDTO;
+import com.tushar.geotrackr.dto.OccupancyUpdateMessage;
+import com.tushar.geotrackr.entity.Asset;
+import com.tushar.geotrackr.entity.Geofence;
+import com.tushar.geotrackr.entity.GeofenceEvent;
+import com.tushar.geotrackr.entity.GeofenceState;
+import com.tushar.geotrackr.repository.AssetRepository;
+import com.tushar.geotrackr.repository.GeofenceEventRepository;
+import com.tushar.geotrackr.repository.GeofenceRepository;
+import com.tushar.geotrackr.repository.GeofenceStateRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Service keeping the set of assets currently inside each geofence in memory
+ * Confirmed transitions are persisted as GeofenceState rows, independent of the fence's
+ * alert type; the in-memory sets are rebuilt from the rows of active fences at startup,
+ * then kept up to date by geofence checks. Only actual changes are pushed to /topic/occupancy.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class GeofenceOccupancyService {
+
+    private final GeofenceStateRepository geofenceStateRepository;
+    private final GeofenceEventRepository geofenceEventRepository;
+    private final AssetRepository assetRepository;
+    private final GeofenceRepository geofenceRepository;
+    private final WebSocketService webSocketService;
+
+    private final Map<Long, Set<Long>> occupants = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> geofencesByAsset = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuild() {
+        if (geofenceStateRepository.count() == 0) {
+            seedStatesFromEvents();
+        }
+        occupants.clear();
+        geofencesByAsset.clear();
+        List<Object[]> pairs = geofenceStateRepository.findInsideActiveGeofences();
+        for (Object[] pair : pairs) {
+            occupants.computeIfAbsent((Long) pair[0], id -> ConcurrentHashMap.newKeySet()).add((Long) pair[1]);
+            geofencesByAsset.computeIfAbsent((Long) pair[1], id -> ConcurrentHashMap.newKeySet()).add((Long) pair[0]);
+        }
+        log.info("Geofence occupancy rebuilt: {} asset(s) inside {} geofence(s)", pairs.size(), occupants.size());
+    }
+
+    /**
+     * Databases from before GeofenceState: take the latest ENTER or DWELL event per pair
+     * as inside, which is only wrong for fences that do not alert on exits
+     */
+    private void seedStatesFromEvents() {
+        List<GeofenceState> states = new ArrayList<>();
+        for (Object[] pair : geofenceEventRepository.findLatestPairsByEventTypes(
+                List.of(GeofenceEvent.EventType.ENTER, GeofenceEvent.EventType.DWELL))) {
+            states.add(new GeofenceState(null, assetRepository.getReferenceById((Long) pair[1]),
+                    geofenceRepository.getReferenceById((Long) pair[0]), true, LocalDateTime.now()));
+        }
+        if (!states.isEmpty()) {
+            geofenceStateRepository.saveAll(states);
+            log.info("Seeded {} geofence state(s) from events", states.size());
+        }
+    }
+
+    /**
+     * Whether the asset's last confirmed transition for the geofence was into it
+     */
+    public boolean isConfirmedInside(Long assetId, Long geofenceId) {
+        return geofenceStateRepository.findByAssetIdAndGeofenceId(assetId, geofenceId)
+                .map(GeofenceState::isInside)
+                .orElse(false);
+    }
+
+    /**
+     * isConfirmedInside with the pair's state row locked until the transaction ends; the
+     * geofence check and the pending-transition timer both read it this way, so they
+     * see each other's committed transitions instead of racing
+     */
+    public boolean lockConfirmedInside(Long assetId, Long geofenceId) {
+        return geofenceStateRepository.findForUpdate(assetId, geofenceId)
+                .map(GeofenceState::isInside)
+                .orElse(false);
+    }
+
+    /**
+     * Make sure the pair has a state row to lock before a pending transition is timed
+     */
+    public void ensureState(Long assetId, Long geofenceId) {
+        geofenceStateRepository.insertOutsideIfAbsent(assetId, geofenceId);
+    }
+
+    /**
+     * Persist a confirmed transition, alerted or not, and update the in-memory occupancy
+     * The row is inserted if missing and updated under its lock, so two fixes of a new
+     * pair cannot both insert it.
+     */
+    public void recordTransition(Asset asset, Geofence geofence, boolean inside) {
+        ensureState(asset.getId(), geofence.getId());
+        GeofenceState state = geofenceStateRepository.findForUpdate(asset.getId(), geofence.getId())
+                .orElseThrow(() -> new IllegalStateException("No geofence state for asset " + asset.getId()
+                        + " and geofence " + geofence.getId()));
+        state.setInside(inside);
+        state.setChangedAt(LocalDateTime.now());
+        geofenceStateRepository.save(state);
+        update(geofence, asset.getId(), inside);
+    }
+
+    /**
+     * Record whether an asset is inside a geofence, pushing an update only when that changes
+     */
+    public void update(Geofence geofence, Long assetId, boolean inside) {
+        boolean changed;
+        int occupancy;
+
+        if (inside) {
+            Set<Long> assets = occupants.computeIfAbsent(geofence.getId(), id -> ConcurrentHashMap.newKeySet());
+            changed = assets.add(assetId);
+            occupancy = assets.size();
+        } else {
+            Set<Long> assets = occupants.get(geofence.getId());
+            changed = assets != null && assets.remove(assetId);
+            occupancy = assets != null ? assets.size() : 0;
+        }
+
+        if (changed) {
+            Set<Long> geofences = geofencesByAsset.computeIfAbsent(assetId, id -> ConcurrentHashMap.newKeySet());
+            if (inside) {
+                geofences.add(geofence.getId());
+            } else {
+                geofences.remove(geofence.getId());
+            }
+            webSocketService.broadcastOccupancyUpdate(new OccupancyUpdateMessage(
+                    geofence.getId(),
+                    geofence.getName(),
+                    assetId,
+                    inside ? GeofenceEvent.EventType.ENTER.name() : GeofenceEvent.EventType.EXIT.name(),
+                    occupancy,
+                    LocalDateTime.now()
+            ));
+        }
+    }
+
+    /**
+     * Forget everyone inside a deactivated geofence, in memory and persisted
+     */
+    public void clear(Long geofenceId) {
+        geofenceStateRepository.deleteByGeofenceId(geofenceId);
+        occupants.remove(geofenceId);
+        geofencesByAsset.values().forEach(geofences -> geofences.remove(geofenceId));
+    }
+
+    /**
+     * Ids of the geofences an asset is currently inside
+     */
+    public Set<Long> getGeofencesOccupiedBy(Long assetId) {
+        Set<Long> geofences = geofencesByAsset.get(assetId);
+        return geofences != null ? Set.copyOf(geofences) : Set.of();
+    }
+
+    public GeofenceOccupancyDTO getOccupancy(Long geofenceId) {
+        Set<Long> assets = occupants.getOrDefault(geofenceId, Set.of());
+        return new GeofenceOccupancyDTO(geofenceId, assets.size(), Set.copyOf(assets));
+    }
+
+    public List<GeofenceOccupancyDTO> getAllOccupancy() {
+        List<GeofenceOccupancyDTO> result = new ArrayList<>();
+        occupants.forEach((geofenceId, assets) ->
+                result.add(new GeofenceOccupancyDTO(geofenceId, assets.size(), null)));
+        return result;
+    }
+}
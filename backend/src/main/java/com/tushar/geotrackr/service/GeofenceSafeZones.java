@@ -0,0 +1,130 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.dto.LivePosition;
+import com.tushar.geotrackr.util.GeoUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-asset "safe zone": the point where geofences were last evaluated and the radius
+ * around it that holds no fence boundary (minus the fence's buffer). While an asset stays
+ * inside, it cannot have changed sides of any fence, so the geofence check is skipped.
+ * Zones are tied to the geometry index version and go stale on any fence change.
+ */
+@Component
+@RequiredArgsConstructor
+public class GeofenceSafeZones {
+
+    private record SafeZone(double latitude, double longitude, Double boundaryDistance,
+                            double radius, long version) {
+    }
+
+    private final GeofenceGeometryIndex geometryIndex;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${geofence.safe-zone.enabled:true}")
+    private boolean enabled;
+
+    @Value("${geofence.safe-zone.search-radius:20000}")
+    private double searchRadius; // meters; also the largest safe radius
+
+    private final Map<Long, SafeZone> zones = new ConcurrentHashMap<>();
+    private Counter skipped;
+
+    @PostConstruct
+    public void init() {
+        skipped = Counter.builder("geofence.checks.skipped")
+                .description("Fixes inside the asset's safe zone, not checked against geofences")
+                .register(meterRegistry);
+        Gauge.builder("geofence.safe-zones", zones, Map::size)
+                .description("Assets with a cached geofence safe zone")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Whether the fix, and the previous one the path check would start from, are inside
+     * the asset's current safe zone
+     */
+    public boolean isSafe(Long assetId, LivePosition previous, double lat, double lon) {
+        SafeZone zone = currentZone(assetId);
+        if (zone == null || !contains(zone, lat, lon)) {
+            return false;
+        }
+        if (previous != null && previous.getLatitude() != null && previous.getLongitude() != null
+                && !contains(zone, previous.getLatitude(), previous.getLongitude())) {
+            return false;
+        }
+        skipped.increment();
+        return true;
+    }
+
+    /**
+     * Store a new zone around a fully evaluated fix; dropped again if the transaction
+     * that recorded its events rolls back
+     */
+    public void update(Long assetId, double lat, double lon) {
+        if (!enabled) {
+            return;
+        }
+        GeofenceGeometryIndex.Clearance clearance = geometryIndex.clearance(lat, lon, searchRadius);
+        SafeZone zone = new SafeZone(lat, lon, clearance.boundaryDistance(), clearance.safeRadius(),
+                clearance.version());
+        zones.put(assetId, zone);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        zones.remove(assetId, zone);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Distance in meters to the closest fence boundary, null if none is within the search
+     * radius. Inside a safe zone this is the lower bound left after the distance moved
+     * (from the search radius if the zone had no boundary in range), so it needs no
+     * geometry work.
+     */
+    public Double boundaryDistance(Long assetId, double lat, double lon) {
+        SafeZone zone = currentZone(assetId);
+        if (zone != null && contains(zone, lat, lon)) {
+            double known = zone.boundaryDistance() != null ? zone.boundaryDistance() : searchRadius;
+            return Math.max(0, known - GeoUtils.distanceMeters(zone.latitude(), zone.longitude(), lat, lon));
+        }
+        return geometryIndex.clearance(lat, lon, searchRadius).boundaryDistance();
+    }
+
+    public void evict(Long assetId) {
+        zones.remove(assetId);
+    }
+
+    private SafeZone currentZone(Long assetId) {
+        if (!enabled) {
+            return null;
+        }
+        SafeZone zone = zones.get(assetId);
+        if (zone != null && zone.version() != geometryIndex.version()) {
+            zones.remove(assetId, zone);
+            return null;
+        }
+        return zone;
+    }
+
+    private static boolean contains(SafeZone zone, double lat, double lon) {
+        return GeoUtils.distanceMeters(zone.latitude(), zone.longitude(), lat, lon) < zone.radius();
+    }
+}
@@ -2,19 +2,36 @@ package com.tushar.geotrackr.service;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tushar.geotrackr.config.SpatialSupport;
+import com.tushar.geotrackr.dto.LivePosition;
 import com.tushar.geotrackr.entity.Asset;
 import com.tushar.geotrackr.entity.Geofence;
 import com.tushar.geotrackr.entity.GeofenceEvent;
+import com.tushar.geotrackr.repository.AssetRepository;
+import com.tushar.geotrackr.repository.GeofenceEventRepository;
 import com.tushar.geotrackr.repository.GeofenceRepository;
+import com.tushar.geotrackr.util.GeoUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.locationtech.jts.geom.*;
+import org.locationtech.jts.operation.distance.DistanceOp;
 import org.locationtech.jts.util.GeometricShapeFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -22,26 +39,30 @@ import java.util.List;
 public class GeofenceService {
 
     private final GeofenceRepository geofenceRepository;
+    private final GeofenceEventRepository geofenceEventRepository;
+    private final AssetRepository assetRepository;
     private final GeofenceEventService geofenceEventService;
+    private final GeofenceOccupancyService geofenceOccupancyService;
+    private final GeofenceTransitionTimers transitionTimers;
+    private final GeofenceGeometryIndex geometryIndex;
+    private final GeofenceSafeZones safeZones;
+    private final LivePositionIndex livePositionIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final SpatialSupport spatialSupport;
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final GeometryFactory geometryFactory = new GeometryFactory();
+    private final GeometryFactory geometryFactory = GeoUtils.WGS84_FACTORY;
 
-    private static final double EARTH_RADIUS_KM = 6371.0;
+    @Value("${geofence.path.max-gap:600000}")
+    private long pathMaxGap; // milliseconds between fixes, longer gaps are not checked along the path
+
+    @Value("${geofence.path.max-length:50000}")
+    private double pathMaxLength; // meters between fixes
 
     /**
      * Calculate distance between two points using Haversine formula
      */
     public double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                        Math.sin(dLon / 2) * Math.sin(dLon / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-
-        return EARTH_RADIUS_KM * c * 1000; // Return distance in meters
+        return GeoUtils.distanceMeters(lat1, lon1, lat2, lon2);
     }
 
     /**
@@ -68,37 +89,154 @@ public class GeofenceService {
      */
     public boolean isInsidePolygonalGeofence(Geofence geofence, double lat, double lon) {
         try {
-            if (geofence.getPolygonCoordinates() == null) {
+            Polygon polygon = polygonOf(geofence);
+            if (polygon == null) {
                 return false;
             }
 
-            List<List<Double>> coordinates = objectMapper.readValue(
-                    geofence.getPolygonCoordinates(),
-                    new TypeReference<List<List<Double>>>() {}
-            );
+            Point point = geometryFactory.createPoint(new Coordinate(lon, lat));
+            return polygon.contains(point);
 
-            if (coordinates.size() < 3) {
-                log.warn("Polygon must have at least 3 points");
-                return false;
+        } catch (Exception e) {
+            log.error("Error checking polygonal geofence: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Parse polygon coordinates stored as JSON [[lat, lon], ...] into a closed JTS polygon
+     */
+    public Polygon parsePolygon(String polygonCoordinates) throws Exception {
+        if (polygonCoordinates == null) {
+            return null;
+        }
+
+        List<List<Double>> coordinates = objectMapper.readValue(
+                polygonCoordinates,
+                new TypeReference<List<List<Double>>>() {}
+        );
+
+        if (coordinates.size() < 3) {
+            log.warn("Polygon must have at least 3 points");
+            return null;
+        }
+
+        // Create polygon coordinates
+        Coordinate[] coords = new Coordinate[coordinates.size() + 1];
+        for (int i = 0; i < coordinates.size(); i++) {
+            coords[i] = new Coordinate(coordinates.get(i).get(1), coordinates.get(i).get(0));
+        }
+        // Close the polygon
+        coords[coordinates.size()] = coords[0];
+
+        return geometryFactory.createPolygon(coords);
+    }
+
+    /**
+     * Shape of a geofence for the in-memory geometry index; circles become 64-sided
+     * polygons, stretched in longitude so they stay round on the ground
+     */
+    public Polygon toPolygon(Geofence geofence) throws Exception {
+        if (geofence.getType() != Geofence.GeofenceType.CIRCULAR) {
+            return polygonOf(geofence);
+        }
+        if (geofence.getCenterLatitude() == null || geofence.getCenterLongitude() == null
+                || geofence.getRadius() == null) {
+            return null;
+        }
+        GeometricShapeFactory shapeFactory = new GeometricShapeFactory(geometryFactory);
+        shapeFactory.setNumPoints(64);
+        shapeFactory.setCentre(new Coordinate(geofence.getCenterLongitude(), geofence.getCenterLatitude()));
+        shapeFactory.setWidth(2 * geofence.getRadius() / GeoUtils.metersPerDegreeLongitude(geofence.getCenterLatitude()));
+        shapeFactory.setHeight(2 * geofence.getRadius() / GeoUtils.METERS_PER_DEGREE_LATITUDE);
+        return shapeFactory.createEllipse();
+    }
+
+    /**
+     * Load the active geofences into the geometry index; repeated so fences changed
+     * on other nodes are picked up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${geofence.index.reload-interval:60000}",
+            initialDelayString = "${geofence.index.reload-interval:60000}")
+    public void reloadGeometryIndex() {
+        Map<Long, Polygon> polygons = new HashMap<>();
+        Map<Long, Double> buffers = new HashMap<>();
+        for (Geofence geofence : geofenceRepository.findByActiveTrue()) {
+            try {
+                Polygon polygon = toPolygon(geofence);
+                if (polygon != null) {
+                    polygons.put(geofence.getId(), polygon);
+                    buffers.put(geofence.getId(), indexBuffer(geofence));
+                }
+            } catch (Exception e) {
+                log.warn("Geofence {} left out of the geometry index: {}", geofence.getId(), e.getMessage());
             }
+        }
+        geometryIndex.replaceAll(polygons, buffers);
+        log.debug("Geofence geometry index loaded {} geofence(s)", polygons.size());
+    }
 
-            // Create polygon coordinates
-            Coordinate[] coords = new Coordinate[coordinates.size() + 1];
-            for (int i = 0; i < coordinates.size(); i++) {
-                coords[i] = new Coordinate(coordinates.get(i).get(1), coordinates.get(i).get(0));
+    private void indexGeometry(Geofence geofence) {
+        try {
+            Polygon polygon = geofence.isActive() ? toPolygon(geofence) : null;
+            if (polygon != null) {
+                geometryIndex.put(geofence.getId(), polygon, indexBuffer(geofence));
+            } else {
+                geometryIndex.remove(geofence.getId());
             }
-            // Close the polygon
-            coords[coordinates.size()] = coords[0];
+        } catch (Exception e) {
+            geometryIndex.remove(geofence.getId());
+        }
+    }
 
-            Polygon polygon = geometryFactory.createPolygon(coords);
-            Point point = geometryFactory.createPoint(new Coordinate(lon, lat));
+    /**
+     * Distance around the indexed shape within which the side of the fence is uncertain:
+     * the hysteresis buffer, plus a margin for the polygon standing in for a circle
+     */
+    private double indexBuffer(Geofence geofence) {
+        double buffer = geofence.getBufferDistance() != null ? Math.max(0, geofence.getBufferDistance()) : 0;
+        if (geofence.getType() == Geofence.GeofenceType.CIRCULAR && geofence.getRadius() != null) {
+            buffer += geofence.getRadius() * 0.005; // 64-sided polygon is within 0.5% of the circle
+        }
+        return buffer;
+    }
 
-            return polygon.contains(point);
+    /**
+     * Parse the boundary polygon from the geofence definition; rejects invalid coordinates
+     */
+    public void applyGeometry(Geofence geofence) {
+        if (geofence.getType() == Geofence.GeofenceType.CIRCULAR) {
+            geofence.setBoundary(null);
+        } else {
+            try {
+                geofence.setBoundary(parsePolygon(geofence.getPolygonCoordinates()));
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Invalid polygon coordinates: " + e.getMessage());
+            }
+        }
+    }
 
-        } catch (Exception e) {
-            log.error("Error checking polygonal geofence: {}", e.getMessage());
-            return false;
+    /**
+     * Write the boundary polygon to the PostGIS column used by the prefilter queries;
+     * the center column is generated from the latitude/longitude columns
+     */
+    public void storeGeometry(Geofence geofence) {
+        if (!spatialSupport.isEnabled()) {
+            return;
         }
+        Polygon boundary = geofence.getType() == Geofence.GeofenceType.POLYGONAL ? geofence.getBoundary() : null;
+        geofenceRepository.updateBoundary(geofence.getId(), boundary != null ? boundary.toText() : null);
+    }
+
+    /**
+     * Polygon of a polygonal geofence, parsed once per loaded entity
+     */
+    private Polygon polygonOf(Geofence geofence) throws Exception {
+        if (geofence.getBoundary() == null) {
+            geofence.setBoundary(parsePolygon(geofence.getPolygonCoordinates()));
+        }
+        return geofence.getBoundary();
     }
 
     /**
@@ -112,64 +250,283 @@ public class GeofenceService {
         }
     }
 
+    /**
+     * Check if asset is inside a geofence, with the fence's buffer applied around the
+     * boundary: a fix has to be bufferDistance past it before the side changes
+     */
+    public boolean isInsideGeofence(Geofence geofence, double lat, double lon, boolean wasInside) {
+        boolean inside = isInsideGeofence(geofence, lat, lon);
+        Double buffer = geofence.getBufferDistance();
+        if (inside == wasInside || buffer == null || buffer <= 0) {
+            return inside;
+        }
+        return distanceToBoundary(geofence, lat, lon) >= buffer ? inside : wasInside;
+    }
+
+    /**
+     * Distance in meters from a point to the geofence boundary
+     */
+    public double distanceToBoundary(Geofence geofence, double lat, double lon) {
+        if (geofence.getType() == Geofence.GeofenceType.CIRCULAR) {
+            return Math.abs(calculateDistance(geofence.getCenterLatitude(), geofence.getCenterLongitude(), lat, lon)
+                    - geofence.getRadius());
+        }
+        try {
+            Polygon polygon = polygonOf(geofence);
+            if (polygon == null) {
+                return 0;
+            }
+            // Nearest boundary point with longitudes scaled to the point's latitude, measured geodesically
+            double lonScale = GeoUtils.longitudeScale(lat);
+            Coordinate nearest = DistanceOp.nearestPoints(GeoUtils.scaleLongitude(polygon.getExteriorRing(), lonScale),
+                    geometryFactory.createPoint(new Coordinate(lon * lonScale, lat)))[0];
+            return calculateDistance(lat, lon, nearest.y, nearest.x / lonScale);
+        } catch (Exception e) {
+            log.error("Error measuring distance to polygonal geofence: {}", e.getMessage());
+            return 0;
+        }
+    }
+
     /**
      * Check all active geofences for an asset's location
+     * A transition needs a fix bufferDistance past the boundary and, with minDwellSeconds,
+     * is only confirmed by a timer if the asset is still on the new side when it fires.
+     * With the previous fix, fences passed through between the two fixes are found too.
+     * Fixes that stay within the asset's safe zone skip all of this.
      */
     @Transactional
-    public List<GeofenceEvent> checkGeofences(Asset asset, double lat, double lon) {
-        List<Geofence> activeGeofences = geofenceRepository.findByActiveTrue();
+    public List<GeofenceEvent> checkGeofences(Asset asset, LivePosition previous, double lat, double lon) {
+        // No fence boundary is close enough to have been crossed since the last evaluation
+        if (safeZones.isSafe(asset.getId(), previous, lat, lon)) {
+            return List.of();
+        }
+
+        List<Geofence> activeGeofences = findCandidateGeofences(asset.getId(), lat, lon);
         List<GeofenceEvent> events = new ArrayList<>();
 
-        log.debug("Checking {} active geofences for asset {}", activeGeofences.size(), asset.getId());
+        log.debug("Checking {} candidate geofences for asset {}", activeGeofences.size(), asset.getId());
 
         for (Geofence geofence : activeGeofences) {
-            boolean currentlyInside = isInsideGeofence(geofence, lat, lon);
-            GeofenceEvent.EventType eventType = determineEventType(asset, geofence, currentlyInside);
+            boolean wasInside = geofenceOccupancyService.lockConfirmedInside(asset.getId(), geofence.getId());
+            boolean currentlyInside = isInsideGeofence(geofence, lat, lon, wasInside);
+
+            if (currentlyInside == wasInside) {
+                // Back on the confirmed side before a pending transition was confirmed
+                transitionTimers.cancel(GeofenceTransitionTimers.Kind.PENDING, asset.getId(), geofence.getId());
+                geofenceOccupancyService.update(geofence, asset.getId(), currentlyInside);
+                continue;
+            }
+
+            GeofenceEvent.EventType eventType = currentlyInside
+                    ? GeofenceEvent.EventType.ENTER : GeofenceEvent.EventType.EXIT;
+            Integer minDwellSeconds = geofence.getMinDwellSeconds();
+            if (minDwellSeconds != null && minDwellSeconds > 0 && shouldTriggerAlert(geofence, eventType)) {
+                Long assetId = asset.getId();
+                Long geofenceId = geofence.getId();
+                geofenceOccupancyService.ensureState(assetId, geofenceId);
+                transitionTimers.scheduleIfAbsent(GeofenceTransitionTimers.Kind.PENDING, assetId, geofenceId,
+                        minDwellSeconds * 1000L, () -> confirmPendingTransition(assetId, geofenceId, eventType));
+                continue;
+            }
 
-            if (eventType != null && shouldTriggerAlert(geofence, eventType)) {
-                GeofenceEvent event = geofenceEventService.createEvent(
-                        asset, geofence, eventType, lat, lon
-                );
+            GeofenceEvent event = applyTransition(asset, geofence, eventType, lat, lon);
+            if (event != null) {
                 events.add(event);
-                log.info("Geofence event created: Asset {} {} geofence {}",
-                        asset.getId(), eventType, geofence.getName());
             }
         }
 
+        if (previous != null) {
+            events.addAll(checkPath(asset, previous, lat, lon));
+        }
+        safeZones.update(asset.getId(), lat, lon);
+        return events;
+    }
+
+    /**
+     * ENTER/EXIT pairs for fences the straight path from the previous fix crossed
+     * while both fixes were outside, timed by interpolating along the path
+     */
+    private List<GeofenceEvent> checkPath(Asset asset, LivePosition previous, double lat, double lon) {
+        if (previous.getLatitude() == null || previous.getLongitude() == null || previous.getTimestamp() == null) {
+            return List.of();
+        }
+        LocalDateTime now = asset.getLastUpdate() != null ? asset.getLastUpdate() : LocalDateTime.now();
+        long gapMillis = Duration.between(previous.getTimestamp(), now).toMillis();
+        // Over long gaps or distances the straight line says little about the actual route
+        if (gapMillis <= 0 || gapMillis > pathMaxGap
+                || calculateDistance(previous.getLatitude(), previous.getLongitude(), lat, lon) > pathMaxLength) {
+            return List.of();
+        }
+
+        List<GeofenceGeometryIndex.PassThrough> crossings = geometryIndex.findPassThroughs(
+                previous.getLatitude(), previous.getLongitude(), lat, lon);
+        List<GeofenceEvent> events = new ArrayList<>();
+        for (GeofenceGeometryIndex.PassThrough crossing : crossings) {
+            Geofence geofence = geofenceRepository.findById(crossing.geofenceId())
+                    .filter(Geofence::isActive).orElse(null);
+            // A fence the asset is confirmed inside is left through the point check
+            if (geofence == null || isConfirmedInside(asset.getId(), geofence.getId())
+                    || !isDeepEnough(geofence, crossing, gapMillis)) {
+                continue;
+            }
+
+            LocalDateTime enteredAt = previous.getTimestamp()
+                    .plus(Duration.ofMillis((long) (crossing.entryFraction() * gapMillis)));
+            LocalDateTime exitedAt = previous.getTimestamp()
+                    .plus(Duration.ofMillis((long) (crossing.exitFraction() * gapMillis)));
+            if (shouldTriggerAlert(geofence, GeofenceEvent.EventType.ENTER)) {
+                events.add(geofenceEventService.createEvent(asset, geofence, GeofenceEvent.EventType.ENTER,
+                        crossing.entry().y, crossing.entry().x, enteredAt));
+            }
+            if (shouldTriggerAlert(geofence, GeofenceEvent.EventType.EXIT)) {
+                events.add(geofenceEventService.createEvent(asset, geofence, GeofenceEvent.EventType.EXIT,
+                        crossing.exit().y, crossing.exit().x, exitedAt));
+            }
+            log.info("Asset {} passed through geofence {} between fixes", asset.getId(), geofence.getName());
+        }
         return events;
     }
 
     /**
-     * Determine if this is an ENTER or EXIT event
+     * Apply the fence's buffer and minimum dwell time to one piece of a pass-through
      */
-    private GeofenceEvent.EventType determineEventType(Asset asset, Geofence geofence,
-                                                       boolean currentlyInside) {
-        // Get last event for this asset in this geofence
-        var lastEvent = geofenceEventService.getLastEventForAssetInGeofence(
-                asset.getId(), geofence.getId()
-        );
+    private boolean isDeepEnough(Geofence geofence, GeofenceGeometryIndex.PassThrough crossing, long gapMillis) {
+        Integer minDwellSeconds = geofence.getMinDwellSeconds();
+        long insideMillis = (long) ((crossing.exitFraction() - crossing.entryFraction()) * gapMillis);
+        if (minDwellSeconds != null && insideMillis < minDwellSeconds * 1000L) {
+            return false;
+        }
+        Double buffer = geofence.getBufferDistance();
+        if (buffer == null || buffer <= 0) {
+            return true;
+        }
+        // The piece is a straight run inside the fence, so its midpoint is inside even for a concave fence
+        double midLat = (crossing.entry().y + crossing.exit().y) / 2;
+        double midLon = (crossing.entry().x + crossing.exit().x) / 2;
+        return isInsideGeofence(geofence, midLat, midLon) && distanceToBoundary(geofence, midLat, midLon) >= buffer;
+    }
 
-        if (lastEvent.isEmpty()) {
-            // First time checking, only trigger if currently inside
-            return currentlyInside ? GeofenceEvent.EventType.ENTER : null;
+    /**
+     * Record a confirmed transition: occupancy, the event if the fence alerts on it, dwell timer
+     */
+    private GeofenceEvent applyTransition(Asset asset, Geofence geofence, GeofenceEvent.EventType eventType,
+                                          double lat, double lon) {
+        boolean entered = eventType == GeofenceEvent.EventType.ENTER;
+        geofenceOccupancyService.recordTransition(asset, geofence, entered);
+        if (!entered) {
+            transitionTimers.cancel(GeofenceTransitionTimers.Kind.DWELL, asset.getId(), geofence.getId());
+        }
+        if (!shouldTriggerAlert(geofence, eventType)) {
+            return null;
         }
 
-        GeofenceEvent.EventType lastEventType = lastEvent.get().getEventType();
+        GeofenceEvent event = geofenceEventService.createEvent(asset, geofence, eventType, lat, lon);
+        log.info("Geofence event created: Asset {} {} geofence {}",
+                asset.getId(), eventType, geofence.getName());
+        if (entered && geofence.getDwellAlertMinutes() != null) {
+            scheduleDwell(asset.getId(), geofence.getId(), event.getId(),
+                    geofence.getDwellAlertMinutes() * 60_000L);
+        }
+        return event;
+    }
+
+    /**
+     * Timer callback: confirm a pending transition if the latest fix is still on the new side
+     * Holds the pair's state lock like checkGeofences, so a fix being checked is either
+     * committed before this runs or sees the confirmed transition.
+     */
+    private void confirmPendingTransition(Long assetId, Long geofenceId, GeofenceEvent.EventType eventType) {
+        transactionTemplate.executeWithoutResult(status -> {
+            boolean wasInside = geofenceOccupancyService.lockConfirmedInside(assetId, geofenceId);
+            LivePosition position = livePositionIndex.get(assetId);
+            if (position == null || position.getLatitude() == null || position.getLongitude() == null) {
+                return;
+            }
+            Geofence geofence = geofenceRepository.findById(geofenceId).filter(Geofence::isActive).orElse(null);
+            Asset asset = assetRepository.findById(assetId).orElse(null);
+            if (geofence == null || asset == null) {
+                return;
+            }
+            boolean inside = isInsideGeofence(geofence, position.getLatitude(), position.getLongitude(), wasInside);
+            if (inside == wasInside || inside != (eventType == GeofenceEvent.EventType.ENTER)) {
+                return; // moved back, or confirmed in the meantime
+            }
+            applyTransition(asset, geofence, eventType, position.getLatitude(), position.getLongitude());
+        });
+    }
+
+    private void scheduleDwell(Long assetId, Long geofenceId, Long enterEventId, long delayMillis) {
+        transitionTimers.schedule(GeofenceTransitionTimers.Kind.DWELL, assetId, geofenceId, delayMillis,
+                () -> recordDwell(assetId, geofenceId, enterEventId));
+    }
+
+    /**
+     * Timer callback: record a DWELL event if the ENTER that started the timer is still the latest event
+     */
+    private void recordDwell(Long assetId, Long geofenceId, Long enterEventId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            GeofenceEvent enter = geofenceEventService.getLastEventForAssetInGeofence(assetId, geofenceId)
+                    .filter(last -> last.getId().equals(enterEventId))
+                    .orElse(null);
+            if (enter == null || !enter.getGeofence().isActive() || !isConfirmedInside(assetId, geofenceId)) {
+                return; // exited or already reported
+            }
+            LivePosition position = livePositionIndex.get(assetId);
+            double lat = position != null && position.getLatitude() != null
+                    ? position.getLatitude() : enter.getLatitude();
+            double lon = position != null && position.getLongitude() != null
+                    ? position.getLongitude() : enter.getLongitude();
+            geofenceEventService.createEvent(enter.getAsset(), enter.getGeofence(),
+                    GeofenceEvent.EventType.DWELL, lat, lon);
+            log.info("Geofence event created: Asset {} DWELL geofence {}", assetId, geofenceId);
+        });
+    }
 
-        // Check for state change
-        if (currentlyInside && lastEventType == GeofenceEvent.EventType.EXIT) {
-            return GeofenceEvent.EventType.ENTER;
-        } else if (!currentlyInside && lastEventType == GeofenceEvent.EventType.ENTER) {
-            return GeofenceEvent.EventType.EXIT;
+    /**
+     * Re-arm the dwell timers of stays that were open when the application stopped
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void restoreDwellTimers() {
+        long now = System.currentTimeMillis();
+        List<Object[]> stays = geofenceEventRepository.findOpenDwellStays();
+        for (Object[] stay : stays) {
+            long enteredAt = ((LocalDateTime) stay[3]).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            long dueAt = enteredAt + ((Integer) stay[4]) * 60_000L;
+            scheduleDwell((Long) stay[1], (Long) stay[0], (Long) stay[2], dueAt - now);
+        }
+        if (!stays.isEmpty()) {
+            log.info("Restored {} geofence dwell timer(s)", stays.size());
         }
+    }
 
-        return null; // No state change
+    /**
+     * Geofences that may produce a transition for this fix
+     * With PostGIS only fences containing the point (GiST indexed) plus the fences the asset
+     * is currently inside are loaded; without it every active fence is checked in memory.
+     */
+    private List<Geofence> findCandidateGeofences(Long assetId, double lat, double lon) {
+        if (!spatialSupport.isEnabled()) {
+            return geofenceRepository.findByActiveTrue();
+        }
+
+        Set<Long> occupied = geofenceOccupancyService.getGeofencesOccupiedBy(assetId);
+        return occupied.isEmpty()
+                ? geofenceRepository.findActiveContaining(lat, lon)
+                : geofenceRepository.findActiveCandidates(lat, lon, occupied);
+    }
+
+    private boolean isConfirmedInside(Long assetId, Long geofenceId) {
+        return geofenceOccupancyService.isConfirmedInside(assetId, geofenceId);
     }
 
     /**
      * Check if alert should be triggered based on geofence configuration
+     * DWELL events are recorded whenever the fence has a dwell alert.
      */
     private boolean shouldTriggerAlert(Geofence geofence, GeofenceEvent.EventType eventType) {
+        if (eventType == GeofenceEvent.EventType.DWELL) {
+            return geofence.getDwellAlertMinutes() != null;
+        }
         return geofence.getAlertType() == Geofence.AlertType.BOTH ||
                 (geofence.getAlertType() == Geofence.AlertType.ENTRY &&
                         eventType == GeofenceEvent.EventType.ENTER) ||
@@ -182,7 +539,11 @@ public class GeofenceService {
     @Transactional
     public Geofence createGeofence(Geofence geofence) {
         validateGeofence(geofence);
-        return geofenceRepository.save(geofence);
+        applyGeometry(geofence);
+        Geofence saved = geofenceRepository.save(geofence);
+        storeGeometry(saved);
+        indexGeometry(saved);
+        return saved;
     }
 
     public List<Geofence> getAllGeofences() {
@@ -210,10 +571,20 @@ public class GeofenceService {
         existing.setRadius(updatedGeofence.getRadius());
         existing.setPolygonCoordinates(updatedGeofence.getPolygonCoordinates());
         existing.setAlertType(updatedGeofence.getAlertType());
+        existing.setBufferDistance(updatedGeofence.getBufferDistance());
+        existing.setMinDwellSeconds(updatedGeofence.getMinDwellSeconds());
+        existing.setDwellAlertMinutes(updatedGeofence.getDwellAlertMinutes());
         existing.setActive(updatedGeofence.isActive());
 
         validateGeofence(existing);
-        return geofenceRepository.save(existing);
+        applyGeometry(existing);
+        Geofence saved = geofenceRepository.save(existing);
+        storeGeometry(saved);
+        indexGeometry(saved);
+        if (!saved.isActive()) {
+            geofenceOccupancyService.clear(id);
+        }
+        return saved;
     }
 
     @Transactional
@@ -221,6 +592,9 @@ public class GeofenceService {
         Geofence geofence = getGeofenceById(id);
         geofence.setActive(false);
         geofenceRepository.save(geofence);
+        geofenceOccupancyService.clear(id);
+        transitionTimers.clearGeofence(id);
+        geometryIndex.remove(id);
     }
 
     private void validateGeofence(Geofence geofence) {
@@ -233,6 +607,9 @@ public class GeofenceService {
             if (geofence.getRadius() <= 0) {
                 throw new IllegalArgumentException("Radius must be greater than 0");
             }
+            if (geofence.getBufferDistance() != null && geofence.getBufferDistance() >= geofence.getRadius()) {
+                throw new IllegalArgumentException("Buffer distance must be smaller than the radius");
+            }
         } else if (geofence.getType() == Geofence.GeofenceType.POLYGONAL) {
             if (geofence.getPolygonCoordinates() == null) {
                 throw new IllegalArgumentException("Polygonal geofence requires coordinates");
@@ -0,0 +1,161 @@
+package com.tushar.geotrackr.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * One-shot timers per (asset, geofence) for transitions that wait for time to pass
+ * PENDING confirms an ENTER/EXIT once the fence's minimum dwell time has elapsed,
+ * DWELL reports a long stay inside. A fix back on the confirmed side or an exit
+ * cancels the timer, so open stays are never polled. Timers requested inside a
+ * transaction start once it commits, so they never act on state that was rolled back.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GeofenceTransitionTimers {
+
+    public enum Kind {
+        PENDING, DWELL
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${geofence.timers.threads:2}")
+    private int threads;
+
+    private final Map<Key, Timer> timers = new ConcurrentHashMap<>();
+    private ThreadPoolTaskScheduler scheduler;
+
+    @PostConstruct
+    public void init() {
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(threads);
+        scheduler.setThreadNamePrefix("geofence-timer-");
+        scheduler.setRemoveOnCancelPolicy(true);
+        scheduler.initialize();
+
+        Gauge.builder("geofence.timers", timers, Map::size)
+                .description("Pending geofence transition and dwell timers")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * Start a timer unless one of this kind is already running for the pair
+     */
+    public void scheduleIfAbsent(Kind kind, Long assetId, Long geofenceId, long delayMillis, Runnable task) {
+        afterCommit(() -> {
+            Key key = new Key(kind, assetId, geofenceId);
+            Timer timer = new Timer(key, task);
+            if (timers.putIfAbsent(key, timer) == null) {
+                timer.start(delayMillis);
+            }
+        });
+    }
+
+    /**
+     * Start a timer, replacing a running one of this kind for the pair
+     */
+    public void schedule(Kind kind, Long assetId, Long geofenceId, long delayMillis, Runnable task) {
+        afterCommit(() -> {
+            Key key = new Key(kind, assetId, geofenceId);
+            Timer timer = new Timer(key, task);
+            Timer previous = timers.put(key, timer);
+            if (previous != null) {
+                previous.cancel();
+            }
+            timer.start(delayMillis);
+        });
+    }
+
+    public void cancel(Kind kind, Long assetId, Long geofenceId) {
+        Timer timer = timers.remove(new Key(kind, assetId, geofenceId));
+        if (timer != null) {
+            timer.cancel();
+        }
+    }
+
+    /**
+     * Drop every timer of a deactivated geofence
+     */
+    public void clearGeofence(Long geofenceId) {
+        timers.values().removeIf(timer -> {
+            if (timer.key.geofenceId().equals(geofenceId)) {
+                timer.cancel();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private record Key(Kind kind, Long assetId, Long geofenceId) {
+    }
+
+    private class Timer {
+
+        private final Key key;
+        private final Runnable task;
+        private volatile ScheduledFuture<?> future;
+
+        Timer(Key key, Runnable task) {
+            this.key = key;
+            this.task = task;
+        }
+
+        void start(long delayMillis) {
+            future = scheduler.schedule(this::fire, Instant.now().plusMillis(Math.max(0, delayMillis)));
+        }
+
+        void cancel() {
+            ScheduledFuture<?> scheduled = future;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        }
+
+        private void fire() {
+            // A timer cancelled or replaced after it was due must not run
+            if (!timers.remove(key, this)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.error("Geofence {} timer for asset {} in geofence {} failed: {}",
+                        key.kind(), key.assetId(), key.geofenceId(), e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.dto.HeatmapTileDTO;
+import com.tushar.geotrackr.entity.GPSData;
+import com.tushar.geotrackr.repository.GPSDataRepository;
+import com.tushar.geotrackr.repository.HeatmapCellRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Service aggregating GPS fixes into web-mercator tile cell counts per time bucket
+ * Counts are accumulated in memory at ingestion and flushed as upserts; a backfill
+ * job rebuilds whole buckets from gps_data, limited to buckets live aggregation no longer
+ * writes to. Tiles are served from the aggregates only, each from a stored zoom at most
+ * max-zoom-shift levels deeper, which bounds the cells summed per tile.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HeatmapService {
+
+    private static final double MAX_MERCATOR_LATITUDE = 85.05112878;
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO heatmap_cells (zoom, tile_x, tile_y, cell_index, bucket_start, count) " +
+            "VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (zoom, tile_x, tile_y, bucket_start, cell_index) " +
+            "DO UPDATE SET count = heatmap_cells.count + EXCLUDED.count";
+
+    private final GPSDataRepository gpsDataRepository;
+    private final HeatmapCellRepository heatmapCellRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${heatmap.zoom-levels:1,4,7,10,13,16}")
+    private List<Integer> zoomLevels;
+
+    @Value("${heatmap.resolution:256}")
+    private int resolution; // cells per tile side
+
+    @Value("${heatmap.bucket-minutes:60}")
+    private int bucketMinutes;
+
+    @Value("${heatmap.backfill-page-size:5000}")
+    private int backfillPageSize;
+
+    @Value("${heatmap.max-zoom-shift:2}")
+    private int maxZoomShift; // a tile sums at most 4^shift source tiles
+
+    @Value("${heatmap.live-margin:300000}")
+    private long liveMargin; // milliseconds; buckets ending later may still receive live counts
+
+    private final Map<CellKey, Long> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean backfillRunning = new AtomicBoolean(false);
+    private TreeSet<Integer> storedZooms;
+    private ThreadPoolTaskExecutor backfillExecutor;
+
+    @PostConstruct
+    public void init() {
+        storedZooms = new TreeSet<>(zoomLevels);
+
+        backfillExecutor = new ThreadPoolTaskExecutor();
+        backfillExecutor.setCorePoolSize(1);
+        backfillExecutor.setMaxPoolSize(1);
+        backfillExecutor.setThreadNamePrefix("heatmap-backfill-");
+        backfillExecutor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        backfillExecutor.shutdown();
+    }
+
+    /**
+     * Count a stored GPS fix into the in-memory aggregates
+     */
+    public void record(GPSData gpsData) {
+        if (gpsData.getRecordedAt() == null) {
+            return;
+        }
+        bin(pending, gpsData.getLatitude(), gpsData.getLongitude(), gpsData.getRecordedAt());
+    }
+
+    /**
+     * Write accumulated counts to the database
+     */
+    @Scheduled(fixedDelayString = "${heatmap.flush-interval:10000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<CellKey, Long> batch = new HashMap<>();
+        for (CellKey key : new ArrayList<>(pending.keySet())) {
+            Long count = pending.remove(key);
+            if (count != null) {
+                batch.put(key, count);
+            }
+        }
+        upsert(batch);
+        log.debug("Flushed {} heatmap cell(s)", batch.size());
+    }
+
+    /**
+     * Rebuild the aggregates for all buckets overlapping a time range from gps_data
+     * Fixes are binned by their server-side recording time, so buckets that ended more than
+     * live-margin ago receive no more live counts; newer buckets are left out, otherwise
+     * their fixes would be counted by both the backfill and the live flush.
+     * @return false if a backfill is already running
+     */
+    public boolean startBackfill(LocalDateTime start, LocalDateTime end) {
+        if (!end.isAfter(start)) {
+            throw new IllegalArgumentException("End time must be after start time");
+        }
+        LocalDateTime from = bucketStart(start);
+        LocalDateTime liveFrom = bucketStart(LocalDateTime.now().minus(Duration.ofMillis(liveMargin)));
+        LocalDateTime requestedTo = bucketStart(end).plusMinutes(bucketMinutes);
+        LocalDateTime to = requestedTo.isAfter(liveFrom) ? liveFrom : requestedTo;
+        if (!to.isAfter(from)) {
+            throw new IllegalArgumentException("Only buckets before " + liveFrom
+                    + " can be rebuilt, newer ones are aggregated live");
+        }
+        if (!backfillRunning.compareAndSet(false, true)) {
+            return false;
+        }
+
+        backfillExecutor.execute(() -> {
+            try {
+                backfill(from, to);
+            } catch (Exception e) {
+                log.error("Heatmap backfill failed: {}", e.getMessage(), e);
+            } finally {
+                backfillRunning.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isBackfillRunning() {
+        return backfillRunning.get();
+    }
+
+    private void backfill(LocalDateTime from, LocalDateTime to) {
+        log.info("Heatmap backfill started for {} - {}", from, to);
+        transactionTemplate.executeWithoutResult(status -> heatmapCellRepository.deleteByBucketRange(from, to));
+
+        long afterId = 0L;
+        long total = 0L;
+        while (true) {
+            List<GPSData> page = gpsDataRepository.findPageInRange(
+                    afterId, from, to, PageRequest.of(0, backfillPageSize));
+            if (page.isEmpty()) {
+                break;
+            }
+
+            Map<CellKey, Long> counts = new HashMap<>();
+            for (GPSData gpsData : page) {
+                bin(counts, gpsData.getLatitude(), gpsData.getLongitude(), gpsData.getRecordedAt());
+            }
+            upsert(counts);
+
+            afterId = page.get(page.size() - 1).getId();
+            total += page.size();
+        }
+        log.info("Heatmap backfill finished: {} GPS fix(es) aggregated", total);
+    }
+
+    /**
+     * Density grid for tile z/x/y summed over the buckets in [start, end)
+     * Zoom levels that are not stored are derived from the next deeper stored level,
+     * if it is at most max-zoom-shift levels deeper.
+     */
+    public HeatmapTileDTO getTile(int z, int x, int y, LocalDateTime start, LocalDateTime end) {
+        int tiles = 1 << z;
+        if (z < 0 || x < 0 || y < 0 || x >= tiles || y >= tiles) {
+            throw new IllegalArgumentException("Invalid tile coordinates " + z + "/" + x + "/" + y);
+        }
+        Integer sourceZoom = storedZooms.ceiling(z);
+        if (sourceZoom == null) {
+            throw new IllegalArgumentException("Zoom " + z + " is deeper than the highest aggregated zoom "
+                    + storedZooms.last());
+        }
+
+        int shift = sourceZoom - z;
+        if (shift > maxZoomShift) {
+            throw new IllegalArgumentException("Zoom " + z + " is not aggregated; stored zoom levels are "
+                    + storedZooms);
+        }
+        int span = 1 << shift;
+        List<Object[]> rows = heatmapCellRepository.sumCells(
+                sourceZoom,
+                x * span, (x + 1) * span - 1,
+                y * span, (y + 1) * span - 1,
+                bucketStart(start), end);
+
+        long[] counts = new long[resolution * resolution];
+        long maxCount = 0;
+        for (Object[] row : rows) {
+            int tileX = (Integer) row[0];
+            int tileY = (Integer) row[1];
+            int cellIndex = (Integer) row[2];
+            long count = ((Number) row[3]).longValue();
+
+            // Global pixel at the source zoom, scaled down to this tile's grid
+            long pixelX = ((long) tileX * resolution + cellIndex % resolution) >> shift;
+            long pixelY = ((long) tileY * resolution + cellIndex / resolution) >> shift;
+            int index = (int) ((pixelY - (long) y * resolution) * resolution + (pixelX - (long) x * resolution));
+
+            counts[index] += count;
+            maxCount = Math.max(maxCount, counts[index]);
+        }
+
+        return new HeatmapTileDTO(z, x, y, resolution, start, end, maxCount, counts);
+    }
+
+    private void bin(Map<CellKey, Long> counts, double lat, double lon, LocalDateTime recordedAt) {
+        LocalDateTime bucket = bucketStart(recordedAt);
+        double clampedLat = Math.max(-MAX_MERCATOR_LATITUDE, Math.min(MAX_MERCATOR_LATITUDE, lat));
+        double latRad = Math.toRadians(clampedLat);
+        double worldX = (lon + 180.0) / 360.0;
+        double worldY = (1.0 - Math.log(Math.tan(latRad) + 1.0 / Math.cos(latRad)) / Math.PI) / 2.0;
+
+        for (int zoom : storedZooms) {
+            long size = (long) resolution << zoom; // world size in cells
+            long pixelX = Math.min(size - 1, Math.max(0, (long) Math.floor(worldX * size)));
+            long pixelY = Math.min(size - 1, Math.max(0, (long) Math.floor(worldY * size)));
+
+            CellKey key = new CellKey(
+                    zoom,
+                    (int) (pixelX / resolution),
+                    (int) (pixelY / resolution),
+                    (int) ((pixelY % resolution) * resolution + pixelX % resolution),
+                    bucket);
+            counts.merge(key, 1L, Long::sum);
+        }
+    }
+
+    private void upsert(Map<CellKey, Long> counts) {
+        if (counts.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(counts.size());
+        counts.forEach((key, count) -> args.add(new Object[]{
+                key.zoom(), key.tileX(), key.tileY(), key.cellIndex(), Timestamp.valueOf(key.bucketStart()), count
+        }));
+        jdbcTemplate.batchUpdate(UPSERT_SQL, args);
+    }
+
+    private LocalDateTime bucketStart(LocalDateTime time) {
+        LocalDateTime day = time.truncatedTo(ChronoUnit.DAYS);
+        long minutes = ChronoUnit.MINUTES.between(day, time);
+        return day.plusMinutes(minutes - minutes % bucketMinutes);
+    }
+
+    private record CellKey(int zoom, int tileX, int tileY, int cellIndex, LocalDateTime bucketStart) {
+    }
+}
@@ -0,0 +1,280 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.dto.LivePosition;
+import com.tushar.geotrackr.dto.NearbyAssetDTO;
+import com.tushar.geotrackr.entity.Asset;
+import com.tushar.geotrackr.repository.AssetRepository;
+import com.tushar.geotrackr.util.GeoUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Resident uniform-grid index of the current position of every live asset
+ * Updated on every accepted fix so radius, bounding-box and nearest-neighbour
+ * queries never have to touch the database.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LivePositionIndex {
+
+    private final AssetRepository assetRepository;
+
+    @Value("${live-index.cell-size-degrees:0.01}")
+    private double cellSize; // ~1.1 km of latitude per cell
+
+    @Value("${live-index.max-ring-search:64}")
+    private int maxRingSearch;
+
+    private final Map<Long, LivePosition> positions = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> cells = new ConcurrentHashMap<>();
+
+    /**
+     * Load the last known position of all active assets once at startup
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0) // before listeners that read the index, e.g. GPSStatusTracker
+    @Transactional(readOnly = true)
+    public void warmUp() {
+        List<Asset> assets = assetRepository.findByActiveTrue();
+        for (Asset asset : assets) {
+            update(asset);
+        }
+        log.info("Live position index loaded with {} asset(s)", positions.size());
+    }
+
+    /**
+     * Record the current position of an asset
+     * @return the previous position, or null if the asset was not indexed
+     */
+    public LivePosition update(Asset asset) {
+        if (asset.getCurrentLatitude() == null || asset.getCurrentLongitude() == null) {
+            return null;
+        }
+        return update(new LivePosition(
+                asset.getId(),
+                asset.getName(),
+                asset.getType() != null ? asset.getType().name() : null,
+                asset.getOwner() != null ? asset.getOwner().getId() : null,
+                asset.getCurrentLatitude(),
+                asset.getCurrentLongitude(),
+                asset.getLastUpdate()
+        ));
+    }
+
+    public LivePosition update(LivePosition position) {
+        long newCell = cellKey(position.getLatitude(), position.getLongitude());
+        LivePosition[] previous = new LivePosition[1];
+
+        positions.compute(position.getAssetId(), (id, old) -> {
+            previous[0] = old;
+            if (old != null) {
+                long oldCell = cellKey(old.getLatitude(), old.getLongitude());
+                if (oldCell != newCell) {
+                    removeFromCell(oldCell, id);
+                }
+            }
+            cells.compute(newCell, (k, ids) -> {
+                Set<Long> members = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                members.add(id);
+                return members;
+            });
+            return position;
+        });
+
+        return previous[0];
+    }
+
+    public void remove(Long assetId) {
+        positions.computeIfPresent(assetId, (id, old) -> {
+            removeFromCell(cellKey(old.getLatitude(), old.getLongitude()), id);
+            return null;
+        });
+    }
+
+    public LivePosition get(Long assetId) {
+        return positions.get(assetId);
+    }
+
+    public Collection<LivePosition> getAll() {
+        return positions.values();
+    }
+
+    public int size() {
+        return positions.size();
+    }
+
+    /**
+     * Assets within a radius of a point, nearest first
+     */
+    public List<NearbyAssetDTO> findWithinRadius(double lat, double lon, double radiusMeters) {
+        double dLat = radiusMeters / GeoUtils.METERS_PER_DEGREE_LATITUDE;
+        double lonScale = GeoUtils.metersPerDegreeLongitude(Math.min(89.0, Math.abs(lat) + dLat));
+        double dLon = Math.min(180.0, radiusMeters / lonScale);
+
+        List<NearbyAssetDTO> result = new ArrayList<>();
+        forEachInBox(lat - dLat, lon - dLon, lat + dLat, lon + dLon, position -> {
+            double distance = GeoUtils.distanceMeters(lat, lon, position.getLatitude(), position.getLongitude());
+            if (distance <= radiusMeters) {
+                result.add(new NearbyAssetDTO(position, distance));
+            }
+        });
+
+        result.sort(Comparator.comparing(NearbyAssetDTO::getDistanceMeters));
+        return result;
+    }
+
+    /**
+     * Assets inside a latitude/longitude bounding box (e.g. a map viewport)
+     */
+    public List<LivePosition> findInBoundingBox(double minLat, double minLon, double maxLat, double maxLon) {
+        if (minLat > maxLat || minLon > maxLon) {
+            throw new IllegalArgumentException("Bounding box minimums must not exceed maximums");
+        }
+
+        List<LivePosition> result = new ArrayList<>();
+        forEachInBox(minLat, minLon, maxLat, maxLon, position -> {
+            if (position.getLatitude() >= minLat && position.getLatitude() <= maxLat
+                    && position.getLongitude() >= minLon && position.getLongitude() <= maxLon) {
+                result.add(position);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * The k assets nearest to a point, searched ring by ring outward from its cell
+     */
+    public List<NearbyAssetDTO> findNearest(double lat, double lon, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be greater than 0");
+        }
+
+        PriorityQueue<NearbyAssetDTO> best = new PriorityQueue<>(
+                Comparator.comparing(NearbyAssetDTO::getDistanceMeters).reversed());
+        int centerRow = row(lat);
+        int centerCol = col(lon);
+
+        for (int ring = 0; ring <= maxRingSearch; ring++) {
+            // Anything not yet scanned is at least (ring - 1) cells away; use the narrowest
+            // cell side within reach so the bound never overestimates
+            double cellMeters = cellSize * GeoUtils.metersPerDegreeLongitude(
+                    Math.min(89.0, Math.abs(lat) + ring * cellSize));
+            if (best.size() >= k && best.peek().getDistanceMeters() <= (ring - 1) * cellMeters) {
+                return sortedAscending(best);
+            }
+            for (int r = centerRow - ring; r <= centerRow + ring; r++) {
+                // Only the perimeter of the ring: full top/bottom rows, two cells per inner row
+                boolean edgeRow = Math.abs(r - centerRow) == ring;
+                int step = edgeRow || ring == 0 ? 1 : 2 * ring;
+                for (int c = centerCol - ring; c <= centerCol + ring; c += step) {
+                    Set<Long> ids = cells.get(packKey(r, c));
+                    if (ids != null) {
+                        for (Long id : ids) {
+                            offerNearest(best, positions.get(id), lat, lon, k);
+                        }
+                    }
+                }
+            }
+        }
+
+        // Sparse data: the ring search did not settle, finish with a full scan
+        best.clear();
+        for (LivePosition position : positions.values()) {
+            offerNearest(best, position, lat, lon, k);
+        }
+        return sortedAscending(best);
+    }
+
+    private void offerNearest(PriorityQueue<NearbyAssetDTO> best, LivePosition position,
+                              double lat, double lon, int k) {
+        if (position == null) {
+            return;
+        }
+        double distance = GeoUtils.distanceMeters(lat, lon, position.getLatitude(), position.getLongitude());
+        if (best.size() < k) {
+            best.offer(new NearbyAssetDTO(position, distance));
+        } else if (distance < best.peek().getDistanceMeters()) {
+            best.poll();
+            best.offer(new NearbyAssetDTO(position, distance));
+        }
+    }
+
+    private List<NearbyAssetDTO> sortedAscending(PriorityQueue<NearbyAssetDTO> best) {
+        List<NearbyAssetDTO> result = new ArrayList<>(best);
+        result.sort(Comparator.comparing(NearbyAssetDTO::getDistanceMeters));
+        return result;
+    }
+
+    /**
+     * Visit every indexed position whose cell overlaps the box. Falls back to a
+     * plain scan when the box spans more cells than there are assets.
+     */
+    private void forEachInBox(double minLat, double minLon, double maxLat, double maxLon,
+                              Consumer<LivePosition> visitor) {
+        int minRow = row(Math.max(-90.0, minLat));
+        int maxRow = row(Math.min(90.0, maxLat));
+        int minCol = col(Math.max(-180.0, minLon));
+        int maxCol = col(Math.min(180.0, maxLon));
+
+        long cellCount = (long) (maxRow - minRow + 1) * (maxCol - minCol + 1);
+        if (cellCount > positions.size()) {
+            positions.values().forEach(visitor);
+            return;
+        }
+
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minCol; c <= maxCol; c++) {
+                Set<Long> ids = cells.get(packKey(r, c));
+                if (ids == null) {
+                    continue;
+                }
+                for (Long id : ids) {
+                    LivePosition position = positions.get(id);
+                    if (position != null) {
+                        visitor.accept(position);
+                    }
+                }
+            }
+        }
+    }
+
+    private void removeFromCell(long key, Long assetId) {
+        cells.computeIfPresent(key, (k, ids) -> {
+            ids.remove(assetId);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor((lat + 90.0) / cellSize);
+    }
+
+    private int col(double lon) {
+        return (int) Math.floor((lon + 180.0) / cellSize);
+    }
+
+    private long cellKey(double lat, double lon) {
+        return packKey(row(lat), col(lon));
+    }
+
+    private static long packKey(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+}
@@ -0,0 +1,192 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.dto.LivePosition;
+import com.tushar.geotrackr.dto.LocationUpdateMessage;
+import com.tushar.geotrackr.dto.ViewportDTO;
+import com.tushar.geotrackr.security.AssetScope;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Sends the current positions as the first frame of a location subscription
+ * The snapshot is built from the live position index (no database access) and is
+ * tagged with the sequence number of the last location frame sent, so clients can
+ * discard any delta they receive with a sequence number not above it.
+ */
+@Service
+@Slf4j
+public class LocationSnapshotService {
+
+    public static final String SNAPSHOT_HEADER = "snapshot";
+
+    private final LivePositionIndex livePositionIndex;
+    private final ViewportRegistry viewportRegistry;
+    private final AssetOwnerRegistry assetOwnerRegistry;
+    private final WebSocketService webSocketService;
+    private final MessageChannel clientOutboundChannel;
+
+    public LocationSnapshotService(LivePositionIndex livePositionIndex,
+                                   ViewportRegistry viewportRegistry,
+                                   AssetOwnerRegistry assetOwnerRegistry,
+                                   WebSocketService webSocketService,
+                                   @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel) {
+        this.livePositionIndex = livePositionIndex;
+        this.viewportRegistry = viewportRegistry;
+        this.assetOwnerRegistry = assetOwnerRegistry;
+        this.webSocketService = webSocketService;
+        this.clientOutboundChannel = clientOutboundChannel;
+    }
+
+    public static boolean isLocationDestination(String destination) {
+        return WebSocketService.LOCATION_DESTINATION.equals(destination)
+                || WebSocketService.VIEWPORT_LOCATION_DESTINATION.equals(destination)
+                || ("/user" + WebSocketService.OWNER_LOCATION_QUEUE).equals(destination);
+    }
+
+    /**
+     * Send the snapshot matching a location subscription that was just registered
+     */
+    public void sendSnapshot(Message<?> subscribe) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(subscribe);
+        String sessionId = accessor.getSessionId();
+        String destination = accessor.getDestination();
+        Principal user = accessor.getUser();
+        // Read the sequence first: anything sent after this point reaches the new subscription
+        long sequence = webSocketService.getLocationSequence();
+        List<LocationUpdateMessage> positions;
+
+        if (WebSocketService.VIEWPORT_LOCATION_DESTINATION.equals(destination)) {
+            // The subscribe event is published asynchronously; make sure the viewport is known
+            viewportRegistry.subscribe(subscribe);
+            ViewportDTO viewport = viewportRegistry.get(sessionId);
+            if (viewport == null) {
+                return; // the snapshot follows once the client sends its viewport
+            }
+            positions = viewportPositions(sessionId, viewport);
+        } else if (WebSocketService.LOCATION_DESTINATION.equals(destination)) {
+            positions = currentPositions(AssetScope.from(accessor.getSessionAttributes()));
+        } else {
+            if (user == null) {
+                return;
+            }
+            positions = new ArrayList<>();
+            for (LivePosition position : livePositionIndex.getAll()) {
+                if (user.getName().equals(assetOwnerRegistry.getOwner(position.getAssetId()))) {
+                    positions.add(toMessage(position));
+                }
+            }
+        }
+
+        send(sessionId, accessor.getSubscriptionId(), destination, positions, sequence);
+    }
+
+    /**
+     * Send the positions inside a session's new viewport to its viewport subscription
+     */
+    public void sendViewportSnapshot(String sessionId) {
+        String subscriptionId = viewportRegistry.getSubscriptionId(sessionId);
+        ViewportDTO viewport = viewportRegistry.get(sessionId);
+        if (subscriptionId == null || viewport == null) {
+            return;
+        }
+        long sequence = webSocketService.getLocationSequence();
+        send(sessionId, subscriptionId, WebSocketService.VIEWPORT_LOCATION_DESTINATION,
+                viewportPositions(sessionId, viewport), sequence);
+    }
+
+    private List<LocationUpdateMessage> viewportPositions(String sessionId, ViewportDTO viewport) {
+        List<LocationUpdateMessage> positions = new ArrayList<>();
+        for (LivePosition position : livePositionIndex.findInBoundingBox(
+                viewport.getMinLatitude(), viewport.getMinLongitude(),
+                viewport.getMaxLatitude(), viewport.getMaxLongitude())) {
+            if (viewportRegistry.canSee(sessionId, position.getAssetId())) {
+                positions.add(toMessage(position));
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Write a MESSAGE frame straight to the session, bypassing the broker, so only
+     * the subscribing client receives it
+     */
+    private void send(String sessionId, String subscriptionId, String destination,
+                      List<LocationUpdateMessage> positions, long sequence) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        accessor.setMessageId(UUID.randomUUID().toString());
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setNativeHeader(WebSocketService.SEQUENCE_HEADER, String.valueOf(sequence));
+        accessor.setNativeHeader(SNAPSHOT_HEADER, "true");
+
+        byte[] payload = webSocketService.serialize(positions);
+        clientOutboundChannel.send(MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+        log.debug("Sent snapshot of {} position(s) to session {} on {}", positions.size(), sessionId, destination);
+    }
+
+    /**
+     * Current positions of the assets a session's scope covers; none without a scope
+     */
+    public List<LocationUpdateMessage> currentPositions(AssetScope scope) {
+        if (scope == null) {
+            return List.of();
+        }
+        if (scope.isAll()) {
+            return currentPositions();
+        }
+        List<LocationUpdateMessage> positions = new ArrayList<>();
+        for (LivePosition position : livePositionIndex.getAll()) {
+            if (scope.allows(position.getAssetId(), assetOwnerRegistry)) {
+                positions.add(toMessage(position));
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Current position of every live asset
+     */
+    public List<LocationUpdateMessage> currentPositions() {
+        return toMessages(livePositionIndex.getAll());
+    }
+
+    private List<LocationUpdateMessage> toMessages(Collection<LivePosition> positions) {
+        List<LocationUpdateMessage> messages = new ArrayList<>(positions.size());
+        for (LivePosition position : positions) {
+            messages.add(toMessage(position));
+        }
+        return messages;
+    }
+
+    private LocationUpdateMessage toMessage(LivePosition position) {
+        return new LocationUpdateMessage(
+                position.getAssetId(),
+                position.getAssetName(),
+                position.getAssetType(),
+                position.getLatitude(),
+                position.getLongitude(),
+                position.getTimestamp(),
+                null,
+                null,
+                null,
+                null,
+                null
+        );
+    }
+}
@@ -1,6 +1,8 @@
 package com.tushar.geotrackr.service;
 
+import com.tushar.geotrackr.dto.LivePosition;
 import com.tushar.geotrackr.dto.LocationUpdateDTO;
+import com.tushar.geotrackr.dto.LocationUpdateResult;
 import com.tushar.geotrackr.entity.Asset;
 import com.tushar.geotrackr.entity.GeofenceEvent;
 import lombok.RequiredArgsConstructor;
@@ -22,19 +24,28 @@ public class LocationTrackingService {
     private final AssetService assetService;
     private final GeofenceService geofenceService;
     private final WebSocketService webSocketService;
+    private final ProximityService proximityService;
+    private final GPSStatusTracker gpsStatusTracker;
+    private final LivePositionIndex livePositionIndex;
+    private final ReportingIntervalAdvisor reportingIntervalAdvisor;
+    private final GeofenceSafeZones geofenceSafeZones;
 
     /**
      * Process location update from REST API or WebSocket
      * Updates asset location and checks geofences
-     * Broadcasts updates to WebSocket subscribers
+     * Broadcasts the position to WebSocket subscribers; geofence events go through the outbox
+     * @return the triggered events and the suggested delay before the device's next report
      */
     @Transactional
-    public List<GeofenceEvent> processLocationUpdate(LocationUpdateDTO locationUpdate) {
+    public LocationUpdateResult processLocationUpdate(LocationUpdateDTO locationUpdate) {
         log.info("Processing location update for asset {}: ({}, {})",
                 locationUpdate.getAssetId(),
                 locationUpdate.getLatitude(),
                 locationUpdate.getLongitude());
 
+        // Previous fix, read before the update replaces it, for the path check
+        LivePosition previous = livePositionIndex.get(locationUpdate.getAssetId());
+
         // Update asset location in database
         Asset asset = assetService.updateAssetLocation(
                 locationUpdate.getAssetId(),
@@ -42,29 +53,36 @@ public class LocationTrackingService {
                 locationUpdate.getLongitude()
         );
 
+        gpsStatusTracker.recordFix(asset.getId());
+
         // Broadcast location update via WebSocket
         webSocketService.broadcastLocationUpdate(
                 webSocketService.createLocationMessage(asset)
         );
 
+        // Check asset-to-asset proximity rules against nearby assets
+        proximityService.evaluate(asset.getId());
+
         // Check all geofences for this location
         List<GeofenceEvent> events = geofenceService.checkGeofences(
                 asset,
+                previous,
                 locationUpdate.getLatitude(),
                 locationUpdate.getLongitude()
         );
 
-        // Broadcast each geofence event via WebSocket
+        // Geofence events are delivered by GeofenceEventDispatcher after this transaction commits
         if (!events.isEmpty()) {
             log.info("Location update triggered {} geofence event(s)", events.size());
-            for (GeofenceEvent event : events) {
-                webSocketService.broadcastGeofenceEvent(
-                        webSocketService.createEventMessage(event)
-                );
-            }
         }
 
-        return events;
+        // Suggest the next report time from the distance to the closest fence boundary
+        Double boundaryDistance = geofenceSafeZones.boundaryDistance(locationUpdate.getAssetId(),
+                locationUpdate.getLatitude(), locationUpdate.getLongitude());
+        long nextReportInterval = reportingIntervalAdvisor.nextInterval(boundaryDistance, previous,
+                locationUpdate.getLatitude(), locationUpdate.getLongitude(), asset.getLastUpdate());
+
+        return new LocationUpdateResult(events, nextReportInterval, boundaryDistance);
     }
 
     /**
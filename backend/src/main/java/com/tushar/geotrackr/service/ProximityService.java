@@ -0,0 +1,248 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.dto.LivePosition;
+import com.tushar.geotrackr.dto.NearbyAssetDTO;
+import com.tushar.geotrackr.dto.ProximityEventMessage;
+import com.tushar.geotrackr.entity.ProximityRule;
+import com.tushar.geotrackr.entity.User;
+import com.tushar.geotrackr.repository.ProximityRuleRepository;
+import com.tushar.geotrackr.util.GeoUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Service for asset-to-asset proximity alerts
+ * Rules are evaluated incrementally per fix: only assets found in the grid cells
+ * around the moving asset are checked, instead of every pair of assets.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProximityService {
+
+    private final ProximityRuleRepository proximityRuleRepository;
+    private final LivePositionIndex livePositionIndex;
+    private final WebSocketService webSocketService;
+
+    @Value("${proximity.max-distance:5000}")
+    private double maxRuleDistance; // meters
+
+    @Value("${proximity.separation-factor:1.1}")
+    private double separationFactor; // pairs separate only beyond distance * factor
+
+    private volatile List<ProximityRule> activeRules = List.of();
+    private volatile double searchRadius;
+
+    // Pairs currently within range, keyed "ruleId:lowAssetId:highAssetId"
+    private final Set<String> activePairs = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Set<String>> pairsByAsset = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadRules() {
+        List<ProximityRule> rules = proximityRuleRepository.findByActiveTrue();
+        activeRules = List.copyOf(rules);
+        searchRadius = rules.stream()
+                .mapToDouble(rule -> rule.getDistance() * separationFactor)
+                .max()
+                .orElse(0.0);
+        log.info("Loaded {} active proximity rule(s)", rules.size());
+    }
+
+    /**
+     * Evaluate all proximity rules for an asset that just moved
+     */
+    public List<ProximityEventMessage> evaluate(Long assetId) {
+        List<ProximityRule> rules = activeRules;
+        LivePosition current = livePositionIndex.get(assetId);
+        if (rules.isEmpty() || current == null) {
+            return List.of();
+        }
+
+        List<ProximityEventMessage> events = new ArrayList<>();
+        Set<String> stillClose = new HashSet<>();
+
+        for (NearbyAssetDTO nearby : livePositionIndex.findWithinRadius(
+                current.getLatitude(), current.getLongitude(), searchRadius)) {
+            LivePosition other = nearby.getPosition();
+            if (other.getAssetId().equals(assetId)) {
+                continue;
+            }
+
+            for (ProximityRule rule : rules) {
+                if (!matches(rule, current, other)) {
+                    continue;
+                }
+                String key = pairKey(rule.getId(), assetId, other.getAssetId());
+                double distance = nearby.getDistanceMeters();
+
+                if (distance <= rule.getDistance()) {
+                    stillClose.add(key);
+                    if (activePairs.add(key)) {
+                        index(key, assetId, other.getAssetId());
+                        events.add(createMessage(rule, current, other, "APPROACH", distance));
+                    }
+                } else if (distance <= rule.getDistance() * separationFactor && activePairs.contains(key)) {
+                    stillClose.add(key); // inside the separation buffer, keep the pair open
+                }
+            }
+        }
+
+        // Pairs involving this asset that were not seen close again have separated
+        Set<String> pairs = pairsByAsset.get(assetId);
+        if (pairs != null) {
+            for (String key : new ArrayList<>(pairs)) {
+                if (stillClose.contains(key)) {
+                    continue;
+                }
+                String[] parts = key.split(":");
+                Long ruleId = Long.valueOf(parts[0]);
+                Long otherId = Long.valueOf(parts[1]).equals(assetId)
+                        ? Long.valueOf(parts[2]) : Long.valueOf(parts[1]);
+                unindex(key, assetId, otherId);
+                if (!activePairs.remove(key)) {
+                    continue; // rule was removed while the pair was open
+                }
+
+                LivePosition other = livePositionIndex.get(otherId);
+                ProximityRule rule = findRule(rules, ruleId);
+                if (other != null && rule != null) {
+                    double distance = GeoUtils.distanceMeters(current.getLatitude(), current.getLongitude(),
+                            other.getLatitude(), other.getLongitude());
+                    events.add(createMessage(rule, current, other, "SEPARATE", distance));
+                }
+            }
+        }
+
+        for (ProximityEventMessage event : events) {
+            webSocketService.broadcastProximityEvent(event);
+        }
+        return events;
+    }
+
+    private boolean matches(ProximityRule rule, LivePosition a, LivePosition b) {
+        return (typeMatches(rule.getAssetTypeA(), a) && typeMatches(rule.getAssetTypeB(), b))
+                || (typeMatches(rule.getAssetTypeA(), b) && typeMatches(rule.getAssetTypeB(), a));
+    }
+
+    private boolean typeMatches(Enum<?> type, LivePosition position) {
+        return type == null || type.name().equals(position.getAssetType());
+    }
+
+    private ProximityRule findRule(List<ProximityRule> rules, Long ruleId) {
+        for (ProximityRule rule : rules) {
+            if (rule.getId().equals(ruleId)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    private void index(String key, Long assetId, Long otherId) {
+        pairsByAsset.computeIfAbsent(assetId, id -> ConcurrentHashMap.newKeySet()).add(key);
+        pairsByAsset.computeIfAbsent(otherId, id -> ConcurrentHashMap.newKeySet()).add(key);
+    }
+
+    private void unindex(String key, Long assetId, Long otherId) {
+        for (Long id : List.of(assetId, otherId)) {
+            pairsByAsset.computeIfPresent(id, (k, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    private String pairKey(Long ruleId, Long assetId, Long otherId) {
+        return ruleId + ":" + Math.min(assetId, otherId) + ":" + Math.max(assetId, otherId);
+    }
+
+    private ProximityEventMessage createMessage(ProximityRule rule, LivePosition asset, LivePosition other,
+                                                String eventType, double distance) {
+        String message = String.format("%s is %s %s (%.0f m)",
+                asset.getAssetName(),
+                "APPROACH".equals(eventType) ? "near" : "no longer near",
+                other.getAssetName(),
+                distance);
+
+        return new ProximityEventMessage(
+                rule.getId(),
+                rule.getName(),
+                asset.getAssetId(),
+                asset.getAssetName(),
+                other.getAssetId(),
+                other.getAssetName(),
+                eventType,
+                distance,
+                asset.getLatitude(),
+                asset.getLongitude(),
+                LocalDateTime.now(),
+                message,
+                null
+        );
+    }
+
+    // CRUD Operations
+
+    @Transactional
+    public ProximityRule createRule(ProximityRule rule, User createdBy) {
+        validateRule(rule);
+        rule.setCreatedBy(createdBy);
+        rule.setActive(true);
+        ProximityRule saved = proximityRuleRepository.save(rule);
+        loadRules();
+        return saved;
+    }
+
+    public List<ProximityRule> getAllRules() {
+        return proximityRuleRepository.findAll();
+    }
+
+    public ProximityRule getRuleById(Long id) {
+        return proximityRuleRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Proximity rule not found with id: " + id));
+    }
+
+    @Transactional
+    public ProximityRule updateRule(Long id, ProximityRule updatedRule) {
+        ProximityRule existing = getRuleById(id);
+        existing.setName(updatedRule.getName());
+        existing.setAssetTypeA(updatedRule.getAssetTypeA());
+        existing.setAssetTypeB(updatedRule.getAssetTypeB());
+        existing.setDistance(updatedRule.getDistance());
+
+        validateRule(existing);
+        ProximityRule saved = proximityRuleRepository.save(existing);
+        loadRules();
+        return saved;
+    }
+
+    @Transactional
+    public void deleteRule(Long id) {
+        ProximityRule rule = getRuleById(id);
+        rule.setActive(false);
+        proximityRuleRepository.save(rule);
+        loadRules();
+        activePairs.removeIf(key -> key.startsWith(id + ":"));
+    }
+
+    private void validateRule(ProximityRule rule) {
+        if (rule.getDistance() == null || rule.getDistance() <= 0) {
+            throw new IllegalArgumentException("Distance must be greater than 0");
+        }
+        if (rule.getDistance() > maxRuleDistance) {
+            throw new IllegalArgumentException("Distance must not exceed " + maxRuleDistance + " meters");
+        }
+    }
+}
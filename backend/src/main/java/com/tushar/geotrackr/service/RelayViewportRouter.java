@@ -0,0 +1,135 @@
+package com.tushar.geotrackr.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.ReactorNettyTcpStompClient;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Broker relay mode: subscribes this node to /topic/location/all on the external
+ * broker and routes every batch to the viewport sessions connected to this node,
+ * so viewport filtering works no matter which node ingested the fix
+ */
+@Component
+@ConditionalOnProperty(name = "websocket.broker.mode", havingValue = "relay")
+@RequiredArgsConstructor
+@Slf4j
+public class RelayViewportRouter extends StompSessionHandlerAdapter {
+
+    private final WebSocketService webSocketService;
+
+    @Value("${websocket.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${websocket.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${websocket.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${websocket.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${websocket.relay.reconnect-delay:5000}")
+    private long reconnectDelay; // milliseconds
+
+    private ReactorNettyTcpStompClient stompClient;
+    private ThreadPoolTaskScheduler taskScheduler;
+    private volatile StompSession session;
+    private volatile boolean running;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.setPoolSize(1);
+        taskScheduler.setThreadNamePrefix("relay-viewport-");
+        taskScheduler.initialize();
+
+        stompClient = new ReactorNettyTcpStompClient(relayHost, relayPort);
+        stompClient.setTaskScheduler(taskScheduler);
+        running = true;
+        connect();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (session != null && session.isConnected()) {
+            session.disconnect();
+        }
+        if (stompClient != null) {
+            stompClient.shutdown();
+        }
+        if (taskScheduler != null) {
+            taskScheduler.shutdown();
+        }
+    }
+
+    public boolean isConnected() {
+        return session != null && session.isConnected();
+    }
+
+    private void connect() {
+        StompHeaders headers = new StompHeaders();
+        headers.setLogin(relayLogin);
+        headers.setPasscode(relayPasscode);
+        stompClient.connectAsync(headers, this).whenComplete((connected, ex) -> {
+            if (ex != null) {
+                log.warn("Could not connect to STOMP broker {}:{}: {}", relayHost, relayPort, ex.getMessage());
+                scheduleReconnect();
+            }
+        });
+    }
+
+    private void scheduleReconnect() {
+        if (running) {
+            taskScheduler.schedule(this::connect, Instant.now().plus(Duration.ofMillis(reconnectDelay)));
+        }
+    }
+
+    @Override
+    public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+        this.session = session;
+        session.subscribe(WebSocketService.LOCATION_DESTINATION, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                webSocketService.routeToViewports((byte[]) payload);
+            }
+        });
+        log.info("Routing viewport updates from STOMP broker {}:{}", relayHost, relayPort);
+    }
+
+    @Override
+    public void handleException(StompSession session, StompCommand command, StompHeaders headers,
+                                byte[] payload, Throwable exception) {
+        log.error("Error handling STOMP frame from broker: {}", exception.getMessage(), exception);
+    }
+
+    @Override
+    public void handleTransportError(StompSession session, Throwable exception) {
+        log.warn("Lost connection to STOMP broker {}:{}: {}", relayHost, relayPort, exception.getMessage());
+        if (!session.isConnected()) {
+            scheduleReconnect();
+        }
+    }
+}
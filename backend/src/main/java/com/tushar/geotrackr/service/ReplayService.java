@@ -0,0 +1,376 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.dto.ReplayRequestDTO;
+import com.tushar.geotrackr.dto.ReplaySessionDTO;
+import com.tushar.geotrackr.entity.GPSData;
+import com.tushar.geotrackr.repository.AssetRepository;
+import com.tushar.geotrackr.repository.GPSDataRepository;
+import com.tushar.geotrackr.security.AuthenticatedUser;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Service for replaying historical GPS data over WebSocket at accelerated speed
+ * Each asset's history is read through a small keyset cursor and the per-asset
+ * streams are merged in time order with a priority queue, so a replay never
+ * holds more than one page per asset in memory.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReplayService {
+
+    private final GPSDataRepository gpsDataRepository;
+    private final AssetRepository assetRepository;
+    private final AssetOwnerRegistry assetOwnerRegistry;
+    private final WebSocketService webSocketService;
+
+    @Value("${replay.tick-interval:100}")
+    private long tickInterval; // milliseconds of wall-clock time per tick
+
+    @Value("${replay.page-size:200}")
+    private int pageSize;
+
+    @Value("${replay.max-frames-per-tick:2000}")
+    private int maxFramesPerTick;
+
+    @Value("${replay.max-sessions:20}")
+    private int maxSessions;
+
+    @Value("${replay.max-speed:1000}")
+    private double maxSpeed;
+
+    private final Map<String, ReplaySession> sessions = new ConcurrentHashMap<>();
+    private ThreadPoolTaskScheduler taskScheduler;
+
+    @PostConstruct
+    public void init() {
+        taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.setPoolSize(2);
+        taskScheduler.setThreadNamePrefix("replay-");
+        taskScheduler.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        taskScheduler.shutdown();
+    }
+
+    /**
+     * Start a new replay session, frames are pushed to /topic/replay/{sessionId}
+     * Users other than admins can only replay their own assets.
+     */
+    public ReplaySessionDTO startReplay(ReplayRequestDTO request, AuthenticatedUser user) {
+        if (!request.getEndTime().isAfter(request.getStartTime())) {
+            throw new IllegalArgumentException("End time must be after start time");
+        }
+        if (sessions.size() >= maxSessions) {
+            throw new IllegalArgumentException("Too many active replay sessions, stop one first");
+        }
+
+        List<Long> assetIds = replayAssets(request, user);
+
+        ReplaySession session = new ReplaySession(
+                UUID.randomUUID().toString(),
+                user.getUsername(),
+                assetIds,
+                request.getStartTime(),
+                request.getEndTime(),
+                validateSpeed(request.getSpeed() != null ? request.getSpeed() : 10.0)
+        );
+
+        // Ticks and stop() wait for the monitor, so they always see the future
+        synchronized (session) {
+            session.positionAt(request.getStartTime());
+            sessions.put(session.id, session);
+            session.future = taskScheduler.scheduleAtFixedRate(
+                    () -> tick(session), Duration.ofMillis(tickInterval));
+        }
+
+        log.info("Started replay {} for {} asset(s) from {} to {} at {}x",
+                session.id, assetIds.size(), session.startTime, session.endTime, session.speed);
+        return toDTO(session);
+    }
+
+    public ReplaySessionDTO getSession(String sessionId, AuthenticatedUser user) {
+        return toDTO(getReplaySession(sessionId, user));
+    }
+
+    /**
+     * Username that started the replay, null if there is no such session
+     */
+    public String getOwner(String sessionId) {
+        ReplaySession session = sessions.get(sessionId);
+        return session != null ? session.owner : null;
+    }
+
+    public ReplaySessionDTO pause(String sessionId, AuthenticatedUser user) {
+        ReplaySession session = getReplaySession(sessionId, user);
+        synchronized (session) {
+            session.paused = true;
+        }
+        return toDTO(session);
+    }
+
+    public ReplaySessionDTO resume(String sessionId, AuthenticatedUser user) {
+        ReplaySession session = getReplaySession(sessionId, user);
+        synchronized (session) {
+            session.paused = false;
+        }
+        return toDTO(session);
+    }
+
+    /**
+     * Move the replay clock to a new position, re-opening every asset cursor there
+     */
+    public ReplaySessionDTO seek(String sessionId, LocalDateTime timestamp, AuthenticatedUser user) {
+        ReplaySession session = getReplaySession(sessionId, user);
+        if (timestamp.isBefore(session.startTime) || timestamp.isAfter(session.endTime)) {
+            throw new IllegalArgumentException("Seek position must be within the replay time range");
+        }
+        synchronized (session) {
+            session.positionAt(timestamp);
+        }
+        return toDTO(session);
+    }
+
+    public ReplaySessionDTO changeSpeed(String sessionId, double speed, AuthenticatedUser user) {
+        ReplaySession session = getReplaySession(sessionId, user);
+        synchronized (session) {
+            session.speed = validateSpeed(speed);
+        }
+        return toDTO(session);
+    }
+
+    public void stop(String sessionId, AuthenticatedUser user) {
+        getReplaySession(sessionId, user);
+        stop(sessionId);
+    }
+
+    /**
+     * Remove a session and cancel its ticks, so it no longer counts towards max-sessions
+     */
+    private void stop(String sessionId) {
+        ReplaySession session = sessions.remove(sessionId);
+        if (session != null) {
+            synchronized (session) {
+                session.future.cancel(false);
+                log.info("Stopped replay {} after {} frame(s)", sessionId, session.framesSent);
+            }
+        }
+    }
+
+    /**
+     * Advance the replay clock by one tick and emit every fix that is now due
+     */
+    private void tick(ReplaySession session) {
+        try {
+            synchronized (session) {
+                if (session.paused || session.finished) {
+                    return;
+                }
+
+                long advance = Math.round(tickInterval * session.speed);
+                session.currentTime = session.currentTime.plus(Duration.ofMillis(advance));
+                if (session.currentTime.isAfter(session.endTime)) {
+                    session.currentTime = session.endTime;
+                }
+
+                int sent = 0;
+                while (!session.queue.isEmpty() && sent < maxFramesPerTick) {
+                    AssetCursor cursor = session.queue.peek();
+                    if (cursor.head().getRecordedAt().isAfter(session.currentTime)) {
+                        break;
+                    }
+                    session.queue.poll();
+                    GPSData point = cursor.next();
+                    webSocketService.sendReplayFrame(session.id, webSocketService.createLocationMessage(point));
+                    session.framesSent++;
+                    sent++;
+                    if (cursor.hasNext()) {
+                        session.queue.offer(cursor);
+                    }
+                }
+
+                if (session.queue.isEmpty() && !session.currentTime.isBefore(session.endTime)) {
+                    session.finished = true;
+                    log.info("Replay {} finished", session.id);
+                    stop(session.id);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error during replay {}: {}", session.id, e.getMessage(), e);
+            stop(session.id); // a failed session is dropped, not left counting towards max-sessions
+        }
+    }
+
+    private ReplaySession getReplaySession(String sessionId, AuthenticatedUser user) {
+        ReplaySession session = sessions.get(sessionId);
+        if (session == null) {
+            throw new RuntimeException("Replay session not found: " + sessionId);
+        }
+        if (!user.isAdmin() && !session.owner.equals(user.getUsername())) {
+            throw new AccessDeniedException("Not allowed to use replay session " + sessionId);
+        }
+        return session;
+    }
+
+    /**
+     * Requested assets, or every asset with history in the range; limited to the
+     * user's own assets unless the user is an admin
+     */
+    private List<Long> replayAssets(ReplayRequestDTO request, AuthenticatedUser user) {
+        boolean all = user.isAdmin() || AuthenticatedUser.SCOPE_ALL.equals(user.getScope());
+        if (request.getAssetIds() != null && !request.getAssetIds().isEmpty()) {
+            for (Long assetId : request.getAssetIds()) {
+                if (!all && !user.getUsername().equals(assetOwnerRegistry.getOwner(assetId))) {
+                    throw new AccessDeniedException("Not allowed to replay asset " + assetId);
+                }
+            }
+            return request.getAssetIds();
+        }
+        List<Long> recorded = gpsDataRepository.findAssetIdsRecordedBetween(request.getStartTime(), request.getEndTime());
+        if (all) {
+            return recorded;
+        }
+        Set<Long> owned = new HashSet<>(assetRepository.findIdsByOwnerId(user.getId()));
+        return recorded.stream().filter(owned::contains).toList();
+    }
+
+    private double validateSpeed(double speed) {
+        if (speed <= 0 || speed > maxSpeed) {
+            throw new IllegalArgumentException("Speed must be between 0 and " + maxSpeed);
+        }
+        return speed;
+    }
+
+    private ReplaySessionDTO toDTO(ReplaySession session) {
+        synchronized (session) {
+            String status = session.finished ? "FINISHED" : session.paused ? "PAUSED" : "RUNNING";
+            return new ReplaySessionDTO(
+                    session.id,
+                    webSocketService.getReplayDestination(session.id),
+                    status,
+                    session.speed,
+                    session.startTime,
+                    session.endTime,
+                    session.currentTime,
+                    session.framesSent
+            );
+        }
+    }
+
+    /**
+     * State of one replay, guarded by its own monitor
+     */
+    private class ReplaySession {
+        private final String id;
+        private final String owner; // username that started the replay
+        private final List<Long> assetIds;
+        private final LocalDateTime startTime;
+        private final LocalDateTime endTime;
+        private final PriorityQueue<AssetCursor> queue = new PriorityQueue<>(
+                Comparator.comparing((AssetCursor c) -> c.head().getRecordedAt())
+                        .thenComparing(c -> c.head().getId()));
+        private double speed;
+        private LocalDateTime currentTime;
+        private boolean paused;
+        private boolean finished;
+        private long framesSent;
+        private ScheduledFuture<?> future;
+
+        ReplaySession(String id, String owner, List<Long> assetIds, LocalDateTime startTime,
+                      LocalDateTime endTime, double speed) {
+            this.id = id;
+            this.owner = owner;
+            this.assetIds = assetIds;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.speed = speed;
+        }
+
+        /**
+         * Re-open all asset cursors at the given position (inclusive)
+         */
+        void positionAt(LocalDateTime timestamp) {
+            queue.clear();
+            for (Long assetId : assetIds) {
+                AssetCursor cursor = new AssetCursor(assetId, timestamp, endTime);
+                if (cursor.hasNext()) {
+                    queue.offer(cursor);
+                }
+            }
+            currentTime = timestamp;
+            finished = false;
+        }
+    }
+
+    /**
+     * Keyset cursor over one asset's history, fetching one page at a time
+     */
+    private class AssetCursor {
+        private final Long assetId;
+        private final LocalDateTime endTime;
+        private final Deque<GPSData> buffer = new ArrayDeque<>();
+        private LocalDateTime afterTime;
+        private long afterId;
+        private boolean exhausted;
+
+        AssetCursor(Long assetId, LocalDateTime from, LocalDateTime endTime) {
+            this.assetId = assetId;
+            this.endTime = endTime;
+            this.afterTime = from;
+            this.afterId = 0L; // ids are positive, so the first page includes 'from'
+        }
+
+        boolean hasNext() {
+            if (buffer.isEmpty() && !exhausted) {
+                fetchPage();
+            }
+            return !buffer.isEmpty();
+        }
+
+        GPSData head() {
+            return buffer.peekFirst();
+        }
+
+        GPSData next() {
+            return buffer.pollFirst();
+        }
+
+        private void fetchPage() {
+            List<GPSData> page = gpsDataRepository.findPageAfter(
+                    assetId, afterTime, afterId, endTime, PageRequest.of(0, pageSize));
+            if (page.size() < pageSize) {
+                exhausted = true;
+            }
+            if (!page.isEmpty()) {
+                GPSData last = page.get(page.size() - 1);
+                afterTime = last.getRecordedAt();
+                afterId = last.getId();
+                buffer.addAll(page);
+            }
+        }
+    }
+}
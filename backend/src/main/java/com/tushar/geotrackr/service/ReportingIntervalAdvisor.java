@@ -0,0 +1,57 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.dto.LivePosition;
+import com.tushar.geotrackr.util.GeoUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Suggests when a device should send its next position
+ * The time the asset needs to reach the closest geofence boundary at its current
+ * speed, scaled by a safety factor and clamped: devices far from every fence can
+ * report rarely, devices close to one report often enough not to miss a crossing.
+ */
+@Service
+public class ReportingIntervalAdvisor {
+
+    @Value("${reporting.min-interval:5000}")
+    private long minInterval; // milliseconds
+
+    @Value("${reporting.max-interval:300000}")
+    private long maxInterval; // milliseconds
+
+    @Value("${reporting.min-speed:1.5}")
+    private double minSpeed; // meters per second assumed for slow or stopped assets
+
+    @Value("${reporting.safety-factor:0.5}")
+    private double safetyFactor; // fraction of the time to the boundary
+
+    /**
+     * Next report interval in milliseconds for an asset at the given point, with its
+     * speed estimated from the previous fix
+     */
+    public long nextInterval(Double boundaryDistance, LivePosition previous, double lat, double lon,
+                             LocalDateTime at) {
+        if (boundaryDistance == null) {
+            return maxInterval;
+        }
+        double speed = Math.max(minSpeed, speed(previous, lat, lon, at));
+        long interval = (long) (safetyFactor * boundaryDistance / speed * 1000);
+        return Math.max(minInterval, Math.min(maxInterval, interval));
+    }
+
+    private double speed(LivePosition previous, double lat, double lon, LocalDateTime at) {
+        if (previous == null || previous.getLatitude() == null || previous.getLongitude() == null
+                || previous.getTimestamp() == null || at == null) {
+            return 0;
+        }
+        long millis = Duration.between(previous.getTimestamp(), at).toMillis();
+        if (millis <= 0) {
+            return 0;
+        }
+        return GeoUtils.distanceMeters(previous.getLatitude(), previous.getLongitude(), lat, lon) * 1000 / millis;
+    }
+}
@@ -0,0 +1,159 @@
+package com.tushar.geotrackr.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Bounded in-memory history of the messages broadcast per destination
+ * Each destination has its own sequence counter and a fixed-size ring of the last
+ * serialized messages, so a reconnecting client can be sent exactly what it missed.
+ * Several messages may share a sequence number (one conflated location frame).
+ * Each message remembers the assets it is about, so a client is only resumed with
+ * messages its asset scope covers.
+ */
+@Component
+public class ResumeBuffer {
+
+    @Value("${websocket.resume.buffer-capacity:2048}")
+    private int capacity; // messages per destination
+
+    private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+
+    /**
+     * Next sequence number of a destination
+     */
+    public long nextSequence(String destination) {
+        return ring(destination).next();
+    }
+
+    /**
+     * Last sequence number assigned on a destination, 0 if none
+     */
+    public long currentSequence(String destination) {
+        Ring ring = rings.get(destination);
+        return ring != null ? ring.current() : 0L;
+    }
+
+    public void append(String destination, long sequence, byte[] payload, Long... assetIds) {
+        ring(destination).append(sequence, payload, assetIds);
+    }
+
+    /**
+     * Messages with a sequence number greater than lastSequence, oldest first
+     * @return null if some of them are no longer retained (or the counter was reset)
+     */
+    public List<byte[]> since(String destination, long lastSequence) {
+        return between(destination, lastSequence, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Like {@link #since(String, long)}, limited to messages whose assets are all visible
+     */
+    public List<byte[]> since(String destination, long lastSequence, Predicate<Long> visible) {
+        return between(destination, lastSequence, Long.MAX_VALUE, visible);
+    }
+
+    /**
+     * Messages with a sequence number in (after, upTo], oldest first; null if not all retained
+     */
+    public List<byte[]> between(String destination, long after, long upTo) {
+        return between(destination, after, upTo, null);
+    }
+
+    /**
+     * Messages with a sequence number in (after, upTo] whose assets are all visible (every
+     * message when visible is null), oldest first; null if not all retained. A proximity
+     * pair is only visible with both of its assets.
+     */
+    public List<byte[]> between(String destination, long after, long upTo, Predicate<Long> visible) {
+        Ring ring = rings.get(destination);
+        if (ring == null) {
+            return after == 0 ? List.of() : null;
+        }
+        return ring.between(after, upTo, visible);
+    }
+
+    private Ring ring(String destination) {
+        return rings.computeIfAbsent(destination, d -> new Ring(capacity));
+    }
+
+    private static class Ring {
+
+        private final long[] sequences;
+        private final byte[][] payloads;
+        private final Long[][] assetIds;
+        private int next; // slot written next
+        private int size;
+        private long lastSequence;
+        private long evictedUpTo; // highest sequence number dropped from the ring
+
+        Ring(int capacity) {
+            sequences = new long[capacity];
+            payloads = new byte[capacity][];
+            assetIds = new Long[capacity][];
+        }
+
+        synchronized long next() {
+            return ++lastSequence;
+        }
+
+        synchronized long current() {
+            return lastSequence;
+        }
+
+        synchronized void append(long sequence, byte[] payload, Long[] assets) {
+            if (size == payloads.length) {
+                evictedUpTo = Math.max(evictedUpTo, sequences[next]);
+            } else {
+                size++;
+            }
+            sequences[next] = sequence;
+            payloads[next] = payload;
+            assetIds[next] = assets;
+            next = (next + 1) % payloads.length;
+        }
+
+        synchronized List<byte[]> between(long after, long upTo, Predicate<Long> visible) {
+            if (after < evictedUpTo || after > lastSequence) {
+                return null;
+            }
+            List<long[]> order = new ArrayList<>();
+            int first = (next - size + payloads.length) % payloads.length;
+            for (int i = 0; i < size; i++) {
+                int slot = (first + i) % payloads.length;
+                if (sequences[slot] > after && sequences[slot] <= upTo && isVisible(slot, visible)) {
+                    order.add(new long[]{sequences[slot], slot});
+                }
+            }
+            // Concurrent publishers may append slightly out of sequence order
+            order.sort((a, b) -> Long.compare(a[0], b[0]));
+            List<byte[]> result = new ArrayList<>(order.size());
+            for (long[] entry : order) {
+                result.add(payloads[(int) entry[1]]);
+            }
+            return result;
+        }
+
+        private boolean isVisible(int slot, Predicate<Long> visible) {
+            if (visible == null) {
+                return true;
+            }
+            boolean any = false;
+            for (Long assetId : assetIds[slot]) {
+                if (assetId != null) {
+                    if (!visible.test(assetId)) {
+                        return false;
+                    }
+                    any = true;
+                }
+            }
+            return any;
+        }
+    }
+}
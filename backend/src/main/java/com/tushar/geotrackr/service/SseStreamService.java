@@ -0,0 +1,354 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.repository.AssetRepository;
+import com.tushar.geotrackr.security.AssetScope;
+import com.tushar.geotrackr.security.AuthenticatedUser;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Server-Sent Events feeds for read-only dashboards
+ * Feeds read the same per-destination resume buffer the WebSocket fan-out writes to:
+ * once per tick the new messages of each feed are joined into one JSON array, encoded
+ * once per asset scope (all assets, or one owner's) and queued to the subscribers with
+ * that scope. Idle connections hold no thread (async servlet requests); writes run on a
+ * small writer pool, and a subscriber whose queue overflows or whose write stalls is
+ * closed so it reconnects with Last-Event-ID.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SseStreamService {
+
+    public enum Feed {
+        LOCATIONS("locations", WebSocketService.LOCATION_DESTINATION),
+        EVENTS("geofence-events", WebSocketService.EVENTS_DESTINATION);
+
+        private final String eventName;
+        private final String destination;
+
+        Feed(String eventName, String destination) {
+            this.eventName = eventName;
+            this.destination = destination;
+        }
+    }
+
+    private final ResumeBuffer resumeBuffer;
+    private final WebSocketService webSocketService;
+    private final LocationSnapshotService locationSnapshotService;
+    private final MeterRegistry meterRegistry;
+    private final AssetRepository assetRepository;
+    private final AssetOwnerRegistry assetOwnerRegistry;
+
+    @Value("${sse.max-connections:10000}")
+    private int maxConnections;
+
+    @Value("${sse.subscriber-queue-capacity:50}")
+    private int queueCapacity; // batches per subscriber
+
+    @Value("${sse.writer-threads:4}")
+    private int writerThreads;
+
+    @Value("${sse.write-timeout:10000}")
+    private long writeTimeout; // milliseconds
+
+    @Value("${sse.timeout:0}")
+    private long timeout; // milliseconds, 0 = never time out
+
+    private final Map<Feed, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final Map<Feed, Long> lastSent = new ConcurrentHashMap<>();
+    private final Map<Feed, Object> feedLocks = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private ThreadPoolTaskExecutor writer;
+    private Counter overflowed;
+    private Counter stalled;
+
+    @PostConstruct
+    public void init() {
+        for (Feed feed : Feed.values()) {
+            subscribers.put(feed, ConcurrentHashMap.newKeySet());
+            lastSent.put(feed, resumeBuffer.currentSequence(feed.destination));
+            feedLocks.put(feed, new Object());
+        }
+
+        writer = new ThreadPoolTaskExecutor();
+        writer.setCorePoolSize(writerThreads);
+        writer.setMaxPoolSize(writerThreads);
+        writer.setThreadNamePrefix("sse-writer-");
+        writer.initialize();
+
+        Gauge.builder("sse.connections", connections, AtomicInteger::get)
+                .description("Open Server-Sent Events connections")
+                .register(meterRegistry);
+        overflowed = Counter.builder("sse.overflowed")
+                .description("SSE connections closed because their queue was full")
+                .register(meterRegistry);
+        stalled = Counter.builder("sse.stalled")
+                .description("SSE connections closed because a write took longer than the write timeout")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.values().forEach(set -> set.forEach(s -> s.emitter.complete()));
+        writer.shutdown();
+    }
+
+    /**
+     * Open a feed of the user's assets; with a Last-Event-ID the messages missed since
+     * that id are sent first
+     */
+    public SseEmitter subscribe(Feed feed, Long lastEventId, AuthenticatedUser user) {
+        AssetScope scope = user.isAdmin() || AuthenticatedUser.SCOPE_ALL.equals(user.getScope())
+                ? AssetScope.all()
+                : AssetScope.owner(user.getUsername(), assetRepository.findIdsByOwnerId(user.getId()));
+
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            throw new IllegalStateException("Too many stream connections, try again later");
+        }
+
+        SseEmitter emitter = new SseEmitter(timeout);
+        Subscriber subscriber = new Subscriber(feed, emitter, scope, scope.isAll() ? "" : user.getUsername());
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+
+        // Under the feed lock no tick runs: the catch-up ends where the next tick starts,
+        // and is queued before it
+        synchronized (feedLocks.get(feed)) {
+            subscribers.get(feed).add(subscriber);
+            long sequence = lastSent.get(feed);
+
+            List<byte[]> missed = lastEventId != null
+                    ? resumeBuffer.between(feed.destination, lastEventId, sequence, subscriber.visible()) : null;
+            if (missed != null) {
+                if (!missed.isEmpty()) {
+                    subscriber.offer(frame(feed, sequence, webSocketService.joinArray(missed)));
+                }
+            } else if (feed == Feed.LOCATIONS) {
+                subscriber.offer(frame(feed, sequence,
+                        webSocketService.serialize(locationSnapshotService.currentPositions(scope))));
+            } else {
+                subscriber.offer(new Frame(SseEmitter.event().id(String.valueOf(sequence)).comment("connected")));
+            }
+        }
+        return emitter;
+    }
+
+    /**
+     * Send the messages broadcast since the last tick, one batch per feed and asset scope
+     */
+    @Scheduled(fixedRateString = "${sse.tick-interval:500}")
+    public void flush() {
+        closeStalled();
+        for (Feed feed : Feed.values()) {
+            synchronized (feedLocks.get(feed)) {
+                flush(feed);
+            }
+        }
+    }
+
+    private void flush(Feed feed) {
+        long from = lastSent.get(feed);
+        long to = resumeBuffer.currentSequence(feed.destination);
+        if (to == from) {
+            return;
+        }
+        lastSent.put(feed, to);
+
+        // Subscribers with the same scope key share one encoded batch; null = nothing for them
+        Map<String, Frame> batches = new HashMap<>();
+        boolean behind = false;
+        for (Subscriber subscriber : subscribers.get(feed)) {
+            if (!batches.containsKey(subscriber.key)) {
+                List<byte[]> batch = resumeBuffer.between(feed.destination, from, to, subscriber.visible());
+                behind |= batch == null;
+                batches.put(subscriber.key, batch != null
+                        ? batch.isEmpty() ? null : frame(feed, to, webSocketService.joinArray(batch))
+                        // More than a buffer's worth in one tick; positions can be resent as a snapshot
+                        : feed == Feed.LOCATIONS
+                        ? frame(feed, to, webSocketService.serialize(
+                                locationSnapshotService.currentPositions(subscriber.scope)))
+                        : null);
+            }
+            Frame event = batches.get(subscriber.key);
+            if (event != null) {
+                subscriber.offer(event);
+            }
+        }
+        if (behind && feed != Feed.LOCATIONS) {
+            log.warn("SSE feed {} fell behind the resume buffer; messages up to {} skipped", feed, to);
+        }
+    }
+
+    /**
+     * Close subscribers blocked in one write for longer than the write timeout
+     * Interrupting the writer aborts the blocked socket write, which frees the pool thread
+     * and completes the emitter with the resulting error.
+     */
+    private void closeStalled() {
+        long now = System.currentTimeMillis();
+        subscribers.values().forEach(set -> set.forEach(subscriber -> {
+            if (subscriber.interruptIfStalled(now)) {
+                stalled.increment();
+                log.debug("Closing stalled SSE subscriber on {}: write blocked over {} ms",
+                        subscriber.feed, writeTimeout);
+            }
+        }));
+    }
+
+    /**
+     * Comment line on idle connections so proxies do not close them
+     */
+    @Scheduled(fixedRateString = "${sse.heartbeat-interval:30000}")
+    public void heartbeat() {
+        Frame ping = new Frame(SseEmitter.event().comment("ping"));
+        subscribers.values().forEach(set -> set.forEach(s -> s.offer(ping)));
+    }
+
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    private Frame frame(Feed feed, long sequence, byte[] json) {
+        // Encoded once per tick and shared; written as text so it is not serialized again
+        return new Frame(SseEmitter.event()
+                .id(String.valueOf(sequence))
+                .name(feed.eventName)
+                .data(new String(json, StandardCharsets.UTF_8), MediaType.TEXT_PLAIN)
+                .build());
+    }
+
+    /**
+     * A built SSE event; event builders are not reusable, their built parts are
+     */
+    private record Frame(Set<ResponseBodyEmitter.DataWithMediaType> parts) {
+        Frame(SseEmitter.SseEventBuilder builder) {
+            this(builder.build());
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (subscriber.closed.compareAndSet(false, true)) {
+            subscribers.get(subscriber.feed).remove(subscriber);
+            subscriber.queue.clear();
+            connections.decrementAndGet();
+        }
+    }
+
+    /**
+     * One connection with its pending batches, written in order by the writer pool
+     */
+    private class Subscriber {
+
+        private final Feed feed;
+        private final SseEmitter emitter;
+        private final AssetScope scope;
+        private final String key; // subscribers with the same key see the same assets
+        private final Queue<Frame> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger depth = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+        private final AtomicBoolean completed = new AtomicBoolean(false);
+        private Thread writingThread; // guarded by this
+        private long writeStartedAt; // guarded by this
+
+        Subscriber(Feed feed, SseEmitter emitter, AssetScope scope, String key) {
+            this.feed = feed;
+            this.emitter = emitter;
+            this.scope = scope;
+            this.key = key;
+        }
+
+        Predicate<Long> visible() {
+            return scope.isAll() ? null : assetId -> scope.allows(assetId, assetOwnerRegistry);
+        }
+
+        synchronized boolean interruptIfStalled(long now) {
+            if (writingThread == null || now - writeStartedAt <= writeTimeout) {
+                return false;
+            }
+            unsubscribe(this);
+            writingThread.interrupt();
+            return true;
+        }
+
+        private synchronized void writing(Thread thread) {
+            writingThread = thread;
+            writeStartedAt = System.currentTimeMillis();
+        }
+
+        void offer(Frame event) {
+            if (closed.get()) {
+                return;
+            }
+            if (depth.incrementAndGet() > queueCapacity) {
+                overflowed.increment();
+                log.debug("Closing slow SSE subscriber on {}: {} batches pending", feed, queueCapacity);
+                unsubscribe(this);
+                scheduleDrain(); // completes the emitter on the writer, never blocking the tick
+                return;
+            }
+            queue.add(event);
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                writer.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Frame event;
+                while (!closed.get() && (event = queue.poll()) != null) {
+                    depth.decrementAndGet();
+                    writing(Thread.currentThread());
+                    emitter.send(event.parts());
+                    writing(null);
+                }
+                if (closed.get() && completed.compareAndSet(false, true)) {
+                    emitter.complete(); // closed on overflow or stall
+                }
+            } catch (IOException | IllegalStateException e) {
+                unsubscribe(this);
+                completed.set(true);
+                emitter.completeWithError(e);
+            } finally {
+                writing(null);
+                Thread.interrupted(); // an interrupt from closeStalled() must not reach the next task
+                draining.set(false);
+                if (closed.get() ? !completed.get() : !queue.isEmpty()) {
+                    scheduleDrain();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.dto.GeofenceEventMessage;
+import com.tushar.geotrackr.dto.ResumeRequest;
+import com.tushar.geotrackr.entity.GeofenceEvent;
+import com.tushar.geotrackr.repository.GeofenceEventRepository;
+import com.tushar.geotrackr.security.AssetScope;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Catches a reconnecting WebSocket client up on the broadcasts it missed
+ * Missed messages come from the in-memory resume buffer; once the buffer has been
+ * overwritten geofence events are re-read from the database and positions are
+ * replaced by a snapshot of the current ones. Every source is limited to the assets
+ * in the session's scope.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StreamResumeService {
+
+    public static final String SOURCE_BUFFER = "buffer";
+    public static final String SOURCE_DATABASE = "database";
+    public static final String SOURCE_SNAPSHOT = "snapshot";
+    public static final String SOURCE_UNAVAILABLE = "unavailable";
+
+    private static final Set<String> RESUMABLE_DESTINATIONS = Set.of(
+            WebSocketService.LOCATION_DESTINATION,
+            WebSocketService.EVENTS_DESTINATION,
+            WebSocketService.PROXIMITY_DESTINATION);
+
+    private final ResumeBuffer resumeBuffer;
+    private final WebSocketService webSocketService;
+    private final LocationSnapshotService locationSnapshotService;
+    private final GeofenceEventRepository geofenceEventRepository;
+    private final AssetOwnerRegistry assetOwnerRegistry;
+
+    @Value("${websocket.resume.max-database-events:1000}")
+    private int maxDatabaseEvents;
+
+    @Transactional(readOnly = true)
+    public void resume(String sessionId, AssetScope scope, ResumeRequest request) {
+        if (scope == null) {
+            throw new AccessDeniedException("Session has no asset scope");
+        }
+        String destination = request.getDestination();
+        if (destination == null || !RESUMABLE_DESTINATIONS.contains(destination)) {
+            throw new IllegalArgumentException("Destination cannot be resumed: " + destination);
+        }
+        if (request.getLastSequence() == null || request.getLastSequence() < 0) {
+            throw new IllegalArgumentException("Last sequence must be 0 or greater");
+        }
+
+        // Read first: the client continues from here, anything newer arrives live
+        long sequence = resumeBuffer.currentSequence(destination);
+        Predicate<Long> visible = scope.isAll() ? null : assetId -> scope.allows(assetId, assetOwnerRegistry);
+        List<byte[]> missed = resumeBuffer.since(destination, request.getLastSequence(), visible);
+        if (missed != null) {
+            webSocketService.sendResume(sessionId, destination, webSocketService.joinArray(missed),
+                    sequence, SOURCE_BUFFER);
+            log.debug("Resumed {} for session {}: {} message(s) from the buffer",
+                    destination, sessionId, missed.size());
+            return;
+        }
+
+        if (WebSocketService.LOCATION_DESTINATION.equals(destination)) {
+            webSocketService.sendResume(sessionId, destination,
+                    webSocketService.serialize(locationSnapshotService.currentPositions(scope)),
+                    sequence, SOURCE_SNAPSHOT);
+        } else if (WebSocketService.EVENTS_DESTINATION.equals(destination) && request.getLastEventId() != null) {
+            List<GeofenceEvent> events = findEventsAfter(request.getLastEventId(), scope);
+            List<GeofenceEventMessage> messages = new ArrayList<>(events.size());
+            for (GeofenceEvent event : events) {
+                messages.add(webSocketService.createEventMessage(event));
+            }
+            webSocketService.sendResume(sessionId, destination, webSocketService.serialize(messages),
+                    sequence, SOURCE_DATABASE);
+        } else {
+            webSocketService.sendResume(sessionId, destination, webSocketService.joinArray(List.of()),
+                    sequence, SOURCE_UNAVAILABLE);
+        }
+        log.debug("Resume buffer for {} no longer covers sequence {} of session {}",
+                destination, request.getLastSequence(), sessionId);
+    }
+
+    private List<GeofenceEvent> findEventsAfter(Long lastEventId, AssetScope scope) {
+        Pageable page = PageRequest.of(0, maxDatabaseEvents);
+        if (scope.isAll()) {
+            return geofenceEventRepository.findAfterId(lastEventId, page);
+        }
+        if (scope.getOwner() != null) {
+            return geofenceEventRepository.findAfterIdForOwner(lastEventId, scope.getOwner(), page);
+        }
+        return scope.getAssetIds().isEmpty() ? List.of()
+                : geofenceEventRepository.findAfterIdForAssets(lastEventId, scope.getAssetIds(), page);
+    }
+}
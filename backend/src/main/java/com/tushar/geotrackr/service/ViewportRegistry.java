@@ -0,0 +1,258 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.dto.ViewportDTO;
+import com.tushar.geotrackr.security.AssetScope;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the map viewport of every WebSocket session subscribed to viewport updates
+ * Viewports are indexed in a coarse grid so a fix only has to be checked against the
+ * sessions whose viewport overlaps its cell. Viewports covering more than max-cells
+ * cells (zoomed far out) are kept in a separate list and checked on every fix.
+ * A session only receives the assets of its AssetScope; sessions without one receive nothing.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ViewportRegistry {
+
+    private final AssetOwnerRegistry assetOwnerRegistry;
+
+    public static final String VIEWPORT_HEADER = "viewport";
+
+    @Value("${websocket.viewport.cell-size-degrees:0.5}")
+    private double cellSize;
+
+    @Value("${websocket.viewport.max-cells:400}")
+    private int maxCells;
+
+    private final Map<String, ViewportDTO> viewports = new ConcurrentHashMap<>();
+    private final Map<Long, Set<String>> cells = new ConcurrentHashMap<>();
+    private final Set<String> wideViewports = ConcurrentHashMap.newKeySet();
+
+    // Subscription id of the viewport subscription per session, to detect UNSUBSCRIBE
+    private final Map<String, String> subscriptions = new ConcurrentHashMap<>();
+    private final Map<String, AssetScope> scopes = new ConcurrentHashMap<>();
+
+    /**
+     * Set or replace the viewport of a session
+     */
+    public void update(String sessionId, ViewportDTO viewport, AssetScope scope) {
+        validate(viewport);
+        if (scope != null) {
+            scopes.put(sessionId, scope);
+        }
+        viewports.compute(sessionId, (id, old) -> {
+            if (old != null) {
+                unindex(id, old);
+            }
+            index(id, viewport);
+            return viewport;
+        });
+        log.debug("Viewport of session {} set to {}", sessionId, viewport);
+    }
+
+    public void remove(String sessionId) {
+        subscriptions.remove(sessionId);
+        scopes.remove(sessionId);
+        viewports.computeIfPresent(sessionId, (id, old) -> {
+            unindex(id, old);
+            return null;
+        });
+    }
+
+    public ViewportDTO get(String sessionId) {
+        return viewports.get(sessionId);
+    }
+
+    /**
+     * Id of the session's subscription to the viewport queue, or null if not subscribed
+     */
+    public String getSubscriptionId(String sessionId) {
+        return subscriptions.get(sessionId);
+    }
+
+    public int size() {
+        return viewports.size();
+    }
+
+    /**
+     * Sessions whose viewport contains the point and whose scope covers the asset
+     */
+    public List<String> findSessionsContaining(double lat, double lon, Long assetId) {
+        List<String> result = new ArrayList<>();
+        if (viewports.isEmpty()) {
+            return result;
+        }
+
+        Set<String> candidates = cells.get(cellKey(lat, lon));
+        if (candidates != null) {
+            for (String sessionId : candidates) {
+                if (contains(viewports.get(sessionId), lat, lon) && canSee(sessionId, assetId)) {
+                    result.add(sessionId);
+                }
+            }
+        }
+        for (String sessionId : wideViewports) {
+            if (contains(viewports.get(sessionId), lat, lon) && canSee(sessionId, assetId)) {
+                result.add(sessionId);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Whether the session's scope covers the asset; sessions without a scope see nothing
+     */
+    public boolean canSee(String sessionId, Long assetId) {
+        AssetScope scope = scopes.get(sessionId);
+        return scope != null && scope.allows(assetId, assetOwnerRegistry);
+    }
+
+    /**
+     * Pick up the viewport header of a SUBSCRIBE to the viewport queue
+     */
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        subscribe(event.getMessage());
+    }
+
+    /**
+     * Register a SUBSCRIBE frame to the viewport queue; idempotent, so it can be
+     * applied before the subscribe event is published
+     */
+    public void subscribe(Message<?> message) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        if (!WebSocketService.VIEWPORT_LOCATION_DESTINATION.equals(accessor.getDestination())) {
+            return;
+        }
+
+        String sessionId = accessor.getSessionId();
+        subscriptions.put(sessionId, accessor.getSubscriptionId());
+
+        String header = accessor.getFirstNativeHeader(VIEWPORT_HEADER);
+        if (header != null) {
+            try {
+                update(sessionId, parse(header), AssetScope.from(accessor.getSessionAttributes()));
+            } catch (IllegalArgumentException e) {
+                log.warn("Ignoring invalid viewport header from session {}: {}", sessionId, e.getMessage());
+            }
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String subscriptionId = subscriptions.get(accessor.getSessionId());
+        if (subscriptionId != null && subscriptionId.equals(accessor.getSubscriptionId())) {
+            remove(accessor.getSessionId());
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        remove(event.getSessionId());
+    }
+
+    /**
+     * Parse "minLat,minLon,maxLat,maxLon"
+     */
+    public static ViewportDTO parse(String value) {
+        String[] parts = value.split(",");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Viewport must be minLat,minLon,maxLat,maxLon");
+        }
+        try {
+            return new ViewportDTO(
+                    Double.parseDouble(parts[0].trim()),
+                    Double.parseDouble(parts[1].trim()),
+                    Double.parseDouble(parts[2].trim()),
+                    Double.parseDouble(parts[3].trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Viewport coordinates must be numbers");
+        }
+    }
+
+    private void validate(ViewportDTO viewport) {
+        if (viewport.getMinLatitude() == null || viewport.getMinLongitude() == null
+                || viewport.getMaxLatitude() == null || viewport.getMaxLongitude() == null) {
+            throw new IllegalArgumentException("Viewport bounds are required");
+        }
+        if (viewport.getMinLatitude() > viewport.getMaxLatitude()
+                || viewport.getMinLongitude() > viewport.getMaxLongitude()) {
+            throw new IllegalArgumentException("Viewport minimums must not exceed maximums");
+        }
+    }
+
+    private boolean contains(ViewportDTO viewport, double lat, double lon) {
+        return viewport != null
+                && lat >= viewport.getMinLatitude() && lat <= viewport.getMaxLatitude()
+                && lon >= viewport.getMinLongitude() && lon <= viewport.getMaxLongitude();
+    }
+
+    private void index(String sessionId, ViewportDTO viewport) {
+        int minRow = row(viewport.getMinLatitude());
+        int maxRow = row(viewport.getMaxLatitude());
+        int minCol = col(viewport.getMinLongitude());
+        int maxCol = col(viewport.getMaxLongitude());
+
+        if ((long) (maxRow - minRow + 1) * (maxCol - minCol + 1) > maxCells) {
+            wideViewports.add(sessionId);
+            return;
+        }
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minCol; c <= maxCol; c++) {
+                cells.compute(packKey(r, c), (k, ids) -> {
+                    Set<String> members = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                    members.add(sessionId);
+                    return members;
+                });
+            }
+        }
+    }
+
+    private void unindex(String sessionId, ViewportDTO viewport) {
+        if (wideViewports.remove(sessionId)) {
+            return;
+        }
+        for (int r = row(viewport.getMinLatitude()); r <= row(viewport.getMaxLatitude()); r++) {
+            for (int c = col(viewport.getMinLongitude()); c <= col(viewport.getMaxLongitude()); c++) {
+                cells.computeIfPresent(packKey(r, c), (k, ids) -> {
+                    ids.remove(sessionId);
+                    return ids.isEmpty() ? null : ids;
+                });
+            }
+        }
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor((Math.max(-90.0, Math.min(90.0, lat)) + 90.0) / cellSize);
+    }
+
+    private int col(double lon) {
+        return (int) Math.floor((Math.max(-180.0, Math.min(180.0, lon)) + 180.0) / cellSize);
+    }
+
+    private long cellKey(double lat, double lon) {
+        return packKey(row(lat), col(lon));
+    }
+
+    private static long packKey(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+}
@@ -1,12 +1,34 @@
 package com.tushar.geotrackr.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tushar.geotrackr.dto.*;
 import com.tushar.geotrackr.entity.Asset;
+import com.tushar.geotrackr.entity.GPSData;
 import com.tushar.geotrackr.entity.GeofenceEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service for broadcasting real-time updates via WebSocket
@@ -16,59 +38,350 @@ import org.springframework.stereotype.Service;
 @Slf4j
 public class WebSocketService {
 
+    public static final String VIEWPORT_QUEUE = "/queue/location/viewport";
+    public static final String VIEWPORT_LOCATION_DESTINATION = "/user" + VIEWPORT_QUEUE;
+    public static final String OWNER_LOCATION_QUEUE = "/queue/location";
+    public static final String OWNER_EVENTS_QUEUE = "/queue/events";
+    public static final String OWNER_GPS_STATUS_QUEUE = "/queue/gps/status";
+    public static final String GPS_STATUS_DESTINATION = "/topic/gps/status";
+    public static final String LOCATION_DESTINATION = "/topic/location/all";
+    public static final String EVENTS_DESTINATION = "/topic/events/all";
+    public static final String PROXIMITY_DESTINATION = "/topic/events/proximity";
+    public static final String RESUME_QUEUE = "/queue/resume";
+    public static final String LOCATION_ACK_QUEUE = "/queue/location/ack";
+    public static final String LOCATION_ACK_DESTINATION = "/user" + LOCATION_ACK_QUEUE;
+    private static final String LOCATION_ACK_SUBSCRIPTION = "locationAckSubscription"; // session attribute
+    public static final String SEQUENCE_HEADER = "seq";
+
     private final SimpMessagingTemplate messagingTemplate;
+    private final ViewportRegistry viewportRegistry;
+    private final AssetOwnerRegistry assetOwnerRegistry;
+    private final ObjectMapper objectMapper;
+    private final ResumeBuffer resumeBuffer;
+
+    @Value("${websocket.conflation.enabled:true}")
+    private boolean conflationEnabled;
+
+    @Value("${websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    // Latest not-yet-sent position per asset, replaced by newer fixes until the next tick
+    private final Map<Long, LocationUpdateMessage> pendingLocations = new ConcurrentHashMap<>();
 
     /**
      * Broadcast location update to all subscribers
      * Topic: /topic/location/all
+     * Also delivered to the asset owner (/user/queue/location) and to every entitled
+     * session whose viewport contains the position. With conflation enabled only the
+     * latest position per asset is kept and sent as part of one JSON array per
+     * destination on the next tick.
      */
     public void broadcastLocationUpdate(LocationUpdateMessage message) {
         log.debug("Broadcasting location update for asset: {}", message.getAssetId());
-        messagingTemplate.convertAndSend("/topic/location/all", message);
+        if (conflationEnabled && message.getAssetId() != null) {
+            pendingLocations.put(message.getAssetId(), message);
+            return;
+        }
+
+        long sequence = resumeBuffer.nextSequence(LOCATION_DESTINATION);
+        message.setSequence(sequence);
+        byte[] payload = serialize(message);
+        resumeBuffer.append(LOCATION_DESTINATION, sequence, payload, message.getAssetId());
+        sendRaw(LOCATION_DESTINATION, payload, sequence);
+
+        String owner = assetOwnerRegistry.getOwner(message.getAssetId());
+        if (owner != null) {
+            sendRawToUser(owner, OWNER_LOCATION_QUEUE, payload, sequence);
+        }
+        if (routeViewportsLocally()) {
+            for (String sessionId : findViewportSessions(message)) {
+                sendToSession(sessionId, VIEWPORT_QUEUE, payload, sequence);
+            }
+        }
+    }
+
+    /**
+     * Sequence number of the last location frame; snapshots carry this value
+     */
+    public long getLocationSequence() {
+        return resumeBuffer.currentSequence(LOCATION_DESTINATION);
+    }
+
+    /**
+     * Send the conflated positions of the last tick as one batched frame per destination
+     * Each position is serialized once and the bytes are reused for every batch it is part of.
+     */
+    @Scheduled(fixedRateString = "${websocket.conflation.tick-interval:200}")
+    public void flushLocationUpdates() {
+        if (pendingLocations.isEmpty()) {
+            return;
+        }
+
+        // All positions of one tick share the frame's sequence number
+        long sequence = resumeBuffer.nextSequence(LOCATION_DESTINATION);
+        List<byte[]> all = new ArrayList<>();
+        Map<String, List<byte[]>> byOwner = new HashMap<>();
+        Map<String, List<byte[]>> bySession = new HashMap<>();
+        for (Long assetId : new ArrayList<>(pendingLocations.keySet())) {
+            LocationUpdateMessage message = pendingLocations.remove(assetId);
+            if (message == null) {
+                continue;
+            }
+            message.setSequence(sequence);
+            byte[] payload = serialize(message);
+            resumeBuffer.append(LOCATION_DESTINATION, sequence, payload, assetId);
+            all.add(payload);
+
+            String owner = assetOwnerRegistry.getOwner(assetId);
+            if (owner != null) {
+                byOwner.computeIfAbsent(owner, o -> new ArrayList<>()).add(payload);
+            }
+            if (routeViewportsLocally()) {
+                for (String sessionId : findViewportSessions(message)) {
+                    bySession.computeIfAbsent(sessionId, id -> new ArrayList<>()).add(payload);
+                }
+            }
+        }
+
+        sendRaw(LOCATION_DESTINATION, joinArray(all), sequence);
+        byOwner.forEach((owner, payloads) ->
+                sendRawToUser(owner, OWNER_LOCATION_QUEUE, joinArray(payloads), sequence));
+        bySession.forEach((sessionId, payloads) ->
+                sendToSession(sessionId, VIEWPORT_QUEUE, joinArray(payloads), sequence));
+        log.debug("Flushed {} location update(s) to {} owner(s) and {} viewport session(s)",
+                all.size(), byOwner.size(), bySession.size());
+    }
+
+    /**
+     * Route a /topic/location/all frame received from the broker relay to the viewport
+     * sessions connected to this node (the frame may have been published by any node)
+     */
+    public void routeToViewports(byte[] frame) {
+        List<LocationUpdateMessage> messages;
+        try {
+            JsonNode root = objectMapper.readTree(frame);
+            messages = new ArrayList<>();
+            for (JsonNode node : root.isArray() ? root : List.of(root)) {
+                messages.add(objectMapper.treeToValue(node, LocationUpdateMessage.class));
+            }
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable location frame from broker: {}", e.getMessage());
+            return;
+        }
+
+        Map<String, List<byte[]>> bySession = new HashMap<>();
+        for (LocationUpdateMessage message : messages) {
+            List<String> sessionIds = findViewportSessions(message);
+            if (sessionIds.isEmpty()) {
+                continue;
+            }
+            byte[] payload = serialize(message);
+            for (String sessionId : sessionIds) {
+                bySession.computeIfAbsent(sessionId, id -> new ArrayList<>()).add(payload);
+            }
+        }
+        long sequence = resumeBuffer.nextSequence(LOCATION_DESTINATION);
+        bySession.forEach((sessionId, payloads) ->
+                sendToSession(sessionId, VIEWPORT_QUEUE, joinArray(payloads), sequence));
+    }
+
+    /**
+     * With the broker relay, viewport sessions may live on other nodes; every node routes
+     * to its own sessions from the broker's /topic/location/all instead (RelayViewportRouter)
+     */
+    private boolean routeViewportsLocally() {
+        return !"relay".equalsIgnoreCase(brokerMode);
+    }
+
+    private List<String> findViewportSessions(LocationUpdateMessage message) {
+        if (message.getLatitude() == null || message.getLongitude() == null) {
+            return List.of();
+        }
+        return viewportRegistry.findSessionsContaining(message.getLatitude(), message.getLongitude(),
+                message.getAssetId());
+    }
+
+    /**
+     * Send a pre-serialized JSON payload to a broker destination
+     */
+    public void sendRaw(String destination, byte[] payload) {
+        sendRaw(destination, payload, null);
+    }
+
+    public void sendRaw(String destination, byte[] payload, Long sequence) {
+        messagingTemplate.send(destination, MessageBuilder.createMessage(payload, headers(null, sequence)));
+    }
+
+    /**
+     * Send a pre-serialized JSON payload to every session of a user
+     * Queue: /user/{username}/{destination}
+     */
+    public void sendRawToUser(String username, String destination, byte[] payload) {
+        sendRawToUser(username, destination, payload, null);
+    }
+
+    public void sendRawToUser(String username, String destination, byte[] payload, Long sequence) {
+        sendRaw("/user/" + username + destination, payload, sequence);
     }
 
     /**
-     * Send location update to specific asset subscribers
-     * Topic: /topic/location/{assetId}
+     * Send a pre-serialized JSON payload to a single WebSocket session
      */
-    public void sendLocationUpdateToAsset(Long assetId, LocationUpdateMessage message) {
-        log.debug("Sending location update to asset {} subscribers", assetId);
-        messagingTemplate.convertAndSend("/topic/location/" + assetId, message);
+    public void sendToSession(String sessionId, String destination, byte[] payload) {
+        sendToSession(sessionId, destination, payload, null);
+    }
+
+    public void sendToSession(String sessionId, String destination, byte[] payload, Long sequence) {
+        messagingTemplate.send("/user/" + sessionId + destination,
+                MessageBuilder.createMessage(payload, headers(sessionId, sequence)));
+    }
+
+    /**
+     * Acknowledge a location update to the sending session
+     * Queue: /user/queue/location/ack; only sent while the session is subscribed to it,
+     * so nothing queues up for sessions that do not want acks
+     */
+    public void sendLocationAck(SimpMessageHeaderAccessor sender, LocationAckDTO ack) {
+        Map<String, Object> attributes = sender.getSessionAttributes();
+        if (attributes != null && attributes.containsKey(LOCATION_ACK_SUBSCRIPTION)) {
+            sendToSession(sender.getSessionId(), LOCATION_ACK_QUEUE, serialize(ack));
+        }
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        if (LOCATION_ACK_DESTINATION.equals(accessor.getDestination()) && accessor.getSessionAttributes() != null) {
+            accessor.getSessionAttributes().put(LOCATION_ACK_SUBSCRIPTION, accessor.getSubscriptionId());
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        if (accessor.getSessionAttributes() != null && accessor.getSubscriptionId() != null) {
+            accessor.getSessionAttributes().remove(LOCATION_ACK_SUBSCRIPTION, accessor.getSubscriptionId());
+        }
+    }
+
+    /**
+     * Send the messages a session missed on a destination, as one JSON array
+     * Queue: /user/queue/resume, with the resumed destination and where the messages
+     * came from (buffer, database, snapshot or unavailable) in the headers
+     */
+    public void sendResume(String sessionId, String destination, byte[] payload, long sequence, String source) {
+        MessageHeaders headers = headers(sessionId, sequence);
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.getAccessor(headers, SimpMessageHeaderAccessor.class);
+        accessor.setNativeHeader("resume-destination", destination);
+        accessor.setNativeHeader("resume-source", source);
+        messagingTemplate.send("/user/" + sessionId + RESUME_QUEUE, MessageBuilder.createMessage(payload, headers));
+    }
+
+    private MessageHeaders headers(String sessionId, Long sequence) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        if (sequence != null) {
+            accessor.setNativeHeader(SEQUENCE_HEADER, String.valueOf(sequence));
+        }
+        accessor.setLeaveMutable(true);
+        return accessor.getMessageHeaders();
+    }
+
+    /**
+     * Concatenate pre-serialized JSON values into a JSON array
+     */
+    public byte[] joinArray(List<byte[]> payloads) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                payloads.stream().mapToInt(p -> p.length + 1).sum() + 2);
+        out.write('[');
+        for (int i = 0; i < payloads.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.writeBytes(payloads.get(i));
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+
+    public byte[] serialize(Object payload) {
+        try {
+            return objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to serialize WebSocket payload: " + e.getMessage());
+        }
     }
 
     /**
      * Broadcast geofence event to all subscribers
-     * Topic: /topic/events/all
+     * Topic: /topic/events/all, and /user/{owner}/queue/events for the asset owner
      */
     public void broadcastGeofenceEvent(GeofenceEventMessage message) {
         log.info("Broadcasting geofence event: {} {} {}",
                 message.getAssetName(), message.getEventType(), message.getGeofenceName());
-        messagingTemplate.convertAndSend("/topic/events/all", message);
+        long sequence = resumeBuffer.nextSequence(EVENTS_DESTINATION);
+        message.setSequence(sequence);
+        byte[] payload = serialize(message);
+        resumeBuffer.append(EVENTS_DESTINATION, sequence, payload, message.getAssetId());
+        sendRaw(EVENTS_DESTINATION, payload, sequence);
+        String owner = assetOwnerRegistry.getOwner(message.getAssetId());
+        if (owner != null) {
+            sendRawToUser(owner, OWNER_EVENTS_QUEUE, payload);
+        }
     }
 
     /**
-     * Send geofence event to specific asset subscribers
-     * Topic: /topic/events/asset/{assetId}
+     * Broadcast asset-to-asset proximity alert
+     * Topic: /topic/events/proximity, and /user/{owner}/queue/events when one user owns
+     * both assets; a pair across owners names the other owner's asset, so it only goes
+     * to the fleet-wide topic
      */
-    public void sendGeofenceEventToAsset(Long assetId, GeofenceEventMessage message) {
-        messagingTemplate.convertAndSend("/topic/events/asset/" + assetId, message);
+    public void broadcastProximityEvent(ProximityEventMessage message) {
+        log.info("Broadcasting proximity event: {} {} {}",
+                message.getAssetName(), message.getEventType(), message.getOtherAssetName());
+        long sequence = resumeBuffer.nextSequence(PROXIMITY_DESTINATION);
+        message.setSequence(sequence);
+        byte[] payload = serialize(message);
+        resumeBuffer.append(PROXIMITY_DESTINATION, sequence, payload,
+                message.getAssetId(), message.getOtherAssetId());
+        sendRaw(PROXIMITY_DESTINATION, payload, sequence);
+        String owner = assetOwnerRegistry.getOwner(message.getAssetId());
+        if (owner != null && owner.equals(assetOwnerRegistry.getOwner(message.getOtherAssetId()))) {
+            sendRawToUser(owner, OWNER_EVENTS_QUEUE, payload);
+        }
     }
 
     /**
-     * Send geofence event to specific geofence subscribers
-     * Topic: /topic/events/geofence/{geofenceId}
+     * Broadcast geofence occupancy change
+     * Topic: /topic/occupancy
      */
-    public void sendGeofenceEventToGeofence(Long geofenceId, GeofenceEventMessage message) {
-        messagingTemplate.convertAndSend("/topic/events/geofence/" + geofenceId, message);
+    public void broadcastOccupancyUpdate(OccupancyUpdateMessage message) {
+        log.debug("Broadcasting occupancy of geofence {}: {}", message.getGeofenceId(), message.getOccupancy());
+        messagingTemplate.convertAndSend("/topic/occupancy", message);
     }
 
     /**
      * Broadcast GPS status update
-     * Topic: /topic/gps/status
+     * Topic: /topic/gps/status, and /user/{owner}/queue/gps/status for the asset owner
      */
     public void broadcastGPSStatus(GPSStatusMessage message) {
         log.debug("Broadcasting GPS status for asset: {}", message.getAssetId());
-        messagingTemplate.convertAndSend("/topic/gps/status", message);
+        byte[] payload = serialize(message);
+        sendRaw(GPS_STATUS_DESTINATION, payload);
+        String owner = assetOwnerRegistry.getOwner(message.getAssetId());
+        if (owner != null) {
+            sendRawToUser(owner, OWNER_GPS_STATUS_QUEUE, payload);
+        }
+    }
+
+    /**
+     * Broadcast the periodic GPS status digest
+     * Topic: /topic/gps/status/digest
+     */
+    public void broadcastGPSStatusDigest(GPSStatusDigestMessage message) {
+        log.debug("Broadcasting GPS status digest: {}", message.getCounts());
+        messagingTemplate.convertAndSend("/topic/gps/status/digest", message);
     }
 
     /**
@@ -89,6 +402,18 @@ public class WebSocketService {
         messagingTemplate.convertAndSend("/topic/notifications", notification);
     }
 
+    /**
+     * Send a replayed location frame to a replay session
+     * Topic: /topic/replay/{sessionId}
+     */
+    public void sendReplayFrame(String sessionId, LocationUpdateMessage message) {
+        messagingTemplate.convertAndSend(getReplayDestination(sessionId), message);
+    }
+
+    public String getReplayDestination(String sessionId) {
+        return "/topic/replay/" + sessionId;
+    }
+
     /**
      * Helper method to create LocationUpdateMessage from Asset
      */
@@ -103,7 +428,28 @@ public class WebSocketService {
                 null, // speed - can be calculated
                 null, // heading
                 null, // satellites
-                null  // accuracy
+                null, // accuracy
+                null  // sequence, assigned when broadcast
+        );
+    }
+
+    /**
+     * Helper method to create LocationUpdateMessage from a recorded GPS fix
+     */
+    public LocationUpdateMessage createLocationMessage(GPSData gpsData) {
+        Asset asset = gpsData.getAsset();
+        return new LocationUpdateMessage(
+                asset.getId(),
+                asset.getName(),
+                asset.getType() != null ? asset.getType().name() : null,
+                gpsData.getLatitude(),
+                gpsData.getLongitude(),
+                gpsData.getRecordedAt(),
+                gpsData.getSpeed(),
+                gpsData.getHeading(),
+                gpsData.getSatellites(),
+                gpsData.getAccuracy(),
+                null
         );
     }
 
@@ -111,10 +457,15 @@ public class WebSocketService {
      * Helper method to create GeofenceEventMessage from GeofenceEvent
      */
     public GeofenceEventMessage createEventMessage(GeofenceEvent event) {
-        String message = String.format("%s has %s %s",
-                event.getAsset().getName(),
-                event.getEventType() == GeofenceEvent.EventType.ENTER ? "entered" : "exited",
-                event.getGeofence().getName());
+        String message = event.getEventType() == GeofenceEvent.EventType.DWELL
+                ? String.format("%s has stayed in %s for %d minutes",
+                        event.getAsset().getName(),
+                        event.getGeofence().getName(),
+                        event.getGeofence().getDwellAlertMinutes())
+                : String.format("%s has %s %s",
+                        event.getAsset().getName(),
+                        event.getEventType() == GeofenceEvent.EventType.ENTER ? "entered" : "exited",
+                        event.getGeofence().getName());
 
         return new GeofenceEventMessage(
                 event.getId(),
@@ -126,7 +477,8 @@ public class WebSocketService {
                 event.getLatitude(),
                 event.getLongitude(),
                 event.getTimestamp(),
-                message
+                message,
+                null
         );
     }
 }
\ No newline at end of file
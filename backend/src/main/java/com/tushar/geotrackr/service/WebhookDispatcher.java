@@ -0,0 +1,356 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.entity.WebhookDeadLetter;
+import com.tushar.geotrackr.entity.WebhookSubscription;
+import com.tushar.geotrackr.repository.WebhookDeadLetterRepository;
+import com.tushar.geotrackr.repository.WebhookSubscriptionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes geofence events to webhook endpoints
+ * Each endpoint has its own queue: events are POSTed in batches (a JSON array) with
+ * a non-blocking HTTP client and at most webhook.max-concurrency requests in flight
+ * per endpoint, so a slow endpoint only delays itself. Failed batches are retried
+ * with exponential backoff while holding their slot; a batch that still fails, or
+ * is rejected with a client error, is stored as a dead letter.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WebhookDispatcher {
+
+    public static final String SIGNATURE_HEADER = "X-Geotrackr-Signature";
+    public static final String ATTEMPT_HEADER = "X-Geotrackr-Attempt";
+
+    private final WebhookSubscriptionRepository subscriptionRepository;
+    private final WebhookDeadLetterRepository deadLetterRepository;
+    private final WebSocketService webSocketService;
+    private final WebhookUrlValidator urlValidator;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${webhook.batch-size:50}")
+    private int batchSize;
+
+    @Value("${webhook.max-concurrency:2}")
+    private int maxConcurrency; // requests in flight per endpoint
+
+    @Value("${webhook.max-queue:10000}")
+    private int maxQueue; // pending events per endpoint, the excess is dead-lettered
+
+    @Value("${webhook.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${webhook.initial-backoff:1000}")
+    private long initialBackoff; // milliseconds, doubled per attempt
+
+    @Value("${webhook.max-backoff:60000}")
+    private long maxBackoff; // milliseconds
+
+    @Value("${webhook.request-timeout:10000}")
+    private long requestTimeout; // milliseconds
+
+    @Value("${webhook.client-threads:4}")
+    private int clientThreads;
+
+    private final Map<Long, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private volatile Map<String, List<Endpoint>> byOwner = Map.of();
+    private final AtomicInteger pending = new AtomicInteger();
+    private ThreadPoolTaskExecutor executor;
+    private HttpClient httpClient;
+    private Counter delivered;
+    private Counter failedAttempts;
+    private Counter deadLettered;
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(clientThreads);
+        executor.setMaxPoolSize(clientThreads);
+        executor.setThreadNamePrefix("webhook-");
+        executor.initialize();
+
+        httpClient = HttpClient.newBuilder()
+                .executor(executor)
+                .connectTimeout(Duration.ofMillis(requestTimeout))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+
+        Gauge.builder("webhook.pending", pending, AtomicInteger::get)
+                .description("Webhook events waiting to be sent")
+                .register(meterRegistry);
+        delivered = Counter.builder("webhook.delivered")
+                .description("Webhook events delivered")
+                .register(meterRegistry);
+        failedAttempts = Counter.builder("webhook.failed-attempts")
+                .description("Webhook requests that failed and were retried or dead-lettered")
+                .register(meterRegistry);
+        deadLettered = Counter.builder("webhook.dead-lettered")
+                .description("Webhook events stored as dead letters")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Load the active subscriptions; reloaded periodically so subscriptions changed on
+     * another node are picked up. Queues of endpoints that stay active are kept.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedRateString = "${webhook.reload-interval:60000}",
+            initialDelayString = "${webhook.reload-interval:60000}")
+    public void reload() {
+        Map<Long, Endpoint> active = new ConcurrentHashMap<>();
+        for (Object[] row : subscriptionRepository.findActiveEndpoints()) {
+            Long id = (Long) row[0];
+            Endpoint current = endpoints.get(id);
+            active.put(id, current != null ? current
+                    : new Endpoint(id, (String) row[1], (String) row[2], (String) row[3]));
+        }
+        endpoints.keySet().retainAll(active.keySet());
+        endpoints.putAll(active);
+        rebuildOwnerIndex();
+    }
+
+    public void register(WebhookSubscription subscription, String ownerUsername) {
+        endpoints.put(subscription.getId(), new Endpoint(subscription.getId(), subscription.getUrl(),
+                subscription.getSecret(), ownerUsername));
+        rebuildOwnerIndex();
+    }
+
+    public void remove(Long subscriptionId) {
+        Endpoint endpoint = endpoints.remove(subscriptionId);
+        if (endpoint != null) {
+            pending.addAndGet(-endpoint.size.getAndSet(0));
+            endpoint.queue.clear();
+            rebuildOwnerIndex();
+        }
+    }
+
+    public boolean hasEndpoints(String ownerUsername) {
+        return ownerUsername != null && byOwner.containsKey(ownerUsername);
+    }
+
+    /**
+     * Queue a serialized event for every endpoint of the owner
+     */
+    public void enqueue(String ownerUsername, byte[] event) {
+        List<Endpoint> targets = ownerUsername != null ? byOwner.get(ownerUsername) : null;
+        if (targets == null) {
+            return;
+        }
+        for (Endpoint endpoint : targets) {
+            enqueue(endpoint, event);
+        }
+    }
+
+    /**
+     * Queue serialized events for one endpoint (e.g. a redelivered dead letter)
+     */
+    public void enqueue(Long subscriptionId, List<byte[]> events) {
+        Endpoint endpoint = endpoints.get(subscriptionId);
+        if (endpoint == null) {
+            throw new IllegalArgumentException("Webhook is not active: " + subscriptionId);
+        }
+        events.forEach(event -> enqueue(endpoint, event));
+    }
+
+    private void enqueue(Endpoint endpoint, byte[] event) {
+        endpoint.queue.add(event);
+        pending.incrementAndGet();
+        // A full batch goes out right away; smaller ones wait for the next flush
+        if (endpoint.size.incrementAndGet() >= batchSize) {
+            drain(endpoint, true);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${webhook.flush-interval:1000}")
+    public void flush() {
+        for (Endpoint endpoint : endpoints.values()) {
+            drain(endpoint, false);
+        }
+    }
+
+    /**
+     * Send the endpoint's queued events while it has free slots
+     */
+    private void drain(Endpoint endpoint, boolean fullBatchesOnly) {
+        while (endpoint.size.get() > maxQueue) {
+            List<byte[]> excess = take(endpoint);
+            deadLetter(endpoint, webSocketService.joinArray(excess), excess.size(), 0, null, "Queue overflow");
+        }
+        while (endpoint.size.get() > 0
+                && (!fullBatchesOnly || endpoint.size.get() >= batchSize)
+                && endpoint.slots.tryAcquire()) {
+            List<byte[]> batch = take(endpoint);
+            if (batch.isEmpty()) {
+                endpoint.slots.release();
+                return;
+            }
+            send(endpoint, webSocketService.joinArray(batch), batch.size(), 1);
+        }
+    }
+
+    private List<byte[]> take(Endpoint endpoint) {
+        List<byte[]> batch = new ArrayList<>(batchSize);
+        byte[] event;
+        while (batch.size() < batchSize && (event = endpoint.queue.poll()) != null) {
+            batch.add(event);
+        }
+        endpoint.size.addAndGet(-batch.size());
+        pending.addAndGet(-batch.size());
+        return batch;
+    }
+
+    /**
+     * POST a batch; the endpoint's slot is held until it is delivered or dead-lettered
+     */
+    private void send(Endpoint endpoint, byte[] payload, int eventCount, int attempt) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(endpoint.uri)
+                .timeout(Duration.ofMillis(requestTimeout))
+                .header("Content-Type", "application/json")
+                .header(ATTEMPT_HEADER, String.valueOf(attempt))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(payload));
+        if (endpoint.secret != null && !endpoint.secret.isEmpty()) {
+            request.header(SIGNATURE_HEADER, "sha256=" + sign(endpoint.secret, payload));
+        }
+
+        // The host is resolved and checked again on every attempt, off the caller's thread
+        CompletableFuture.runAsync(() -> urlValidator.checkAddress(endpoint.uri), executor)
+                .thenCompose(checked -> httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.discarding()))
+                .whenComplete((response, failure) -> {
+                    Throwable error = failure instanceof CompletionException && failure.getCause() != null
+                            ? failure.getCause() : failure;
+                    int status = response != null ? response.statusCode() : 0;
+                    if (error == null && status >= 200 && status < 300) {
+                        delivered.increment(eventCount);
+                        endpoint.slots.release();
+                        return;
+                    }
+
+                    failedAttempts.increment();
+                    String reason = error != null ? error.getClass().getSimpleName() + ": " + error.getMessage()
+                            : "HTTP " + status;
+                    boolean blocked = error instanceof IllegalArgumentException;
+                    boolean retryable = !blocked && (error != null || status == 408 || status == 429 || status >= 500);
+                    if (retryable && attempt < maxAttempts && endpoints.get(endpoint.id) == endpoint) {
+                        long delay = backoff(attempt);
+                        log.debug("Webhook {} attempt {} failed ({}), retrying in {} ms",
+                                endpoint.id, attempt, reason, delay);
+                        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, executor)
+                                .execute(() -> send(endpoint, payload, eventCount, attempt + 1));
+                        return;
+                    }
+                    try {
+                        deadLetter(endpoint, payload, eventCount, attempt, status > 0 ? status : null, reason);
+                    } finally {
+                        endpoint.slots.release();
+                    }
+                });
+    }
+
+    private long backoff(int attempt) {
+        long delay = Math.min(maxBackoff, initialBackoff << Math.min(attempt - 1, 30));
+        // Jitter so endpoints recovering together are not hit by every retry at once
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private void deadLetter(Endpoint endpoint, byte[] payload, int eventCount, int attempts,
+                            Integer status, String reason) {
+        deadLettered.increment(eventCount);
+        log.warn("Webhook {} gave up on {} event(s) after {} attempt(s): {}",
+                endpoint.id, eventCount, attempts, reason);
+        try {
+            WebhookDeadLetter letter = new WebhookDeadLetter();
+            letter.setSubscription(subscriptionRepository.getReferenceById(endpoint.id));
+            letter.setPayload(new String(payload, StandardCharsets.UTF_8));
+            letter.setEventCount(eventCount);
+            letter.setAttempts(attempts);
+            letter.setLastStatus(status);
+            letter.setLastError(reason.length() > 1000 ? reason.substring(0, 1000) : reason);
+            deadLetterRepository.save(letter);
+        } catch (Exception e) {
+            log.error("Failed to store webhook dead letter for subscription {}: {}", endpoint.id, e.getMessage());
+        }
+    }
+
+    static String sign(String secret, byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(payload));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    private void rebuildOwnerIndex() {
+        Map<String, List<Endpoint>> index = new ConcurrentHashMap<>();
+        for (Endpoint endpoint : endpoints.values()) {
+            index.computeIfAbsent(endpoint.owner, owner -> new ArrayList<>()).add(endpoint);
+        }
+        byOwner = index;
+    }
+
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * One webhook URL with its queue and in-flight slots
+     */
+    private class Endpoint {
+
+        private final Long id;
+        private final URI uri;
+        private final String secret;
+        private final String owner;
+        private final Queue<byte[]> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final Semaphore slots = new Semaphore(maxConcurrency);
+
+        Endpoint(Long id, String url, String secret, String owner) {
+            this.id = id;
+            this.uri = URI.create(url);
+            this.secret = secret;
+            this.owner = owner;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.tushar.geotrackr.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tushar.geotrackr.dto.WebhookCreateDTO;
+import com.tushar.geotrackr.entity.WebhookDeadLetter;
+import com.tushar.geotrackr.entity.WebhookSubscription;
+import com.tushar.geotrackr.repository.UserRepository;
+import com.tushar.geotrackr.repository.WebhookDeadLetterRepository;
+import com.tushar.geotrackr.repository.WebhookSubscriptionRepository;
+import com.tushar.geotrackr.security.AuthenticatedUser;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Webhook subscriptions of a user and their dead letters
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WebhookService {
+
+    private final WebhookSubscriptionRepository subscriptionRepository;
+    private final WebhookDeadLetterRepository deadLetterRepository;
+    private final UserRepository userRepository;
+    private final WebhookDispatcher webhookDispatcher;
+    private final WebhookUrlValidator urlValidator;
+    private final ObjectMapper objectMapper;
+
+    @Value("${webhook.max-per-user:10}")
+    private int maxPerUser;
+
+    @Transactional
+    public WebhookSubscription createSubscription(WebhookCreateDTO dto, AuthenticatedUser user) {
+        URI uri = urlValidator.validate(dto.getUrl());
+        if (subscriptionRepository.findByOwnerIdAndActiveTrue(user.getId()).size() >= maxPerUser) {
+            throw new IllegalArgumentException("At most " + maxPerUser + " webhooks per user");
+        }
+
+        WebhookSubscription subscription = new WebhookSubscription();
+        subscription.setUrl(uri.toString());
+        subscription.setSecret(dto.getSecret() != null && !dto.getSecret().isBlank() ? dto.getSecret() : null);
+        subscription.setOwner(userRepository.getReferenceById(user.getId()));
+        subscription.setActive(true);
+        WebhookSubscription saved = subscriptionRepository.save(subscription);
+
+        webhookDispatcher.register(saved, user.getUsername());
+        log.info("Webhook {} registered for user {}", saved.getId(), user.getUsername());
+        return saved;
+    }
+
+    public List<WebhookSubscription> getSubscriptions(AuthenticatedUser user) {
+        return subscriptionRepository.findByOwnerIdAndActiveTrue(user.getId());
+    }
+
+    @Transactional
+    public void deleteSubscription(Long id, AuthenticatedUser user) {
+        WebhookSubscription subscription = getOwnSubscription(id, user);
+        subscription.setActive(false);
+        subscriptionRepository.save(subscription);
+        webhookDispatcher.remove(id);
+    }
+
+    public List<WebhookDeadLetter> getDeadLetters(Long id, AuthenticatedUser user) {
+        getOwnSubscription(id, user);
+        return deadLetterRepository.findBySubscriptionIdOrderByIdDesc(id);
+    }
+
+    /**
+     * Queue the events of a dead letter again and remove it
+     */
+    @Transactional
+    public int redeliver(Long id, Long deadLetterId, AuthenticatedUser user) {
+        getOwnSubscription(id, user);
+        WebhookDeadLetter letter = deadLetterRepository.findById(deadLetterId)
+                .filter(l -> id.equals(l.getSubscriptionId()))
+                .orElseThrow(() -> new RuntimeException("Dead letter not found with id: " + deadLetterId));
+
+        List<byte[]> events = new ArrayList<>();
+        try {
+            for (JsonNode event : objectMapper.readTree(letter.getPayload())) {
+                events.add(objectMapper.writeValueAsBytes(event));
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Dead letter payload is not valid JSON");
+        }
+        webhookDispatcher.enqueue(id, events);
+        deadLetterRepository.delete(letter);
+        return events.size();
+    }
+
+    private WebhookSubscription getOwnSubscription(Long id, AuthenticatedUser user) {
+        WebhookSubscription subscription = subscriptionRepository.findById(id)
+                .filter(WebhookSubscription::isActive)
+                .orElseThrow(() -> new RuntimeException("Webhook not found with id: " + id));
+        if (!user.isAdmin() && !subscription.getOwner().getId().equals(user.getId())) {
+            throw new AccessDeniedException("Not allowed to manage webhook " + id);
+        }
+        return subscription;
+    }
+}
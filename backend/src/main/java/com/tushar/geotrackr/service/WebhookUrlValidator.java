@@ -0,0 +1,92 @@
+package com.tushar.geotrackr.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+
+/**
+ * Keeps webhooks from reaching internal services: only https URLs (http if enabled)
+ * whose host resolves to public addresses are accepted. The address is checked again
+ * before every delivery, so a host re-pointed at an internal address after
+ * registration (DNS rebinding) is refused as well.
+ */
+@Component
+public class WebhookUrlValidator {
+
+    @Value("${webhook.allow-http:false}")
+    private boolean allowHttp;
+
+    @Value("${webhook.allow-private-addresses:false}")
+    private boolean allowPrivateAddresses; // loopback, private and link-local targets, for local testing only
+
+    /**
+     * Parse and check a webhook URL at registration
+     */
+    public URI validate(String url) {
+        URI uri;
+        try {
+            uri = URI.create(url.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid webhook URL: " + url);
+        }
+        String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase() : null;
+        if (!"https".equals(scheme) && !(allowHttp && "http".equals(scheme))) {
+            throw new IllegalArgumentException(allowHttp ? "Webhook URL must use http or https"
+                    : "Webhook URL must use https");
+        }
+        if (uri.getHost() == null) {
+            throw new IllegalArgumentException("Webhook URL must include a host");
+        }
+        if (uri.getUserInfo() != null) {
+            throw new IllegalArgumentException("Webhook URL must not include credentials");
+        }
+        try {
+            checkAddress(uri);
+        } catch (UncheckedIOException e) {
+            throw new IllegalArgumentException("Webhook host cannot be resolved: " + uri.getHost());
+        }
+        return uri;
+    }
+
+    /**
+     * Resolve the URL's host and reject it if any address is internal. Throws
+     * IllegalArgumentException for a blocked address and UncheckedIOException if the
+     * host does not resolve. The lookup goes through the JVM's address cache, which the
+     * HTTP client reads when it connects right after.
+     */
+    public void checkAddress(URI uri) {
+        if (allowPrivateAddresses) {
+            return;
+        }
+        InetAddress[] addresses;
+        try {
+            addresses = InetAddress.getAllByName(uri.getHost());
+        } catch (UnknownHostException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (InetAddress address : addresses) {
+            if (isInternal(address)) {
+                throw new IllegalArgumentException("Webhook host " + uri.getHost()
+                        + " resolves to a blocked address " + address.getHostAddress());
+            }
+        }
+    }
+
+    static boolean isInternal(InetAddress address) {
+        if (address.isAnyLocalAddress() || address.isLoopbackAddress() || address.isLinkLocalAddress()
+                || address.isSiteLocalAddress() || address.isMulticastAddress()) {
+            return true;
+        }
+        byte[] bytes = address.getAddress();
+        if (address instanceof Inet6Address) {
+            return (bytes[0] & 0xfe) == 0xfc; // unique local fc00::/7
+        }
+        return bytes[0] == 0 // 0.0.0.0/8
+                || ((bytes[0] & 0xff) == 100 && (bytes[1] & 0xc0) == 64); // carrier-grade NAT 100.64.0.0/10
+    }
+}
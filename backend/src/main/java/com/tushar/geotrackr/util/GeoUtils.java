@@ -0,0 +1,72 @@
+package com.tushar.geotrackr.util;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.util.AffineTransformation;
+
+/**
+ * Shared geodesic helpers for in-memory spatial structures
+ */
+public final class GeoUtils {
+
+    // One spherical earth model everywhere: the mean WGS84 radius, as PostGIS uses for
+    // geography measurements with use_spheroid = false
+    public static final double EARTH_RADIUS_METERS = 6371008.8;
+    public static final double METERS_PER_DEGREE_LATITUDE = Math.toRadians(EARTH_RADIUS_METERS);
+    public static final int WGS84_SRID = 4326;
+
+    /**
+     * Factory for geometries stored in PostGIS columns (x = longitude, y = latitude)
+     */
+    public static final GeometryFactory WGS84_FACTORY = new GeometryFactory(new PrecisionModel(), WGS84_SRID);
+
+    private GeoUtils() {
+    }
+
+    /**
+     * Distance between two points in meters (Haversine formula)
+     */
+    public static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+                        Math.sin(dLon / 2) * Math.sin(dLon / 2);
+
+        return EARTH_RADIUS_METERS * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    /**
+     * Length of one degree of longitude in meters at the given latitude
+     */
+    public static double metersPerDegreeLongitude(double latitude) {
+        return METERS_PER_DEGREE_LATITUDE * Math.cos(Math.toRadians(latitude));
+    }
+
+    /**
+     * Factor that makes a degree of longitude as long as a degree of latitude around the
+     * given latitude; bounded away from zero near the poles
+     */
+    public static double longitudeScale(double latitude) {
+        return Math.max(0.01, Math.cos(Math.toRadians(latitude)));
+    }
+
+    /**
+     * Copy of a geometry with its longitudes multiplied by lonScale, so that planar
+     * distances near the scale's latitude are proportional to meters
+     */
+    public static Geometry scaleLongitude(Geometry geometry, double lonScale) {
+        return AffineTransformation.scaleInstance(lonScale, 1).transform(geometry);
+    }
+
+    /**
+     * WGS84 point for a latitude/longitude pair
+     */
+    public static Point point(double latitude, double longitude) {
+        return WGS84_FACTORY.createPoint(new Coordinate(longitude, latitude));
+    }
+}
@@ -0,0 +1,249 @@
+package com.tushar.geotrackr.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tushar.geotrackr.dto.LocationUpdateMessage;
+import com.tushar.geotrackr.repository.AssetRepository;
+import com.tushar.geotrackr.security.AssetScope;
+import com.tushar.geotrackr.security.StompAuthenticationService;
+import com.tushar.geotrackr.service.AssetOwnerRegistry;
+import com.tushar.geotrackr.service.RelayViewportRouter;
+import com.tushar.geotrackr.service.ResumeBuffer;
+import com.tushar.geotrackr.service.ViewportRegistry;
+import com.tushar.geotrackr.service.WebSocketService;
+import org.apache.activemq.artemis.core.config.Configuration;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.autoconfigure.websocket.servlet.WebSocketMessagingAutoConfiguration;
+import org.springframework.boot.autoconfigure.websocket.servlet.WebSocketServletAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs two application nodes in broker relay mode against an embedded Artemis
+ * broker with a STOMP acceptor and checks that a broadcast published on one node
+ * reaches a client connected to the other.
+ */
+class BrokerRelayIntegrationTest {
+
+    @TempDir
+    static Path brokerDir;
+
+    private static EmbeddedActiveMQ broker;
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void start() throws Exception {
+        int stompPort = freePort();
+        Configuration configuration = new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .setJMXManagementEnabled(false)
+                .setBindingsDirectory(brokerDir.resolve("bindings").toString())
+                .setJournalDirectory(brokerDir.resolve("journal").toString())
+                .setPagingDirectory(brokerDir.resolve("paging").toString())
+                .setLargeMessagesDirectory(brokerDir.resolve("large-messages").toString())
+                .addAcceptorConfiguration("stomp", "tcp://localhost:" + stompPort
+                        + "?protocols=STOMP;anycastPrefix=/queue/;multicastPrefix=/topic/");
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(configuration);
+        broker.start();
+
+        nodeA = startNode(stompPort);
+        nodeB = startNode(stompPort);
+    }
+
+    @AfterAll
+    static void stop() throws Exception {
+        if (nodeA != null) {
+            nodeA.close();
+        }
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        if (broker != null) {
+            broker.stop();
+        }
+    }
+
+    @Test
+    void broadcastOnOneNodeReachesClientsOfAnotherNode() throws Exception {
+        awaitRelayConnected(nodeB);
+
+        BlockingQueue<JsonNode> topicFrames = new LinkedBlockingQueue<>();
+        BlockingQueue<JsonNode> viewportFrames = new LinkedBlockingQueue<>();
+        StompSession client = connectClient(nodeB);
+        client.subscribe("/topic/location/all", collect(topicFrames));
+
+        StompHeaders viewportHeaders = new StompHeaders();
+        viewportHeaders.setDestination("/user/queue/location/viewport");
+        viewportHeaders.add(ViewportRegistry.VIEWPORT_HEADER, "40,-75,41,-73");
+        client.subscribe(viewportHeaders, collect(viewportFrames));
+
+        // Subscriptions travel through the broker asynchronously; publish until the first frame arrives
+        WebSocketService publisher = nodeA.getBean(WebSocketService.class);
+        JsonNode topicFrame = null;
+        for (int attempt = 0; attempt < 20 && topicFrame == null; attempt++) {
+            publisher.broadcastLocationUpdate(location(1L, 40.5, -74.0));
+            publisher.broadcastLocationUpdate(location(2L, 51.5, -0.1));
+            topicFrame = topicFrames.poll(500, TimeUnit.MILLISECONDS);
+        }
+
+        assertNotNull(topicFrame, "node B client did not receive the broadcast published on node A");
+        assertTrue(topicFrame.isArray());
+        assertTrue(assetIds(topicFrame).contains(1L));
+
+        JsonNode viewportFrame = viewportFrames.poll(5, TimeUnit.SECONDS);
+        assertNotNull(viewportFrame, "node B did not route the relayed batch to its viewport session");
+        assertEquals(List.of(1L), assetIds(viewportFrame));
+
+        client.disconnect();
+    }
+
+    private static ConfigurableApplicationContext startNode(int stompPort) {
+        // Command-line arguments so they take precedence over application.yml
+        return new SpringApplicationBuilder(RelayNode.class)
+                .web(WebApplicationType.SERVLET)
+                .run(
+                        "--server.port=0",
+                        "--spring.main.banner-mode=off",
+                        "--websocket.broker.mode=relay",
+                        // The minimal node has no user or token services; CONNECT is accepted by the stub below
+                        "--websocket.auth.required=false",
+                        "--websocket.relay.host=localhost",
+                        "--websocket.relay.port=" + stompPort,
+                        "--websocket.relay.reconnect-delay=500",
+                        "--websocket.conflation.tick-interval=50");
+    }
+
+    private static void awaitRelayConnected(ConfigurableApplicationContext node) throws InterruptedException {
+        RelayViewportRouter router = node.getBean(RelayViewportRouter.class);
+        for (int i = 0; i < 100 && !router.isConnected(); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(router.isConnected(), "relay viewport router did not connect to the broker");
+    }
+
+    private static StompSession connectClient(ConfigurableApplicationContext node) throws Exception {
+        int port = ((ServletWebServerApplicationContext) node).getWebServer().getPort();
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(new ObjectMapper());
+        stompClient.setMessageConverter(converter);
+        return stompClient.connectAsync("ws://localhost:" + port + "/ws/location/websocket",
+                new StompSessionHandlerAdapter() {}).get(10, TimeUnit.SECONDS);
+    }
+
+    private static StompFrameHandler collect(BlockingQueue<JsonNode> frames) {
+        return new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return JsonNode.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                frames.add((JsonNode) payload);
+            }
+        };
+    }
+
+    private static List<Long> assetIds(JsonNode batch) {
+        List<Long> ids = new ArrayList<>();
+        batch.forEach(node -> ids.add(node.get("assetId").asLong()));
+        return ids;
+    }
+
+    private static LocationUpdateMessage location(Long assetId, double lat, double lon) {
+        return new LocationUpdateMessage(assetId, "Asset " + assetId, "VEHICLE", lat, lon,
+                LocalDateTime.now(), null, null, null, null, null);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Minimal application node: web server, STOMP configuration and the WebSocket fan-out
+     */
+    @org.springframework.context.annotation.Configuration(proxyBeanMethods = false)
+    @ImportAutoConfiguration({
+            ServletWebServerFactoryAutoConfiguration.class,
+            DispatcherServletAutoConfiguration.class,
+            WebMvcAutoConfiguration.class,
+            WebSocketServletAutoConfiguration.class,
+            WebSocketMessagingAutoConfiguration.class,
+            JacksonAutoConfiguration.class
+    })
+    @Import({
+            WebSocketConfig.class,
+            SchedulingConfig.class,
+            WebSocketService.class,
+            ViewportRegistry.class,
+            AssetOwnerRegistry.class,
+            ResumeBuffer.class,
+            RelayViewportRouter.class
+    })
+    static class RelayNode {
+
+        @Bean
+        AssetRepository assetRepository() {
+            return Mockito.mock(AssetRepository.class);
+        }
+
+        /**
+         * Every client session gets a scope covering all assets, as an admin would
+         */
+        @Bean
+        StompAuthenticationService stompAuthenticationService() {
+            StompAuthenticationService service = Mockito.mock(StompAuthenticationService.class);
+            Mockito.when(service.authenticate(Mockito.any())).thenAnswer(invocation -> {
+                StompHeaderAccessor connect = invocation.getArgument(0);
+                connect.getSessionAttributes().put(AssetScope.SESSION_ATTRIBUTE, AssetScope.all());
+                return new UsernamePasswordAuthenticationToken("client", null, List.of());
+            });
+            return service;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.tushar.geotrackr.config;
+
+import com.tushar.geotrackr.entity.Geofence;
+import com.tushar.geotrackr.service.GeofenceService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Starts the application with spatial.enabled=false: the schema must not contain any
+ * geometry column and geofences must be checked in memory
+ */
+@SpringBootTest(properties = {
+        "spatial.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:spatial-disabled;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create",
+        "spring.sql.init.mode=never"
+})
+class SpatialDisabledSchemaTest {
+
+    @Autowired
+    private SpatialSupport spatialSupport;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private GeofenceService geofenceService;
+
+    @Test
+    void schemaHasNoGeometryColumns() {
+        assertFalse(spatialSupport.isEnabled());
+        Integer geometryColumns = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns " +
+                        "WHERE LOWER(table_name) IN ('geofences', 'gps_data') " +
+                        "AND LOWER(column_name) IN ('center', 'boundary', 'location')",
+                Integer.class);
+        assertEquals(0, geometryColumns);
+    }
+
+    @Test
+    void polygonalGeofencesAreCheckedInMemory() {
+        Geofence geofence = new Geofence();
+        geofence.setName("square");
+        geofence.setType(Geofence.GeofenceType.POLYGONAL);
+        geofence.setPolygonCoordinates("[[10.0, 10.0], [10.0, 10.1], [10.1, 10.1], [10.1, 10.0]]");
+        Geofence saved = geofenceService.createGeofence(geofence);
+
+        Geofence loaded = geofenceService.getGeofenceById(saved.getId());
+        assertTrue(geofenceService.isInsideGeofence(loaded, 10.05, 10.05));
+        assertFalse(geofenceService.isInsideGeofence(loaded, 10.2, 10.05));
+    }
+}
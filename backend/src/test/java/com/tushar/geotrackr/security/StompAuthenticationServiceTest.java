@@ -0,0 +1,114 @@
+package com.tushar.geotrackr.security;
+
+import com.tushar.geotrackr.entity.User;
+import com.tushar.geotrackr.repository.AssetRepository;
+import com.tushar.geotrackr.service.AssetOwnerRegistry;
+import com.tushar.geotrackr.service.ReplayService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks SUBSCRIBE authorization against the session's asset scope: fleet-wide topics
+ * for admins only, replay topics for their owners, and nothing else;
+ * SEND only to the application's message handlers
+ */
+class StompAuthenticationServiceTest {
+
+    private static final AuthenticatedUser ALICE =
+            new AuthenticatedUser(1L, "alice", null, User.Role.USER, AuthenticatedUser.SCOPE_OWN, true);
+    private static final AuthenticatedUser ADMIN =
+            new AuthenticatedUser(2L, "admin", null, User.Role.ADMIN, AuthenticatedUser.SCOPE_ALL, true);
+
+    private StompAuthenticationService service;
+
+    @BeforeEach
+    void setUp() {
+        AssetOwnerRegistry owners = Mockito.mock(AssetOwnerRegistry.class);
+        Mockito.when(owners.getOwner(10L)).thenReturn("alice");
+        Mockito.when(owners.getOwner(20L)).thenReturn("bob");
+
+        ReplayService replays = Mockito.mock(ReplayService.class);
+        Mockito.when(replays.getOwner("r-alice")).thenReturn("alice");
+        Mockito.when(replays.getOwner("r-bob")).thenReturn("bob");
+
+        service = new StompAuthenticationService(null, null, null,
+                Mockito.mock(AssetRepository.class), owners, replays);
+    }
+
+    @Test
+    void fleetTopicsNeedAScopeCoveringEveryAsset() {
+        for (String destination : List.of("/topic/location/all", "/topic/events/all", "/topic/events/proximity",
+                "/topic/gps/status", "/topic/gps/status/digest", "/topic/occupancy")) {
+            assertThrows(AccessDeniedException.class, () -> subscribe(ALICE, destination), destination);
+            assertDoesNotThrow(() -> subscribe(ADMIN, destination), destination);
+        }
+    }
+
+    @Test
+    void replayTopicsNeedOwnershipAndPerAssetTopicsDoNotExist() {
+        // Nothing is published per asset or geofence; owners use their /user/queue destinations
+        for (String destination : List.of("/topic/location/10", "/topic/events/asset/10", "/topic/events/geofence/5")) {
+            assertThrows(AccessDeniedException.class, () -> subscribe(ALICE, destination), destination);
+            assertThrows(AccessDeniedException.class, () -> subscribe(ADMIN, destination), destination);
+        }
+
+        assertDoesNotThrow(() -> subscribe(ALICE, "/topic/replay/r-alice"));
+        assertThrows(AccessDeniedException.class, () -> subscribe(ALICE, "/topic/replay/r-bob"));
+        assertThrows(AccessDeniedException.class, () -> subscribe(ADMIN, "/topic/replay/unknown"));
+    }
+
+    @Test
+    void unknownDestinationsAndSessionsWithoutScopeAreDenied() {
+        assertDoesNotThrow(() -> subscribe(ALICE, "/user/queue/events"));
+        assertDoesNotThrow(() -> subscribe(ALICE, "/topic/notifications"));
+        assertThrows(AccessDeniedException.class, () -> subscribe(ALICE, "/topic/anything"));
+        assertThrows(AccessDeniedException.class, () -> subscribe(ALICE, "/topic/simp-user-registry"));
+        assertThrows(AccessDeniedException.class, () -> subscribe(ALICE, "/queue/events-user123"));
+        assertThrows(AccessDeniedException.class, () -> subscribe(null, "/topic/notifications"));
+    }
+
+    @Test
+    void sendIsOnlyAllowedToMessageHandlers() {
+        for (AuthenticatedUser user : new AuthenticatedUser[]{ALICE, ADMIN, null}) {
+            assertDoesNotThrow(() -> send(user, "/app/location/update"));
+            assertDoesNotThrow(() -> send(user, "/app/viewport"));
+            for (String destination : new String[]{"/topic/location/all", "/topic/events/all",
+                    "/topic/location/10", "/user/bob/queue/events", "/queue/events-user123", "/app/unknown"}) {
+                assertThrows(AccessDeniedException.class, () -> send(user, destination), destination);
+            }
+        }
+    }
+
+    private void subscribe(AuthenticatedUser user, String destination) {
+        frame(StompCommand.SUBSCRIBE, user, destination);
+    }
+
+    private void send(AuthenticatedUser user, String destination) {
+        frame(StompCommand.SEND, user, destination);
+    }
+
+    private void frame(StompCommand command, AuthenticatedUser user, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setDestination(destination);
+        Map<String, Object> attributes = new HashMap<>();
+        if (user != null) {
+            accessor.setUser(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+            attributes.put(AssetScope.SESSION_ATTRIBUTE, user.isAdmin()
+                    ? AssetScope.all() : AssetScope.owner(user.getUsername(), List.of()));
+        }
+        accessor.setSessionAttributes(attributes);
+        service.authorize(accessor);
+    }
+}
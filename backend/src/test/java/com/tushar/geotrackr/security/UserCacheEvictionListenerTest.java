@@ -0,0 +1,89 @@
+package com.tushar.geotrackr.security;
+
+import com.tushar.geotrackr.entity.User;
+import com.tushar.geotrackr.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A changed user leaves the authentication cache once its transaction commits,
+ * not before and not after a rollback
+ */
+class UserCacheEvictionListenerTest {
+
+    private UserRepository userRepository;
+    private CustomUserDetailsService userDetailsService;
+    private UserCacheEvictionListener listener;
+    private User user;
+    private AuthenticatedUser tokenUser;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = Mockito.mock(UserRepository.class);
+        userDetailsService = new CustomUserDetailsService(userRepository);
+        ReflectionTestUtils.setField(userDetailsService, "cacheTtl", 60000L);
+        ReflectionTestUtils.setField(userDetailsService, "cacheMaxSize", 100);
+        listener = new UserCacheEvictionListener(userDetailsService);
+
+        user = new User();
+        user.setId(1L);
+        user.setUsername("alice");
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(user));
+        tokenUser = AuthenticatedUser.of(user);
+        assertNotNull(userDetailsService.resolveTokenUser(tokenUser));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void deactivatedUserIsEvictedAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        user.setActive(false);
+        listener.evict(user);
+
+        // A request racing the transaction still sees the committed (cached) user
+        assertNotNull(userDetailsService.resolveTokenUser(tokenUser));
+        verify(userRepository, times(1)).findByUsername("alice");
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertNull(userDetailsService.resolveTokenUser(tokenUser));
+        verify(userRepository, times(2)).findByUsername("alice");
+    }
+
+    @Test
+    void rolledBackChangeKeepsTheCachedUser() {
+        TransactionSynchronizationManager.initSynchronization();
+        listener.evict(user);
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        userDetailsService.resolveTokenUser(tokenUser);
+        verify(userRepository, times(1)).findByUsername("alice");
+    }
+
+    @Test
+    void changeOutsideATransactionIsEvictedAtOnce() {
+        listener.evict(user);
+
+        userDetailsService.resolveTokenUser(tokenUser);
+        verify(userRepository, times(2)).findByUsername("alice");
+    }
+}
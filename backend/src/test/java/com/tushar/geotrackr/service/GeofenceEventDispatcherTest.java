@@ -0,0 +1,154 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.entity.Asset;
+import com.tushar.geotrackr.entity.Geofence;
+import com.tushar.geotrackr.entity.GeofenceEvent;
+import com.tushar.geotrackr.entity.User;
+import com.tushar.geotrackr.repository.AssetRepository;
+import com.tushar.geotrackr.repository.GeofenceEventRepository;
+import com.tushar.geotrackr.repository.GeofenceRepository;
+import com.tushar.geotrackr.repository.UserRepository;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.LockOptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.reflect.Method;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Outbox claims and startup expiry against an in-memory database: batches are claimed
+ * oldest first, rows locked by another dispatcher are skipped, and only the backlog
+ * older than outbox.max-age is dead-lettered
+ */
+@SpringBootTest(properties = {
+        "spatial.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:outbox;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create",
+        "spring.sql.init.mode=never",
+        "outbox.poll-interval=3600000",
+        "outbox.batch-size=2",
+        "outbox.max-age=600000"
+})
+class GeofenceEventDispatcherTest {
+
+    @Autowired
+    private GeofenceEventDispatcher dispatcher;
+
+    @Autowired
+    private GeofenceEventRepository geofenceEventRepository;
+
+    @Autowired
+    private AssetRepository assetRepository;
+
+    @Autowired
+    private GeofenceRepository geofenceRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Asset asset;
+    private Geofence geofence;
+
+    @BeforeEach
+    void setUp() {
+        geofenceEventRepository.deleteAll();
+        User owner = userRepository.findByUsername("alice").orElseGet(() -> {
+            User user = new User();
+            user.setUsername("alice");
+            user.setPassword("secret");
+            user.setEmail("alice@example.com");
+            user.setFullName("Alice");
+            return userRepository.save(user);
+        });
+
+        asset = new Asset();
+        asset.setName("Truck");
+        asset.setType(Asset.AssetType.VEHICLE);
+        asset.setOwner(owner);
+        asset = assetRepository.save(asset);
+
+        geofence = new Geofence();
+        geofence.setName("Depot");
+        geofence.setCenterLatitude(10.0);
+        geofence.setCenterLongitude(10.0);
+        geofence.setRadius(500.0);
+        geofence.setCreatedBy(owner);
+        geofence = geofenceRepository.save(geofence);
+    }
+
+    @Test
+    void batchesAreClaimedOldestFirstAndMarkedSent() {
+        Long first = store().getId();
+        Long second = store().getId();
+        Long third = store().getId();
+
+        assertEquals(2, dispatcher.dispatchBatch());
+        assertTrue(geofenceEventRepository.findById(first).orElseThrow().isNotificationSent());
+        assertTrue(geofenceEventRepository.findById(second).orElseThrow().isNotificationSent());
+        assertFalse(geofenceEventRepository.findById(third).orElseThrow().isNotificationSent());
+        assertEquals(1, dispatcher.dispatchBatch());
+        assertEquals(0, dispatcher.dispatchBatch());
+    }
+
+    @Test
+    void claimSkipsRowsLockedByAnotherDispatcher() throws Exception {
+        // H2 has no SKIP LOCKED, so the claim query's lock settings are checked instead
+        Method claim = GeofenceEventRepository.class.getMethod("findUnsentForUpdate", Pageable.class);
+        assertEquals(LockModeType.PESSIMISTIC_WRITE, claim.getAnnotation(Lock.class).value());
+        QueryHint hint = claim.getAnnotation(QueryHints.class).value()[0];
+        assertEquals("jakarta.persistence.lock.timeout", hint.name());
+        assertEquals(String.valueOf(LockOptions.SKIP_LOCKED), hint.value());
+    }
+
+    @Test
+    void backlogOlderThanTheMaximumAgeIsDeadLetteredAndTheRestDelivered() throws Exception {
+        Long old = store().getId();
+        Long fresh = store().getId();
+        jdbcTemplate.update("UPDATE geofence_events SET created_at = ? WHERE id = ?",
+                LocalDateTime.now().minusHours(1), old);
+
+        dispatcher.expireBacklog();
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!geofenceEventRepository.findById(fresh).orElseThrow().isNotificationSent()
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(geofenceEventRepository.findById(fresh).orElseThrow().isNotificationSent());
+        GeofenceEvent expired = geofenceEventRepository.findById(old).orElseThrow();
+        assertNotNull(expired.getExpiredAt());
+        assertFalse(expired.isNotificationSent());
+        assertEquals(0, dispatcher.dispatchBatch(), "expired events are not claimed again");
+    }
+
+    private GeofenceEvent store() {
+        GeofenceEvent event = new GeofenceEvent();
+        event.setAsset(asset);
+        event.setGeofence(geofence);
+        event.setEventType(GeofenceEvent.EventType.ENTER);
+        event.setLatitude(10.0);
+        event.setLongitude(10.0);
+        event.setTimestamp(LocalDateTime.now());
+        return geofenceEventRepository.save(event);
+    }
+}
@@ -0,0 +1,155 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.util.GeoUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Polygon;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Path checks between two fixes and boundary clearances against a square and a
+ * U-shaped (concave) fence
+ */
+class GeofenceGeometryIndexTest {
+
+    private static final double EPSILON = 1e-9;
+
+    private GeofenceGeometryIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new GeofenceGeometryIndex();
+        // Square 0..1 x 0..1 (lon, lat)
+        index.put(1L, polygon(0, 0, 1, 0, 1, 1, 0, 1, 0, 0), 0);
+        // U opening north: arms at lon 10..11 and 12..13, joined below lat 1
+        index.put(2L, polygon(10, 0, 13, 0, 13, 3, 12, 3, 12, 1, 11, 1, 11, 3, 10, 3, 10, 0), 0);
+    }
+
+    @Test
+    void segmentThroughAFenceGivesOnePassWithInterpolatedFractions() {
+        List<GeofenceGeometryIndex.PassThrough> passes = index.findPassThroughs(0.5, -1, 0.5, 3);
+
+        assertEquals(1, passes.size());
+        GeofenceGeometryIndex.PassThrough pass = passes.get(0);
+        assertEquals(1L, pass.geofenceId());
+        assertEquals(0.25, pass.entryFraction(), EPSILON);
+        assertEquals(0.5, pass.exitFraction(), EPSILON);
+        assertEquals(0, pass.entry().x, EPSILON);
+        assertEquals(1, pass.exit().x, EPSILON);
+    }
+
+    @Test
+    void segmentsStartingInsideMissingOrTouchingAFenceAreNotPassThroughs() {
+        assertTrue(index.findPassThroughs(0.5, 0.5, 0.5, 3).isEmpty(), "starts inside");
+        assertTrue(index.findPassThroughs(0.5, -1, 0.5, 0.5).isEmpty(), "ends inside");
+        assertTrue(index.findPassThroughs(2, -1, 2, 3).isEmpty(), "misses");
+        assertTrue(index.findPassThroughs(2, 0, 0, 2).isEmpty(), "touches a corner");
+        assertTrue(index.findPassThroughs(0.5, 0.5, 0.5, 0.5).isEmpty(), "no movement");
+    }
+
+    @Test
+    void concaveFenceCrossedTwiceGivesOnePassPerArm() {
+        // West to east across both arms of the U, above its base
+        List<GeofenceGeometryIndex.PassThrough> passes = index.findPassThroughs(2, 9, 2, 14);
+
+        assertEquals(2, passes.size());
+        assertEquals(0.2, passes.get(0).entryFraction(), EPSILON);
+        assertEquals(0.4, passes.get(0).exitFraction(), EPSILON);
+        assertEquals(0.6, passes.get(1).entryFraction(), EPSILON);
+        assertEquals(0.8, passes.get(1).exitFraction(), EPSILON);
+        for (GeofenceGeometryIndex.PassThrough pass : passes) {
+            assertEquals(2L, pass.geofenceId());
+            // Each piece lies inside the fence, unlike the midpoint of the first entry and last exit
+            double midLon = (pass.entry().x + pass.exit().x) / 2;
+            assertTrue(polygon(10, 0, 13, 0, 13, 3, 12, 3, 12, 1, 11, 1, 11, 3, 10, 3, 10, 0)
+                    .contains(GeoUtils.point(2, midLon)));
+        }
+    }
+
+    @Test
+    void clearanceMeasuresTheNearestBoundaryAndKeepsClearOfBuffers() {
+        long version = index.version();
+        // 0.001 degrees west of the square's west edge, on the equator: ~111 m
+        GeofenceGeometryIndex.Clearance clearance = index.clearance(0.5, -0.001, 20000);
+        assertEquals(0.001 * GeoUtils.METERS_PER_DEGREE_LATITUDE, clearance.boundaryDistance(), 0.5);
+        assertTrue(clearance.safeRadius() <= clearance.boundaryDistance());
+        assertEquals(version, clearance.version());
+
+        index.put(1L, polygon(0, 0, 1, 0, 1, 1, 0, 1, 0, 0), 50);
+        GeofenceGeometryIndex.Clearance buffered = index.clearance(0.5, -0.001, 20000);
+        assertEquals(clearance.boundaryDistance(), buffered.boundaryDistance(), EPSILON);
+        assertEquals(clearance.safeRadius() - 50, buffered.safeRadius(), 0.5);
+        assertEquals(version + 1, buffered.version());
+    }
+
+    @Test
+    void clearanceFarFromEveryFenceIsTheSearchRadius() {
+        GeofenceGeometryIndex.Clearance clearance = index.clearance(5, 5, 20000);
+        assertNull(clearance.boundaryDistance());
+        assertEquals(20000, clearance.safeRadius(), EPSILON);
+    }
+
+    @Test
+    void clearanceAtHighLatitudeFindsTheNearestBoundaryInMeters() {
+        // L-shaped fence at 60N: its west edge is 0.01 degrees east of the point (~556 m) and its
+        // south edge 0.008 degrees north (~890 m), so the nearest edge in degrees is the wrong one
+        index.put(3L, polygon(0.01, 59.99, 0.02, 59.99, 0.02, 60.02, -0.01, 60.02, -0.01, 60.008,
+                0.01, 60.008, 0.01, 59.99), 0);
+
+        GeofenceGeometryIndex.Clearance clearance = index.clearance(60, 0, 20000);
+        assertEquals(GeoUtils.distanceMeters(60, 0, 60, 0.01), clearance.boundaryDistance(), 1);
+        assertTrue(clearance.safeRadius() <= clearance.boundaryDistance());
+    }
+
+    @Test
+    void safeRadiusNeverExceedsTheDistanceToATallFenceAtHighLatitude() {
+        // 55N..65N: a degree of longitude shrinks by about a third across the fence, so a
+        // bound taken at the fence's own scale would overestimate towards its north end
+        Polygon tall = polygon(10, 55, 10.5, 55, 10.5, 65, 10, 65, 10, 55);
+        index.put(4L, tall, 0);
+
+        for (double lat = 54.5; lat <= 65.5; lat += 0.5) {
+            for (double lon = 9.0; lon <= 11.5; lon += 0.25) {
+                if (tall.contains(GeoUtils.point(lat, lon))) {
+                    continue;
+                }
+                GeofenceGeometryIndex.Clearance clearance = index.clearance(lat, lon, 200000);
+                double actual = boundaryDistance(tall, lat, lon);
+                assertTrue(clearance.safeRadius() <= actual + 1,
+                        "safe radius " + clearance.safeRadius() + " m exceeds " + actual + " m at " + lat + "," + lon);
+            }
+        }
+    }
+
+    /**
+     * Brute-force geodesic distance to a fence boundary, sampling each edge every ~100 m
+     */
+    private static double boundaryDistance(Polygon fence, double lat, double lon) {
+        Coordinate[] ring = fence.getExteriorRing().getCoordinates();
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i + 1 < ring.length; i++) {
+            int steps = 2000;
+            for (int step = 0; step <= steps; step++) {
+                double f = (double) step / steps;
+                double pointLon = ring[i].x + f * (ring[i + 1].x - ring[i].x);
+                double pointLat = ring[i].y + f * (ring[i + 1].y - ring[i].y);
+                best = Math.min(best, GeoUtils.distanceMeters(lat, lon, pointLat, pointLon));
+            }
+        }
+        return best;
+    }
+
+    private static Polygon polygon(double... lonLat) {
+        Coordinate[] ring = new Coordinate[lonLat.length / 2];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new Coordinate(lonLat[2 * i], lonLat[2 * i + 1]);
+        }
+        return GeoUtils.WGS84_FACTORY.createPolygon(ring);
+    }
+}
@@ -0,0 +1,92 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.dto.OccupancyUpdateMessage;
+import com.tushar.geotrackr.entity.Asset;
+import com.tushar.geotrackr.entity.Geofence;
+import com.tushar.geotrackr.entity.GeofenceState;
+import com.tushar.geotrackr.repository.AssetRepository;
+import com.tushar.geotrackr.repository.GeofenceEventRepository;
+import com.tushar.geotrackr.repository.GeofenceRepository;
+import com.tushar.geotrackr.repository.GeofenceStateRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Confirmed transitions against a mocked state table: rows are written under their lock,
+ * and occupancy updates are pushed only when the set of occupants changes
+ */
+class GeofenceOccupancyServiceTest {
+
+    private GeofenceStateRepository stateRepository;
+    private WebSocketService webSocketService;
+    private GeofenceOccupancyService service;
+    private Asset asset;
+    private Geofence geofence;
+    private GeofenceState state;
+
+    @BeforeEach
+    void setUp() {
+        stateRepository = Mockito.mock(GeofenceStateRepository.class);
+        webSocketService = Mockito.mock(WebSocketService.class);
+        service = new GeofenceOccupancyService(stateRepository, Mockito.mock(GeofenceEventRepository.class),
+                Mockito.mock(AssetRepository.class), Mockito.mock(GeofenceRepository.class), webSocketService);
+
+        asset = new Asset();
+        asset.setId(1L);
+        geofence = new Geofence();
+        geofence.setId(10L);
+        geofence.setName("Depot");
+        state = new GeofenceState(5L, asset, geofence, false, null);
+        when(stateRepository.findForUpdate(1L, 10L)).thenReturn(Optional.of(state));
+    }
+
+    @Test
+    void transitionIsWrittenToTheLockedRowAfterMakingSureItExists() {
+        service.recordTransition(asset, geofence, true);
+
+        InOrder order = Mockito.inOrder(stateRepository);
+        order.verify(stateRepository).insertOutsideIfAbsent(1L, 10L);
+        order.verify(stateRepository).findForUpdate(1L, 10L);
+        order.verify(stateRepository).save(state);
+        assertTrue(state.isInside());
+        assertEquals(Set.of(10L), service.getGeofencesOccupiedBy(1L));
+        assertEquals(Set.of(1L), service.getOccupancy(10L).getAssetIds());
+    }
+
+    @Test
+    void occupancyIsBroadcastOnlyWhenItChanges() {
+        service.recordTransition(asset, geofence, true);
+        service.update(geofence, 1L, true);
+        service.recordTransition(asset, geofence, false);
+        service.update(geofence, 1L, false);
+
+        ArgumentCaptor<OccupancyUpdateMessage> updates = ArgumentCaptor.forClass(OccupancyUpdateMessage.class);
+        verify(webSocketService, times(2)).broadcastOccupancyUpdate(updates.capture());
+        assertEquals("ENTER", updates.getAllValues().get(0).getChange());
+        assertEquals("EXIT", updates.getAllValues().get(1).getChange());
+        assertEquals(0, updates.getAllValues().get(1).getOccupancy());
+        assertTrue(service.getGeofencesOccupiedBy(1L).isEmpty());
+    }
+
+    @Test
+    void confirmedInsideReadsTheLockedRowAndDefaultsToOutside() {
+        assertFalse(service.lockConfirmedInside(1L, 10L));
+        state.setInside(true);
+        assertTrue(service.lockConfirmedInside(1L, 10L));
+        assertFalse(service.lockConfirmedInside(2L, 10L), "no row yet");
+        verify(stateRepository, times(2)).findForUpdate(1L, 10L);
+    }
+}
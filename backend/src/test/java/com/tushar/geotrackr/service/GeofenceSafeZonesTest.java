@@ -0,0 +1,94 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.util.GeoUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Safe zones around a fix: boundary distance lower bounds, and zones dropped when the
+ * fences change or the transaction that stored them rolls back
+ */
+class GeofenceSafeZonesTest {
+
+    private static final double SEARCH_RADIUS = 20000;
+
+    private GeofenceGeometryIndex index;
+    private GeofenceSafeZones safeZones;
+
+    @BeforeEach
+    void setUp() {
+        index = new GeofenceGeometryIndex();
+        // 0.01 degree square around the origin
+        index.put(1L, GeoUtils.WGS84_FACTORY.createPolygon(new Coordinate[]{
+                new Coordinate(0, 0), new Coordinate(0.01, 0), new Coordinate(0.01, 0.01),
+                new Coordinate(0, 0.01), new Coordinate(0, 0)}), 0);
+
+        safeZones = new GeofenceSafeZones(index, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(safeZones, "enabled", true);
+        ReflectionTestUtils.setField(safeZones, "searchRadius", SEARCH_RADIUS);
+        safeZones.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void boundaryDistanceInsideAZoneIsTheLowerBoundLeftAfterMoving() {
+        safeZones.update(7L, 0.005, -0.01); // ~1.1 km west of the square
+        double moved = GeoUtils.distanceMeters(0.005, -0.01, 0.005, -0.0095);
+
+        assertTrue(safeZones.isSafe(7L, null, 0.005, -0.0095));
+        assertEquals(0.01 * GeoUtils.METERS_PER_DEGREE_LATITUDE - moved,
+                safeZones.boundaryDistance(7L, 0.005, -0.0095), 1);
+    }
+
+    @Test
+    void zoneWithoutBoundaryInRangeStartsFromTheSearchRadius() {
+        assertNull(index.clearance(1, 1, SEARCH_RADIUS).boundaryDistance());
+        safeZones.update(7L, 1, 1);
+        double moved = GeoUtils.distanceMeters(1, 1, 1, 1.001);
+
+        assertEquals(SEARCH_RADIUS - moved, safeZones.boundaryDistance(7L, 1, 1.001), 1e-6);
+    }
+
+    @Test
+    void zonesAreInvalidatedWhenTheFencesChange() {
+        safeZones.update(7L, 1, 1);
+        assertTrue(safeZones.isSafe(7L, null, 1, 1.001));
+
+        index.put(2L, GeoUtils.WGS84_FACTORY.createPolygon(new Coordinate[]{
+                new Coordinate(2, 2), new Coordinate(2.01, 2), new Coordinate(2.01, 2.01), new Coordinate(2, 2)}), 0);
+        assertFalse(safeZones.isSafe(7L, null, 1, 1.001));
+    }
+
+    @Test
+    void zoneIsRemovedWhenItsTransactionRollsBack() {
+        TransactionSynchronizationManager.initSynchronization();
+        safeZones.update(7L, 1, 1);
+        safeZones.update(8L, 1, 1);
+        assertTrue(safeZones.isSafe(7L, null, 1, 1.001));
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.get(0).afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK); // asset 7
+        synchronizations.get(1).afterCompletion(TransactionSynchronization.STATUS_COMMITTED); // asset 8
+        assertFalse(safeZones.isSafe(7L, null, 1, 1.001));
+        assertTrue(safeZones.isSafe(8L, null, 1, 1.001));
+    }
+}
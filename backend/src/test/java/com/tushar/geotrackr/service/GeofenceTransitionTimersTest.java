@@ -0,0 +1,86 @@
+package com.tushar.geotrackr.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Pending and dwell timers: one per kind and pair, replaced or cancelled by later fixes,
+ * and started only once the requesting transaction commits
+ */
+class GeofenceTransitionTimersTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BlockingQueue<String> fired = new LinkedBlockingQueue<>();
+
+    private GeofenceTransitionTimers timers;
+
+    @BeforeEach
+    void setUp() {
+        timers = new GeofenceTransitionTimers(meterRegistry);
+        ReflectionTestUtils.setField(timers, "threads", 1);
+        timers.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        timers.shutdown();
+    }
+
+    @Test
+    void pendingTimerRunsOnceAndIgnoresRepeatedRequests() throws Exception {
+        timers.scheduleIfAbsent(GeofenceTransitionTimers.Kind.PENDING, 1L, 10L, 300, () -> fired.add("first"));
+        timers.scheduleIfAbsent(GeofenceTransitionTimers.Kind.PENDING, 1L, 10L, 0, () -> fired.add("second"));
+        timers.scheduleIfAbsent(GeofenceTransitionTimers.Kind.DWELL, 1L, 10L, 150, () -> fired.add("dwell"));
+        assertEquals(2.0, pending());
+
+        assertEquals("dwell", fired.poll(5, TimeUnit.SECONDS));
+        assertEquals("first", fired.poll(5, TimeUnit.SECONDS));
+        assertNull(fired.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(0.0, pending());
+    }
+
+    @Test
+    void scheduleReplacesAndCancelStopsARunningTimer() throws Exception {
+        timers.schedule(GeofenceTransitionTimers.Kind.DWELL, 1L, 10L, 100, () -> fired.add("replaced"));
+        timers.schedule(GeofenceTransitionTimers.Kind.DWELL, 1L, 10L, 150, () -> fired.add("current"));
+        timers.scheduleIfAbsent(GeofenceTransitionTimers.Kind.PENDING, 2L, 10L, 100, () -> fired.add("cancelled"));
+        timers.cancel(GeofenceTransitionTimers.Kind.PENDING, 2L, 10L);
+        timers.scheduleIfAbsent(GeofenceTransitionTimers.Kind.PENDING, 3L, 20L, 100, () -> fired.add("cleared"));
+        timers.clearGeofence(20L);
+
+        assertEquals("current", fired.poll(5, TimeUnit.SECONDS));
+        assertNull(fired.poll(300, TimeUnit.MILLISECONDS));
+        assertEquals(0.0, pending());
+    }
+
+    @Test
+    void timerRequestedInATransactionStartsAfterCommit() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        timers.scheduleIfAbsent(GeofenceTransitionTimers.Kind.PENDING, 1L, 10L, 0, () -> fired.add("confirmed"));
+
+        assertNull(fired.poll(200, TimeUnit.MILLISECONDS), "started before the commit");
+        assertEquals(0.0, pending());
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertEquals("confirmed", fired.poll(5, TimeUnit.SECONDS));
+    }
+
+    private double pending() {
+        return meterRegistry.get("geofence.timers").gauge().value();
+    }
+}
@@ -0,0 +1,92 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.dto.LivePosition;
+import com.tushar.geotrackr.dto.NearbyAssetDTO;
+import com.tushar.geotrackr.repository.AssetRepository;
+import com.tushar.geotrackr.util.GeoUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Radius, bounding-box and nearest-neighbour queries on the live position grid,
+ * with 0.01 degree cells
+ */
+class LivePositionIndexTest {
+
+    private static final double EPSILON = 1e-6;
+
+    private LivePositionIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new LivePositionIndex(Mockito.mock(AssetRepository.class));
+        ReflectionTestUtils.setField(index, "cellSize", 0.01);
+        ReflectionTestUtils.setField(index, "maxRingSearch", 64);
+    }
+
+    @Test
+    void nearestAtHighLatitudeSearchesPastTheFirstHit() {
+        // At 60N a cell is ~1113 m tall but only ~556 m wide. The asset to the north is found
+        // in ring 1 at ~1 km; the closer one to the east sits in ring 2 at ~860 m.
+        index.update(position(1L, 60.014, 0.005));
+        index.update(position(2L, 60.005, 0.0205));
+
+        List<NearbyAssetDTO> nearest = index.findNearest(60.005, 0.005, 1);
+
+        assertEquals(1, nearest.size());
+        assertEquals(2L, nearest.get(0).getPosition().getAssetId());
+        assertEquals(GeoUtils.distanceMeters(60.005, 0.005, 60.005, 0.0205),
+                nearest.get(0).getDistanceMeters(), EPSILON);
+    }
+
+    @Test
+    void nearestIsSortedAndFallsBackToAFullScanBeyondTheRingLimit() {
+        ReflectionTestUtils.setField(index, "maxRingSearch", 2);
+        index.update(position(1L, 10.0, 10.0));
+        index.update(position(2L, 0.0, 0.001));
+        index.update(position(3L, -5.0, 0.0));
+
+        List<NearbyAssetDTO> nearest = index.findNearest(0.0, 0.0, 2);
+
+        assertEquals(List.of(2L, 3L), nearest.stream().map(n -> n.getPosition().getAssetId()).toList());
+        assertTrue(nearest.get(0).getDistanceMeters() < nearest.get(1).getDistanceMeters());
+    }
+
+    @Test
+    void radiusQueryKeepsOnlyAssetsWithinTheCircle() {
+        index.update(position(1L, 51.5, -0.12));
+        index.update(position(2L, 51.5, -0.12 + 900 / GeoUtils.metersPerDegreeLongitude(51.5)));
+        // Inside the query's bounding box, but its corner is outside the circle
+        index.update(position(3L, 51.5 + 800 / GeoUtils.METERS_PER_DEGREE_LATITUDE,
+                -0.12 + 800 / GeoUtils.metersPerDegreeLongitude(51.5)));
+
+        List<NearbyAssetDTO> within = index.findWithinRadius(51.5, -0.12, 1000);
+
+        assertEquals(List.of(1L, 2L), within.stream().map(n -> n.getPosition().getAssetId()).toList());
+    }
+
+    @Test
+    void movedAssetLeavesItsOldCell() {
+        index.update(position(1L, 1.0, 1.0));
+        LivePosition previous = index.update(position(1L, 2.0, 2.0));
+
+        assertEquals(1.0, previous.getLatitude(), EPSILON);
+        assertTrue(index.findInBoundingBox(0.9, 0.9, 1.1, 1.1).isEmpty());
+        assertEquals(1, index.findInBoundingBox(1.9, 1.9, 2.1, 2.1).size());
+
+        index.remove(1L);
+        assertTrue(index.findInBoundingBox(1.9, 1.9, 2.1, 2.1).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    private static LivePosition position(Long assetId, double lat, double lon) {
+        return new LivePosition(assetId, "Asset " + assetId, "VEHICLE", 1L, lat, lon, null);
+    }
+}
@@ -0,0 +1,99 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.dto.LivePosition;
+import com.tushar.geotrackr.dto.ProximityEventMessage;
+import com.tushar.geotrackr.entity.Asset;
+import com.tushar.geotrackr.entity.ProximityRule;
+import com.tushar.geotrackr.repository.AssetRepository;
+import com.tushar.geotrackr.repository.ProximityRuleRepository;
+import com.tushar.geotrackr.util.GeoUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pair tracking for a 100 m rule with a 1.1 separation factor: one APPROACH per pair,
+ * no SEPARATE inside the buffer, and rules limited to asset types
+ */
+class ProximityServiceTest {
+
+    private LivePositionIndex index;
+    private ProximityRuleRepository ruleRepository;
+    private ProximityService service;
+
+    @BeforeEach
+    void setUp() {
+        index = new LivePositionIndex(Mockito.mock(AssetRepository.class));
+        ReflectionTestUtils.setField(index, "cellSize", 0.01);
+        ReflectionTestUtils.setField(index, "maxRingSearch", 64);
+
+        ruleRepository = Mockito.mock(ProximityRuleRepository.class);
+        service = new ProximityService(ruleRepository, index, Mockito.mock(WebSocketService.class));
+        ReflectionTestUtils.setField(service, "maxRuleDistance", 5000.0);
+        ReflectionTestUtils.setField(service, "separationFactor", 1.1);
+        when(ruleRepository.findByActiveTrue()).thenReturn(List.of(rule(1L, null, null)));
+        service.loadRules();
+
+        move(1L, "VEHICLE", 0);
+    }
+
+    @Test
+    void pairApproachesOnceAndSeparatesBeyondTheBuffer() {
+        assertTrue(move(2L, "PERSON", 500).isEmpty());
+
+        List<ProximityEventMessage> approach = move(2L, "PERSON", 90);
+        assertEquals(1, approach.size());
+        assertEquals("APPROACH", approach.get(0).getEventType());
+        assertEquals(2L, approach.get(0).getAssetId());
+        assertEquals(1L, approach.get(0).getOtherAssetId());
+        assertEquals(90, approach.get(0).getDistance(), 0.5);
+
+        assertTrue(move(2L, "PERSON", 80).isEmpty(), "already close");
+        assertTrue(move(2L, "PERSON", 105).isEmpty(), "inside the separation buffer");
+
+        // The other asset of the pair moving away closes it too
+        move(2L, "PERSON", 0);
+        List<ProximityEventMessage> separate = move(1L, "VEHICLE", -150);
+        assertEquals(1, separate.size());
+        assertEquals("SEPARATE", separate.get(0).getEventType());
+        assertEquals(1L, separate.get(0).getAssetId());
+
+        assertEquals(1, move(2L, "PERSON", -100).size(), "pair can approach again");
+    }
+
+    @Test
+    void ruleOnlyPairsTheAssetTypesItNames() {
+        when(ruleRepository.findByActiveTrue()).thenReturn(List.of(
+                rule(2L, Asset.AssetType.VEHICLE, Asset.AssetType.PERSON)));
+        service.loadRules();
+
+        assertTrue(move(2L, "DEVICE", 50).isEmpty());
+        List<ProximityEventMessage> approach = move(3L, "PERSON", 50);
+        assertEquals(1, approach.size());
+        assertEquals(2L, approach.get(0).getRuleId());
+        assertEquals(1L, approach.get(0).getOtherAssetId());
+    }
+
+    private List<ProximityEventMessage> move(Long assetId, String type, double metersEast) {
+        index.update(new LivePosition(assetId, "Asset " + assetId, type, 1L, 0.0,
+                metersEast / GeoUtils.metersPerDegreeLongitude(0.0), null));
+        return service.evaluate(assetId);
+    }
+
+    private static ProximityRule rule(Long id, Asset.AssetType typeA, Asset.AssetType typeB) {
+        ProximityRule rule = new ProximityRule();
+        rule.setId(id);
+        rule.setName("Rule " + id);
+        rule.setAssetTypeA(typeA);
+        rule.setAssetTypeB(typeB);
+        rule.setDistance(100.0);
+        return rule;
+    }
+}
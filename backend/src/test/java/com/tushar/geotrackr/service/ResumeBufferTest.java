@@ -0,0 +1,77 @@
+package com.tushar.geotrackr.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Missed-message lookups on a three-message ring: ordering, the gap once messages
+ * are overwritten, and the asset visibility filter
+ */
+class ResumeBufferTest {
+
+    private static final String DESTINATION = "/topic/events/all";
+
+    private ResumeBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        buffer = new ResumeBuffer();
+        ReflectionTestUtils.setField(buffer, "capacity", 3);
+    }
+
+    @Test
+    void returnsMissedMessagesInSequenceOrder() {
+        long first = buffer.nextSequence(DESTINATION);
+        long second = buffer.nextSequence(DESTINATION);
+        buffer.append(DESTINATION, second, payload("b"), 1L); // a concurrent publisher got ahead
+        buffer.append(DESTINATION, first, payload("a"), 1L);
+
+        assertEquals(List.of("a", "b"), text(buffer.since(DESTINATION, 0)));
+        assertEquals(List.of("b"), text(buffer.since(DESTINATION, first)));
+        assertEquals(List.of(), text(buffer.since(DESTINATION, second)));
+        assertEquals(List.of(), buffer.since("/topic/unused", 0));
+    }
+
+    @Test
+    void reportsAGapOnceMissedMessagesAreOverwritten() {
+        for (String message : List.of("a", "b", "c", "d")) {
+            buffer.append(DESTINATION, buffer.nextSequence(DESTINATION), payload(message), 1L);
+        }
+
+        assertNull(buffer.since(DESTINATION, 0), "message 1 was overwritten");
+        assertEquals(List.of("b", "c", "d"), text(buffer.since(DESTINATION, 1)));
+        assertEquals(List.of("c"), text(buffer.between(DESTINATION, 2, 3)));
+        assertNull(buffer.since(DESTINATION, 7), "client is ahead of the counter, e.g. after a restart");
+        assertNull(buffer.since("/topic/unused", 5));
+    }
+
+    @Test
+    void filtersMessagesToThoseWhoseAssetsAreAllVisible() {
+        Set<Long> visible = Set.of(1L, 2L);
+        buffer.append(DESTINATION, buffer.nextSequence(DESTINATION), payload("own"), 1L);
+        buffer.append(DESTINATION, buffer.nextSequence(DESTINATION), payload("own pair"), 1L, 2L);
+        buffer.append(DESTINATION, buffer.nextSequence(DESTINATION), payload("shared pair"), 2L, 3L);
+
+        assertEquals(List.of("own", "own pair"), text(buffer.since(DESTINATION, 0, visible::contains)));
+        assertEquals(3, buffer.since(DESTINATION, 0).size());
+
+        buffer.append("/topic/gps/status", buffer.nextSequence("/topic/gps/status"), payload("no asset"));
+        assertEquals(List.of(), buffer.since("/topic/gps/status", 0, visible::contains));
+    }
+
+    private static byte[] payload(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> text(List<byte[]> payloads) {
+        return payloads.stream().map(p -> new String(p, StandardCharsets.UTF_8)).toList();
+    }
+}
@@ -0,0 +1,104 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.dto.ResumeRequest;
+import com.tushar.geotrackr.repository.GeofenceEventRepository;
+import com.tushar.geotrackr.security.AssetScope;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Pageable;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Which source a resume is answered from: the buffer while it still covers the client's
+ * sequence, otherwise a position snapshot or the stored geofence events
+ */
+class StreamResumeServiceTest {
+
+    private static final byte[] PAYLOAD = "[]".getBytes(StandardCharsets.UTF_8);
+
+    private ResumeBuffer resumeBuffer;
+    private WebSocketService webSocketService;
+    private LocationSnapshotService locationSnapshotService;
+    private GeofenceEventRepository geofenceEventRepository;
+    private StreamResumeService service;
+
+    @BeforeEach
+    void setUp() {
+        resumeBuffer = new ResumeBuffer();
+        ReflectionTestUtils.setField(resumeBuffer, "capacity", 2);
+        webSocketService = Mockito.mock(WebSocketService.class);
+        locationSnapshotService = Mockito.mock(LocationSnapshotService.class);
+        geofenceEventRepository = Mockito.mock(GeofenceEventRepository.class);
+        when(webSocketService.joinArray(anyList())).thenReturn(PAYLOAD);
+        when(webSocketService.serialize(any())).thenReturn(PAYLOAD);
+
+        service = new StreamResumeService(resumeBuffer, webSocketService, locationSnapshotService,
+                geofenceEventRepository, Mockito.mock(AssetOwnerRegistry.class));
+        ReflectionTestUtils.setField(service, "maxDatabaseEvents", 100);
+
+        for (String destination : List.of(WebSocketService.LOCATION_DESTINATION, WebSocketService.EVENTS_DESTINATION)) {
+            for (int i = 0; i < 3; i++) {
+                resumeBuffer.append(destination, resumeBuffer.nextSequence(destination), PAYLOAD, 1L);
+            }
+        }
+    }
+
+    @Test
+    void resumesFromTheBufferWhileItCoversTheSequence() {
+        service.resume("s1", AssetScope.owner("alice", List.of(1L)),
+                new ResumeRequest(WebSocketService.EVENTS_DESTINATION, 1L, 5L));
+
+        verify(webSocketService).sendResume("s1", WebSocketService.EVENTS_DESTINATION, PAYLOAD, 3L,
+                StreamResumeService.SOURCE_BUFFER);
+        Mockito.verifyNoInteractions(geofenceEventRepository);
+    }
+
+    @Test
+    void locationGapFallsBackToASnapshotOfTheScope() {
+        AssetScope scope = AssetScope.owner("alice", List.of(1L));
+        service.resume("s1", scope, new ResumeRequest(WebSocketService.LOCATION_DESTINATION, 0L, null));
+
+        verify(locationSnapshotService).currentPositions(scope);
+        verify(webSocketService).sendResume("s1", WebSocketService.LOCATION_DESTINATION, PAYLOAD, 3L,
+                StreamResumeService.SOURCE_SNAPSHOT);
+    }
+
+    @Test
+    void eventGapFallsBackToTheOwnersStoredEvents() {
+        service.resume("s1", AssetScope.owner("alice", List.of(1L)),
+                new ResumeRequest(WebSocketService.EVENTS_DESTINATION, 0L, 42L));
+
+        verify(geofenceEventRepository).findAfterIdForOwner(eq(42L), eq("alice"), any(Pageable.class));
+        verify(webSocketService).sendResume("s1", WebSocketService.EVENTS_DESTINATION, PAYLOAD, 3L,
+                StreamResumeService.SOURCE_DATABASE);
+    }
+
+    @Test
+    void eventGapWithoutAnEventIdIsReportedAsUnavailable() {
+        service.resume("s1", AssetScope.all(), new ResumeRequest(WebSocketService.EVENTS_DESTINATION, 0L, null));
+
+        verify(webSocketService).sendResume("s1", WebSocketService.EVENTS_DESTINATION, PAYLOAD, 3L,
+                StreamResumeService.SOURCE_UNAVAILABLE);
+        Mockito.verifyNoInteractions(geofenceEventRepository);
+    }
+
+    @Test
+    void rejectsSessionsWithoutAScopeAndUnknownDestinations() {
+        ResumeRequest request = new ResumeRequest(WebSocketService.EVENTS_DESTINATION, 0L, null);
+        assertThrows(AccessDeniedException.class, () -> service.resume("s1", null, request));
+        assertThrows(IllegalArgumentException.class, () -> service.resume("s1", AssetScope.all(),
+                new ResumeRequest("/topic/gps/status", 0L, null)));
+    }
+}
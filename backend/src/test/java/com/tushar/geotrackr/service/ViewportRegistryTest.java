@@ -0,0 +1,111 @@
+package com.tushar.geotrackr.service;
+
+import com.tushar.geotrackr.dto.ViewportDTO;
+import com.tushar.geotrackr.security.AssetScope;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Routing a fix to the sessions whose viewport contains it, with 1 degree cells and
+ * viewports of more than 4 cells kept as wide viewports
+ */
+class ViewportRegistryTest {
+
+    private AssetOwnerRegistry assetOwnerRegistry;
+    private ViewportRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        assetOwnerRegistry = Mockito.mock(AssetOwnerRegistry.class);
+        registry = new ViewportRegistry(assetOwnerRegistry);
+        ReflectionTestUtils.setField(registry, "cellSize", 1.0);
+        ReflectionTestUtils.setField(registry, "maxCells", 4);
+    }
+
+    @Test
+    void routesToSessionsWhoseViewportContainsTheFix() {
+        registry.update("small", new ViewportDTO(10.0, 10.0, 10.5, 10.5), AssetScope.all());
+        registry.update("wide", new ViewportDTO(0.0, 0.0, 20.0, 20.0), AssetScope.all());
+        registry.update("elsewhere", new ViewportDTO(-5.0, -5.0, -4.0, -4.0), AssetScope.all());
+
+        assertEquals(List.of("small", "wide"), sorted(registry.findSessionsContaining(10.2, 10.2, 1L)));
+        // Same cell as the small viewport but outside it
+        assertEquals(List.of("wide"), registry.findSessionsContaining(10.8, 10.8, 1L));
+        assertEquals(List.of(), registry.findSessionsContaining(30.0, 30.0, 1L));
+    }
+
+    @Test
+    void replacedViewportIsNoLongerIndexedAndRemovedSessionsGetNothing() {
+        registry.update("s1", new ViewportDTO(10.0, 10.0, 10.5, 10.5), AssetScope.all());
+        registry.update("s1", new ViewportDTO(40.0, 40.0, 40.5, 40.5), AssetScope.all());
+
+        assertTrue(registry.findSessionsContaining(10.2, 10.2, 1L).isEmpty());
+        assertEquals(List.of("s1"), registry.findSessionsContaining(40.2, 40.2, 1L));
+
+        registry.remove("s1");
+        assertTrue(registry.findSessionsContaining(40.2, 40.2, 1L).isEmpty());
+        assertEquals(0, registry.size());
+        assertThrows(IllegalArgumentException.class,
+                () -> registry.update("s2", new ViewportDTO(1.0, 1.0, 0.0, 2.0), AssetScope.all()));
+    }
+
+    @Test
+    void sessionsOnlyReceiveAssetsInTheirScope() {
+        when(assetOwnerRegistry.getOwner(2L)).thenReturn("alice");
+        when(assetOwnerRegistry.getOwner(3L)).thenReturn("bob");
+        registry.update("alice", new ViewportDTO(0.0, 0.0, 1.0, 1.0), AssetScope.owner("alice", List.of(1L)));
+        registry.update("device", new ViewportDTO(0.0, 0.0, 1.0, 1.0), AssetScope.device(1L));
+        registry.update("anonymous", new ViewportDTO(0.0, 0.0, 1.0, 1.0), null);
+
+        assertEquals(List.of("alice", "device"), sorted(registry.findSessionsContaining(0.5, 0.5, 1L)));
+        assertEquals(List.of("alice"), registry.findSessionsContaining(0.5, 0.5, 2L), "created after CONNECT");
+        assertEquals(List.of(), registry.findSessionsContaining(0.5, 0.5, 3L));
+    }
+
+    @Test
+    void subscribeFrameSetsTheViewportAndRemoveDropsIt() {
+        registry.subscribe(subscribe("s1", "sub-1", "10,10,10.5,10.5"));
+        assertEquals("sub-1", registry.getSubscriptionId("s1"));
+        assertEquals(List.of("s1"), registry.findSessionsContaining(10.2, 10.2, 1L));
+
+        registry.subscribe(subscribe("s2", "sub-2", "not a viewport"));
+        assertNull(registry.get("s2"));
+        assertEquals("sub-2", registry.getSubscriptionId("s2"));
+
+        registry.remove("s1");
+        assertNull(registry.getSubscriptionId("s1"));
+        assertTrue(registry.findSessionsContaining(10.2, 10.2, 1L).isEmpty());
+    }
+
+    private static Message<byte[]> subscribe(String sessionId, String subscriptionId, String viewport) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(WebSocketService.VIEWPORT_LOCATION_DESTINATION);
+        accessor.setNativeHeader(ViewportRegistry.VIEWPORT_HEADER, viewport);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(AssetScope.SESSION_ATTRIBUTE, AssetScope.all());
+        accessor.setSessionAttributes(attributes);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static List<String> sorted(List<String> sessions) {
+        return sessions.stream().sorted().toList();
+    }
+}
@@ -0,0 +1,131 @@
+package com.tushar.geotrackr.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tushar.geotrackr.dto.LocationUpdateMessage;
+import com.tushar.geotrackr.dto.ViewportDTO;
+import com.tushar.geotrackr.security.AssetScope;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Conflated location broadcasting: the latest fix per asset is sent once per tick, as
+ * one array per destination sharing the tick's sequence number
+ */
+class WebSocketServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private final List<Frame> sent = new ArrayList<>();
+
+    private ViewportRegistry viewportRegistry;
+    private WebSocketService service;
+
+    @BeforeEach
+    void setUp() {
+        SimpMessagingTemplate messagingTemplate = Mockito.mock(SimpMessagingTemplate.class);
+        Mockito.doAnswer(invocation -> sent.add(new Frame(invocation.getArgument(0), invocation.getArgument(1))))
+                .when(messagingTemplate).send(anyString(), any(Message.class));
+        AssetOwnerRegistry assetOwnerRegistry = Mockito.mock(AssetOwnerRegistry.class);
+        when(assetOwnerRegistry.getOwner(1L)).thenReturn("alice");
+        when(assetOwnerRegistry.getOwner(2L)).thenReturn("bob");
+
+        viewportRegistry = new ViewportRegistry(assetOwnerRegistry);
+        ReflectionTestUtils.setField(viewportRegistry, "cellSize", 0.5);
+        ReflectionTestUtils.setField(viewportRegistry, "maxCells", 400);
+        ResumeBuffer resumeBuffer = new ResumeBuffer();
+        ReflectionTestUtils.setField(resumeBuffer, "capacity", 100);
+
+        service = new WebSocketService(messagingTemplate, viewportRegistry, assetOwnerRegistry, objectMapper,
+                resumeBuffer);
+        ReflectionTestUtils.setField(service, "conflationEnabled", true);
+        ReflectionTestUtils.setField(service, "brokerMode", "simple");
+    }
+
+    @Test
+    void tickSendsTheLatestFixPerAssetAsOneBatchPerDestination() throws Exception {
+        viewportRegistry.update("s1", new ViewportDTO(0.0, 0.0, 1.0, 1.0), AssetScope.all());
+        service.broadcastLocationUpdate(location(1L, 0.1));
+        service.broadcastLocationUpdate(location(1L, 0.2));
+        service.broadcastLocationUpdate(location(1L, 0.3));
+        service.broadcastLocationUpdate(location(2L, 5.0));
+        assertTrue(sent.isEmpty());
+
+        service.flushLocationUpdates();
+
+        // The topic, both owners and the one viewport that contains asset 1
+        Map<String, Message<?>> frames = new HashMap<>();
+        sent.forEach(frame -> frames.put(frame.destination(), frame.message()));
+        assertEquals(4, sent.size());
+        JsonNode all = body(frames.get(WebSocketService.LOCATION_DESTINATION));
+        assertEquals(2, all.size());
+        for (JsonNode position : all) {
+            if (position.get("assetId").asLong() == 1L) {
+                assertEquals(0.3, position.get("latitude").asDouble());
+            }
+        }
+        assertEquals(1, body(frames.get("/user/alice" + WebSocketService.OWNER_LOCATION_QUEUE)).size());
+        assertEquals(1, body(frames.get("/user/bob" + WebSocketService.OWNER_LOCATION_QUEUE)).size());
+        JsonNode viewport = body(frames.get("/user/s1" + WebSocketService.VIEWPORT_QUEUE));
+        assertEquals(1, viewport.size());
+        assertEquals(1L, viewport.get(0).get("assetId").asLong());
+
+        // Every frame of the tick carries the same sequence number
+        for (Frame frame : sent) {
+            assertEquals("1", sequence(frame.message()));
+        }
+        assertEquals(1L, service.getLocationSequence());
+
+        service.flushLocationUpdates();
+        assertEquals(4, sent.size(), "nothing new to send");
+    }
+
+    @Test
+    void withoutConflationEveryFixIsSentAtOnce() throws Exception {
+        ReflectionTestUtils.setField(service, "conflationEnabled", false);
+        service.broadcastLocationUpdate(location(1L, 0.1));
+        service.broadcastLocationUpdate(location(1L, 0.2));
+
+        List<Frame> topic = sent.stream()
+                .filter(frame -> frame.destination().equals(WebSocketService.LOCATION_DESTINATION))
+                .toList();
+        assertEquals(2, topic.size());
+        assertEquals(0.2, body(topic.get(1).message()).get("latitude").asDouble());
+        assertEquals("2", sequence(topic.get(1).message()));
+    }
+
+    private JsonNode body(Message<?> message) throws Exception {
+        return objectMapper.readTree((byte[]) message.getPayload());
+    }
+
+    private static String sequence(Message<?> message) {
+        return SimpMessageHeaderAccessor.wrap(message).getFirstNativeHeader(WebSocketService.SEQUENCE_HEADER);
+    }
+
+    private static LocationUpdateMessage location(Long assetId, double latitude) {
+        LocationUpdateMessage message = new LocationUpdateMessage();
+        message.setAssetId(assetId);
+        message.setLatitude(latitude);
+        message.setLongitude(0.5);
+        return message;
+    }
+
+    private record Frame(String destination, Message<?> message) {
+    }
+}
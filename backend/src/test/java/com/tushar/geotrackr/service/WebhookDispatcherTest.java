@@ -0,0 +1,174 @@
+package com.tushar.geotrackr.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import com.tushar.geotrackr.entity.WebhookDeadLetter;
+import com.tushar.geotrackr.entity.WebhookSubscription;
+import com.tushar.geotrackr.repository.WebhookDeadLetterRepository;
+import com.tushar.geotrackr.repository.WebhookSubscriptionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Deque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Delivers webhook batches to a stub HTTP server on localhost and checks batching,
+ * signing, retries, dead-lettering and the internal address check
+ */
+class WebhookDispatcherTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+    private final Deque<Integer> statuses = new ConcurrentLinkedDeque<>(); // next responses, 200 once empty
+
+    private HttpServer server;
+    private WebhookDeadLetterRepository deadLetterRepository;
+    private WebhookUrlValidator urlValidator;
+    private WebhookDispatcher dispatcher;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/hook", exchange -> {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            requests.add(new Request(body, exchange.getRequestHeaders().getFirst(WebhookDispatcher.SIGNATURE_HEADER),
+                    exchange.getRequestHeaders().getFirst(WebhookDispatcher.ATTEMPT_HEADER)));
+            Integer status = statuses.poll();
+            exchange.sendResponseHeaders(status != null ? status : 200, -1);
+            exchange.close();
+        });
+        server.start();
+
+        WebhookSubscriptionRepository subscriptionRepository = Mockito.mock(WebhookSubscriptionRepository.class);
+        deadLetterRepository = Mockito.mock(WebhookDeadLetterRepository.class);
+        WebSocketService webSocketService = Mockito.mock(WebSocketService.class, Mockito.CALLS_REAL_METHODS);
+
+        urlValidator = new WebhookUrlValidator();
+        ReflectionTestUtils.setField(urlValidator, "allowPrivateAddresses", true);
+
+        dispatcher = new WebhookDispatcher(subscriptionRepository, deadLetterRepository, webSocketService,
+                urlValidator, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 10);
+        ReflectionTestUtils.setField(dispatcher, "maxConcurrency", 1);
+        ReflectionTestUtils.setField(dispatcher, "maxQueue", 1000);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 3);
+        ReflectionTestUtils.setField(dispatcher, "initialBackoff", 50L);
+        ReflectionTestUtils.setField(dispatcher, "maxBackoff", 200L);
+        ReflectionTestUtils.setField(dispatcher, "requestTimeout", 2000L);
+        ReflectionTestUtils.setField(dispatcher, "clientThreads", 2);
+        dispatcher.init();
+
+        WebhookSubscription subscription = new WebhookSubscription();
+        subscription.setId(1L);
+        subscription.setUrl("http://localhost:" + server.getAddress().getPort() + "/hook");
+        subscription.setSecret("s3cret");
+        dispatcher.register(subscription, "alice");
+    }
+
+    @AfterEach
+    void stop() {
+        dispatcher.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void sendsQueuedEventsAsOneSignedBatch() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            dispatcher.enqueue("alice", event(i));
+        }
+        dispatcher.enqueue("bob", event(99)); // no webhook
+        dispatcher.flush();
+
+        Request request = requests.poll(5, TimeUnit.SECONDS);
+        assertNotNull(request, "stub server received no request");
+        JsonNode batch = objectMapper.readTree(request.body());
+        assertEquals(3, batch.size());
+        assertEquals(1, batch.get(0).get("eventId").asInt());
+        assertEquals("sha256=" + WebhookDispatcher.sign("s3cret", request.body()), request.signature());
+        assertNull(requests.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void fullBatchIsSentWithoutWaitingForTheFlush() throws Exception {
+        for (int i = 1; i <= 10; i++) {
+            dispatcher.enqueue("alice", event(i));
+        }
+
+        Request request = requests.poll(5, TimeUnit.SECONDS);
+        assertNotNull(request, "full batch was not sent on enqueue");
+        assertEquals(10, objectMapper.readTree(request.body()).size());
+    }
+
+    @Test
+    void retriesServerErrorsWithBackoff() throws Exception {
+        statuses.add(500);
+        statuses.add(503);
+        dispatcher.enqueue("alice", event(1));
+        dispatcher.flush();
+
+        assertEquals("1", requests.poll(5, TimeUnit.SECONDS).attempt());
+        assertEquals("2", requests.poll(5, TimeUnit.SECONDS).attempt());
+        Request delivered = requests.poll(5, TimeUnit.SECONDS);
+        assertNotNull(delivered, "batch was not retried after the second failure");
+        assertEquals("3", delivered.attempt());
+        verify(deadLetterRepository, Mockito.after(300).never()).save(any());
+    }
+
+    @Test
+    void storesRejectedBatchAsDeadLetterWithoutRetrying() throws Exception {
+        statuses.add(400);
+        dispatcher.enqueue("alice", event(1));
+        dispatcher.enqueue("alice", event(2));
+        dispatcher.flush();
+
+        ArgumentCaptor<WebhookDeadLetter> letter = ArgumentCaptor.forClass(WebhookDeadLetter.class);
+        verify(deadLetterRepository, timeout(5000)).save(letter.capture());
+        assertEquals(2, letter.getValue().getEventCount());
+        assertEquals(400, letter.getValue().getLastStatus());
+        assertEquals(1, letter.getValue().getAttempts());
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    void refusesToDeliverToAnInternalAddress() throws Exception {
+        ReflectionTestUtils.setField(urlValidator, "allowPrivateAddresses", false);
+        dispatcher.enqueue("alice", event(1));
+        dispatcher.flush();
+
+        ArgumentCaptor<WebhookDeadLetter> letter = ArgumentCaptor.forClass(WebhookDeadLetter.class);
+        verify(deadLetterRepository, timeout(5000)).save(letter.capture());
+        assertEquals(1, letter.getValue().getAttempts());
+        assertNull(requests.poll(300, TimeUnit.MILLISECONDS));
+        assertThrows(IllegalArgumentException.class,
+                () -> urlValidator.validate("https://127.0.0.1/hook"));
+        assertThrows(IllegalArgumentException.class,
+                () -> urlValidator.validate("http://example.com/hook"));
+    }
+
+    private byte[] event(int id) {
+        return ("{\"eventId\":" + id + ",\"eventType\":\"ENTER\"}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private record Request(byte[] body, String signature, String attempt) {
+    }
+}
@@ -1,6 +1,7 @@
 import { useEffect, useRef, useState } from 'react';
 import { Client } from '@stomp/stompjs';
 import SockJS from 'sockjs-client';
+import { useAuthStore } from '../store/useStore';
 
 interface LocationUpdate {
   assetId: number;
@@ -21,11 +22,19 @@ interface GeofenceEventMessage {
   assetName: string;
   geofenceId: number;
   geofenceName: string;
-  eventType: 'ENTER' | 'EXIT';
+  eventType: 'ENTER' | 'EXIT' | 'DWELL';
   latitude: number;
   longitude: number;
   timestamp: string;
   message: string;
+  sequence?: number;
+}
+
+export interface Viewport {
+  minLatitude: number;
+  minLongitude: number;
+  maxLatitude: number;
+  maxLongitude: number;
 }
 
 interface UseWebSocketReturn {
@@ -33,15 +42,23 @@ interface UseWebSocketReturn {
   locationUpdates: LocationUpdate[];
   geofenceEvents: GeofenceEventMessage[];
   sendLocation: (location: any) => void;
+  setViewport: (viewport: Viewport) => void;
   disconnect: () => void;
 }
 
+const viewportHeader = (v: Viewport) =>
+  `${v.minLatitude},${v.minLongitude},${v.maxLatitude},${v.maxLongitude}`;
+
 export const useWebSocket = (): UseWebSocketReturn => {
   const [isConnected, setIsConnected] = useState(false);
   const [locationUpdates, setLocationUpdates] = useState<LocationUpdate[]>([]);
   const [geofenceEvents, setGeofenceEvents] = useState<GeofenceEventMessage[]>([]);
 
   const clientRef = useRef<Client | null>(null);
+  const viewportRef = useRef<Viewport | null>(null);
+  // Position in the event stream, sent on reconnect to receive only the missed events
+  const lastEventSeqRef = useRef<number | null>(null);
+  const lastEventIdRef = useRef<number | null>(null);
 
   useEffect(() => {
     const client = new Client({
@@ -49,8 +66,8 @@ export const useWebSocket = (): UseWebSocketReturn => {
         `${import.meta.env.VITE_API_URL.replace('/api', '')}/ws/location`
       ),
 
-      connectHeaders: {
-      },
+      // The session is authenticated once, on CONNECT; see beforeConnect below
+      connectHeaders: {},
 
       debug: (str) => {
         console.log('STOMP Debug:', str);
@@ -61,33 +78,96 @@ export const useWebSocket = (): UseWebSocketReturn => {
       heartbeatOutgoing: 10000,
     });
 
+    // Read the token on every (re)connect so a new login is picked up
+    client.beforeConnect = () => {
+      const token = localStorage.getItem('token');
+      client.connectHeaders = token ? { Authorization: `Bearer ${token}` } : {};
+    };
+
     client.onConnect = () => {
       console.log('WebSocket connected....');
       setIsConnected(true);
 
-      client.subscribe('/topic/location/all', (message) => {
-        try {
-          const update: LocationUpdate = JSON.parse(message.body);
-          console.log('📍 Location update received:', update);
+      // Only positions inside the current map viewport are delivered on this queue
+      const headers: Record<string, string> = viewportRef.current
+        ? { viewport: viewportHeader(viewportRef.current) }
+        : {};
 
-          setLocationUpdates((prev) => [...prev.slice(-99), update]);
+      // Sequence number of the last snapshot; deltas not newer than it are already included
+      let snapshotSeq = -1;
+
+      client.subscribe('/user/queue/location/viewport', (message) => {
+        try {
+          // The server conflates fixes per tick and sends a batch (latest position per asset)
+          const body = JSON.parse(message.body);
+          const updates: LocationUpdate[] = Array.isArray(body) ? body : [body];
+          const seq = Number(message.headers['seq'] ?? -1);
+
+          if (message.headers['snapshot'] === 'true') {
+            // First frame of the subscription (and after every viewport change): full state
+            snapshotSeq = seq;
+            setLocationUpdates(updates.slice(-100));
+            return;
+          }
+          if (seq >= 0 && seq <= snapshotSeq) {
+            return;
+          }
+
+          setLocationUpdates((prev) => [...prev, ...updates].slice(-100));
         } catch (error) {
           console.error('Error parsing location update:', error);
         }
-      });
+      }, headers);
+
+      const addEvents = (events: GeofenceEventMessage[]) => {
+        const fresh = events.filter((e) => lastEventIdRef.current === null || e.eventId > lastEventIdRef.current);
+        if (fresh.length === 0) {
+          return;
+        }
+        lastEventIdRef.current = Math.max(...fresh.map((e) => e.eventId));
+        setGeofenceEvents((prev) => [...prev, ...fresh].slice(-100));
+      };
+
+      // Fleet-wide topics are admin only; other users get their own assets' messages on user queues
+      const isAdmin = useAuthStore.getState().user?.role === 'ADMIN';
 
-      client.subscribe('/topic/geofence/events', (message) => {
+      client.subscribe(isAdmin ? '/topic/events/all' : '/user/queue/events', (message) => {
         try {
           const event: GeofenceEventMessage = JSON.parse(message.body);
           console.log('🚨 Geofence event received:', event);
 
-          setGeofenceEvents((prev) => [...prev.slice(-99), event]);
+          if (event.sequence !== undefined) {
+            lastEventSeqRef.current = Math.max(lastEventSeqRef.current ?? 0, event.sequence);
+          }
+          addEvents([event]);
         } catch (error) {
           console.error('Error parsing geofence event:', error);
         }
       });
 
-      client.subscribe('/topic/gps/status', (message) => {
+      // Events missed while disconnected, answered to /app/resume
+      client.subscribe('/user/queue/resume', (message) => {
+        try {
+          const events: GeofenceEventMessage[] = JSON.parse(message.body);
+          lastEventSeqRef.current = Math.max(lastEventSeqRef.current ?? 0, Number(message.headers['seq'] ?? 0));
+          addEvents(events);
+        } catch (error) {
+          console.error('Error parsing resumed events:', error);
+        }
+      });
+
+      if (lastEventSeqRef.current !== null) {
+        client.publish({
+          destination: '/app/resume',
+          body: JSON.stringify({
+            destination: '/topic/events/all',
+            lastSequence: lastEventSeqRef.current,
+            lastEventId: lastEventIdRef.current,
+          }),
+        });
+      }
+
+      client.subscribe(isAdmin ? '/topic/gps/status' : '/user/queue/gps/status', (message) => {
         try {
           const status = JSON.parse(message.body);
           console.log('📡 GPS status update:', status);
@@ -134,6 +214,16 @@ export const useWebSocket = (): UseWebSocketReturn => {
     }
   };
 
+  const setViewport = (viewport: Viewport) => {
+    viewportRef.current = viewport;
+    if (clientRef.current?.connected) {
+      clientRef.current.publish({
+        destination: '/app/viewport',
+        body: JSON.stringify(viewport),
+      });
+    }
+  };
+
   const disconnect = () => {
     if (clientRef.current) {
       clientRef.current.deactivate();
@@ -145,6 +235,7 @@ export const useWebSocket = (): UseWebSocketReturn => {
     locationUpdates,
     geofenceEvents,
     sendLocation,
+    setViewport,
     disconnect,
   };
 };
@@ -4,9 +4,9 @@ import L from 'leaflet';
 import 'leaflet/dist/leaflet.css';
 import { Activity, Map as MapIcon, Package, TrendingUp, Users } from 'lucide-react';
 import { useEffect, useState } from 'react';
-import { Circle, MapContainer, Marker, Polygon, Popup, TileLayer } from 'react-leaflet';
+import { Circle, MapContainer, Marker, Polygon, Popup, TileLayer, useMapEvents } from 'react-leaflet';
 import { toast } from 'sonner';
-import { useWebSocket } from '../hooks/useWebSocket';
+import { useWebSocket, type Viewport } from '../hooks/useWebSocket';
 import { assetsApi, eventsApi, geofencesApi, type Asset, type Geofence } from '../services/api';
 import { useUIStore } from '../store/useStore';
 
@@ -38,6 +38,30 @@ const StatCard = ({ icon: Icon, title, value, trend, color }: any) => (
   </div>
 );
 
+// Reports the visible map bounds so the server only pushes positions inside them
+const ViewportTracker = ({ onChange }: { onChange: (viewport: Viewport) => void }) => {
+  const map = useMapEvents({
+    moveend: () => report(),
+  });
+
+  const report = () => {
+    const bounds = map.getBounds();
+    onChange({
+      minLatitude: bounds.getSouth(),
+      minLongitude: bounds.getWest(),
+      maxLatitude: bounds.getNorth(),
+      maxLongitude: bounds.getEast(),
+    });
+  };
+
+  useEffect(() => {
+    report();
+    // eslint-disable-next-line react-hooks/exhaustive-deps
+  }, []);
+
+  return null;
+};
+
 export default function Dashboard() {
   const [mapKey, setMapKey] = useState(0);
   const [lastUpdateTime, setLastUpdateTime] = useState(new Date());
@@ -45,7 +69,8 @@ export default function Dashboard() {
   const {
     isConnected,
     locationUpdates,
-    geofenceEvents
+    geofenceEvents,
+    setViewport
   } = useWebSocket();
 
   const { selectedAsset, selectAsset } = useUIStore();
@@ -92,6 +117,11 @@ export default function Dashboard() {
           description: `at ${format(new Date(latestEvent.timestamp), 'HH:mm:ss')}`,
           duration: 5000,
         });
+      } else if (latestEvent.eventType === 'DWELL') {
+        toast.info(`⏱️ ${latestEvent.message}`, {
+          description: `at ${format(new Date(latestEvent.timestamp), 'HH:mm:ss')}`,
+          duration: 5000,
+        });
       } else {
         toast.info(`⬅️ ${latestEvent.assetName} exited ${latestEvent.geofenceName}`, {
           description: `at ${format(new Date(latestEvent.timestamp), 'HH:mm:ss')}`,
@@ -206,6 +236,8 @@ export default function Dashboard() {
               attribution='&copy; <a href="https://www.openstreetmap.org/copyright">OpenStreetMap</a>'
             />
 
+            <ViewportTracker onChange={setViewport} />
+
             {/* Render Geofences */}
             {geofences.map((geofence: Geofence) => {
               if (geofence.type === 'CIRCULAR' && geofence.centerLatitude && geofence.centerLongitude && geofence.radius) {
@@ -366,7 +398,7 @@ export default function Dashboard() {
                 <div className="flex items-center justify-between">
                   <div className="flex-1">
                     <p className="font-semibold text-sm">
-                      {event.eventType === 'ENTER' ? '✅ Entered' : '⬅️ Exited'}: {event.geofenceName}
+                      {event.eventType === 'ENTER' ? '✅ Entered' : event.eventType === 'DWELL' ? '⏱️ Dwelling' : '⬅️ Exited'}: {event.geofenceName}
                     </p>
                     <p className="text-xs text-muted-foreground">
                       Asset: {event.assetName}
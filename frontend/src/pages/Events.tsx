@@ -45,7 +45,7 @@ export default function Events() {
             }
             if (event.eventType === 'ENTER') {
                 acc[date].entries++;
-            } else {
+            } else if (event.eventType === 'EXIT') {
                 acc[date].exits++;
             }
             return acc;
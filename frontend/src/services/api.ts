@@ -68,6 +68,9 @@ export interface Geofence {
   radius?: number;
   polygonCoordinates?: string;
   alertType: 'ENTRY' | 'EXIT' | 'BOTH';
+  bufferDistance?: number;
+  minDwellSeconds?: number;
+  dwellAlertMinutes?: number;
   active: boolean;
 }
 
@@ -75,7 +78,7 @@ export interface GeofenceEvent {
   id: number;
   asset: Asset;
   geofence: Geofence;
-  eventType: 'ENTER' | 'EXIT';
+  eventType: 'ENTER' | 'EXIT' | 'DWELL';
   latitude: number;
   longitude: number;
   timestamp: string;